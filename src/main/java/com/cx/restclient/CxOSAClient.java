@@ -1,16 +1,19 @@
 package com.cx.restclient;
 
+import com.cx.restclient.common.AdaptivePollPolicy;
+import com.cx.restclient.common.Deadline;
 import com.cx.restclient.common.Waiter;
 import com.cx.restclient.configuration.CxScanConfig;
 import com.cx.restclient.cxArm.dto.Policy;
 import com.cx.restclient.dto.Status;
 import com.cx.restclient.exception.CxClientException;
 import com.cx.restclient.httpClient.CxHttpClient;
+import com.cx.restclient.httpClient.MetricsRecorder;
 import com.cx.restclient.osa.dto.*;
 import com.cx.restclient.osa.utils.OSAUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.HttpEntity;
 import org.slf4j.Logger;
 import org.whitesource.fs.ComponentScan;
 
@@ -21,7 +24,7 @@ import java.util.Properties;
 import static com.cx.restclient.cxArm.dto.CxProviders.OPEN_SOURCE;
 import static com.cx.restclient.cxArm.utils.CxARMUtils.getProjectViolatedPolicies;
 import static com.cx.restclient.httpClient.utils.ContentType.CONTENT_TYPE_APPLICATION_JSON_V1;
-import static com.cx.restclient.httpClient.utils.HttpClientHelper.convertToJson;
+import static com.cx.restclient.httpClient.utils.HttpClientHelper.convertToJsonEntity;
 import static com.cx.restclient.osa.utils.OSAParam.*;
 import static com.cx.restclient.osa.utils.OSAUtils.writeJsonToFile;
 
@@ -33,7 +36,8 @@ class CxOSAClient {
     private CxHttpClient httpClient;
     private Logger log;
     private CxScanConfig config;
-    private Waiter<OSAScanStatus> osaWaiter = new Waiter<OSAScanStatus>("CxOSA scan", 20) {
+    private Deadline deadline = Deadline.NONE;
+    private Waiter<OSAScanStatus> osaWaiter = new Waiter<OSAScanStatus>("CxOSA scan", new AdaptivePollPolicy(2000, 60000)) {
         @Override
         public OSAScanStatus getStatus(String id) throws CxClientException, IOException {
             return getOSAScanStatus(id);
@@ -41,7 +45,7 @@ class CxOSAClient {
 
         @Override
         public void printProgress(OSAScanStatus scanStatus) {
-            printOSAProgress(scanStatus, getStartTimeSec());
+            printOSAProgress(scanStatus, getProgress().getElapsedMillis());
         }
 
         @Override
@@ -54,6 +58,18 @@ class CxOSAClient {
         this.log = log;
         this.httpClient = client;
         this.config = config;
+        setMetricsRecorder(client.getMetricsRecorder());
+        if (config.getStatusPollPolicy() != null) {
+            osaWaiter.setPollPolicy(config.getStatusPollPolicy());
+        }
+    }
+
+    void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        osaWaiter.setMetricsRecorder(metricsRecorder);
+    }
+
+    void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
     }
 
     //API
@@ -95,7 +111,7 @@ class CxOSAClient {
     public OSAResults getOSAResults(String scanId, long projectId) throws CxClientException, InterruptedException, IOException {
         log.info("-------------------------------------Get CxOSA Results:-----------------------------------");
         log.info("Waiting for OSA scan to finish");
-        OSAScanStatus osaScanStatus = osaWaiter.waitForTaskToFinish(scanId,this.config.getOsaScanTimeoutInMinutes(), log);
+        OSAScanStatus osaScanStatus = osaWaiter.waitForTaskToFinish(scanId, this.config.getOsaScanTimeoutInMinutes(), deadline, log);
         log.info("OSA scan finished successfully. Retrieving OSA scan results");
 
         log.info("Creating OSA reports");
@@ -160,7 +176,7 @@ class CxOSAClient {
 
     private CreateOSAScanResponse sendOSARequest(long projectId, String osaDependenciesJson) throws IOException, CxClientException {
         CreateOSAScanRequest req = new CreateOSAScanRequest(projectId, osaDependenciesJson);
-        StringEntity entity = new StringEntity(convertToJson(req));
+        HttpEntity entity = convertToJsonEntity(req);
         return httpClient.postRequest(OSA_SCAN_PROJECT, CONTENT_TYPE_APPLICATION_JSON_V1, entity, CreateOSAScanResponse.class, 201, "create OSA scan");
     }
 
@@ -199,8 +215,8 @@ class CxOSAClient {
         return scanStatus;
     }
 
-    private void printOSAProgress(OSAScanStatus scanStatus, long startTime) {
-        long elapsedSec = System.currentTimeMillis() / 1000 - startTime;
+    private void printOSAProgress(OSAScanStatus scanStatus, long elapsedMillis) {
+        long elapsedSec = elapsedMillis / 1000;
         long hours = elapsedSec / 3600;
         long minutes = elapsedSec % 3600 / 60;
         long seconds = elapsedSec % 60;
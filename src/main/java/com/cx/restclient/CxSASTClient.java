@@ -1,39 +1,53 @@
 package com.cx.restclient;
 
+import com.cx.restclient.common.AdaptivePollPolicy;
+import com.cx.restclient.common.Deadline;
+import com.cx.restclient.common.PollProgress;
+import com.cx.restclient.common.PollScheduler;
 import com.cx.restclient.common.Waiter;
 import com.cx.restclient.configuration.CxScanConfig;
 import com.cx.restclient.dto.RemoteSourceRequest;
 import com.cx.restclient.dto.RemoteSourceTypes;
 import com.cx.restclient.dto.Status;
 import com.cx.restclient.exception.CxClientException;
+import com.cx.restclient.exception.CxHTTPClientException;
 import com.cx.restclient.httpClient.CxHttpClient;
+import com.cx.restclient.httpClient.MetricsRecorder;
 import com.cx.restclient.sast.dto.*;
+import com.cx.restclient.sast.utils.SASTResultsAggregator;
 import com.cx.restclient.sast.utils.SASTUtils;
+import com.cx.restclient.sast.utils.ScanHistory;
 import com.cx.restclient.sast.utils.zip.CxZipUtils;
 import com.google.gson.Gson;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.InputStreamBody;
+import org.apache.http.entity.mime.content.ContentBody;
+import org.apache.http.entity.mime.content.FileBody;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import static com.cx.restclient.common.CxPARAM.CX_REPORT_LOCATION;
 import static com.cx.restclient.cxArm.dto.CxProviders.SAST;
 import static com.cx.restclient.cxArm.utils.CxARMUtils.getProjectViolatedPolicies;
 import static com.cx.restclient.httpClient.utils.ContentType.*;
-import static com.cx.restclient.httpClient.utils.HttpClientHelper.convertToJson;
+import static com.cx.restclient.httpClient.utils.HttpClientHelper.convertToJsonEntity;
 import static com.cx.restclient.sast.utils.SASTParam.*;
 import static com.cx.restclient.sast.utils.SASTUtils.*;
 
@@ -47,26 +61,51 @@ class CxSASTClient {
     private Logger log;
     private CxHttpClient httpClient;
     private CxScanConfig config;
-    private int reportTimeoutSec = 5000;
-    private int cxARMTimeoutSec = 1000;
-    private Waiter<ResponseQueueScanStatus> sastWaiter = new Waiter<ResponseQueueScanStatus>("CxSAST scan", 20) {
+    //stage timeouts of a run without a deadline
+    private static final int REPORT_TIMEOUT_SEC = 5000;
+    private static final int CXARM_TIMEOUT_SEC = 1000;
+    private Deadline deadline = Deadline.NONE;
+    private boolean zipStreamingRejected = false;
+    private volatile long finishedScanId = -1;
+    private ScanHistory scanHistory;
+    //of the scan being waited for, measured by its wait
+    private volatile ScanHistory.Prediction scanPrediction;
+    private volatile long scanQueuedMillis = -1;
+    private volatile long scanTotalMillis = -1;
+    private volatile boolean slowScanReported;
+    private Waiter<ResponseQueueScanStatus> sastWaiter = new Waiter<ResponseQueueScanStatus>("CxSAST scan", new AdaptivePollPolicy(2000, 120000)) {
         @Override
         public ResponseQueueScanStatus getStatus(String id) throws CxClientException, IOException {
             return getSASTScanStatus(id);
         }
 
+        @Override
+        protected int getProgressPercent(ResponseQueueScanStatus scanStatus) {
+            return scanStatus.getTotalPercent();
+        }
+
+        @Override
+        protected long getExpectedDurationMillis(String taskId) {
+            ScanHistory.Prediction prediction = scanPrediction;
+            return prediction == null ? -1 : prediction.getDurationMillis();
+        }
+
         @Override
         public void printProgress(ResponseQueueScanStatus scanStatus) {
-            printSASTProgress(scanStatus, getStartTimeSec());
+            if (scanQueuedMillis < 0 && !isQueued(scanStatus)) {
+                scanQueuedMillis = getProgress().getElapsedMillis();
+            }
+            printSASTProgress(scanStatus, getProgress());
         }
 
         @Override
         public ResponseQueueScanStatus resolveStatus(ResponseQueueScanStatus scanStatus) throws CxClientException {
+            scanTotalMillis = getProgress().getElapsedMillis();
             return resolveSASTStatus(scanStatus);
         }
     };
 
-    private Waiter<ReportStatus> reportWaiter = new Waiter<ReportStatus>("Scan report", 10) {
+    private Waiter<ReportStatus> reportWaiter = new Waiter<ReportStatus>("Scan report", new AdaptivePollPolicy(1000, 10000)) {
         @Override
         public ReportStatus getStatus(String id) throws CxClientException, IOException {
             return getReportStatus(id);
@@ -74,7 +113,7 @@ class CxSASTClient {
 
         @Override
         public void printProgress(ReportStatus reportStatus) {
-            printReportProgress(reportStatus, getStartTimeSec());
+            printReportProgress(reportStatus, getDeadline());
         }
 
         @Override
@@ -83,7 +122,7 @@ class CxSASTClient {
         }
     };
 
-    private Waiter<CxARMStatus> cxARMWaiter = new Waiter<CxARMStatus>("CxARM policy violations", 20) {
+    private Waiter<CxARMStatus> cxARMWaiter = new Waiter<CxARMStatus>("CxARM policy violations", new AdaptivePollPolicy(1000, 20000)) {
         @Override
         public CxARMStatus getStatus(String id) throws CxClientException, IOException {
             return getCxARMStatus(id);
@@ -91,7 +130,7 @@ class CxSASTClient {
 
         @Override
         public void printProgress(CxARMStatus cxARMStatus) {
-            printCxARMProgress(cxARMStatus, getStartTimeSec());
+            printCxARMProgress(cxARMStatus, getDeadline());
         }
 
         @Override
@@ -104,6 +143,30 @@ class CxSASTClient {
         this.log = log;
         this.httpClient = client;
         this.config = config;
+        setMetricsRecorder(client.getMetricsRecorder());
+        if (config.getScanHistoryFile() != null) {
+            scanHistory = ScanHistory.getShared(config.getScanHistoryFile(), log);
+        }
+        if (config.getStatusPollPolicy() != null) {
+            for (Waiter<?> waiter : Arrays.asList(sastWaiter, reportWaiter, cxARMWaiter)) {
+                waiter.setPollPolicy(config.getStatusPollPolicy());
+            }
+        }
+    }
+
+    void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        for (Waiter<?> waiter : Arrays.asList(sastWaiter, reportWaiter, cxARMWaiter)) {
+            waiter.setMetricsRecorder(metricsRecorder);
+        }
+    }
+
+    void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    //the deadline of the run, or else a deadline of the stage alone
+    private Deadline getStageDeadline(int defaultTimeoutSec) {
+        return deadline.isBounded() ? deadline : new Deadline(defaultTimeoutSec * 1000L);
     }
 
     //**------ API  ------**//
@@ -137,10 +200,11 @@ class CxSASTClient {
         //prepare sources for scan
         if (config.getZipFile() == null) {
             log.info("Zipping sources");
-            File zipTempFile = CxZipUtils.zipWorkspaceFolder(config, MAX_ZIP_SIZE_BYTES, log);
-            //Upload zipped source file
-            uploadZipFile(zipTempFile, projectId);
-            deleteTempZipFile(zipTempFile, log);
+            if (config.isStreamZipUpload() && !zipStreamingRejected) {
+                uploadZipStream(projectId);
+            } else {
+                uploadZipTempFile(projectId);
+            }
         } else {
             uploadZipFile(config.getZipFile(), projectId);
         }
@@ -176,7 +240,7 @@ class CxSASTClient {
                 } else {
                     req.setBrowseMode("Depot");
                 }
-                entity = new StringEntity(convertToJson(req), ContentType.APPLICATION_JSON);
+                entity = convertToJsonEntity(req);
                 break;
             case SHARED:
                 entity = new StringEntity(new Gson().toJson(req), ContentType.APPLICATION_JSON);
@@ -209,13 +273,17 @@ class CxSASTClient {
         SASTResults sastResults;
 
         log.info("------------------------------------Get CxSAST Results:-----------------------------------");
-        //wait for SAST scan to finish
-        log.info("Waiting for CxSAST scan to finish.");
-        sastWaiter.waitForTaskToFinish(Long.toString(scanId), config.getSastScanTimeoutInMinutes() * 60, log);
+        //wait for SAST scan to finish, unless an asynchronous wait already did
+        if (finishedScanId != scanId) {
+            log.info("Waiting for CxSAST scan to finish.");
+            predictScanDuration(projectId);
+            sastWaiter.waitForTaskToFinish(Long.toString(scanId), config.getSastScanTimeoutInMinutes() * 60, deadline, log);
+        }
         log.info("Retrieving SAST scan results");
 
         //retrieve SAST scan results
         sastResults = retrieveSASTResults(scanId, projectId);
+        recordScanDuration(sastResults, projectId);
         if (config.getEnablePolicyViolations()) {
             resolveSASTViolation(sastResults, projectId);
         }
@@ -224,21 +292,82 @@ class CxSASTClient {
         //PDF report
         if (config.getGeneratePDFReport()) {
             log.info("Generating PDF report");
-            byte[] pdfReport = getScanReport(sastResults.getScanId(), ReportType.PDF, CONTENT_TYPE_APPLICATION_PDF_V1);
-            sastResults.setPDFReport(pdfReport);
-            if (config.getReportsDir() != null) {
-                String now = new SimpleDateFormat("dd_MM_yyyy-HH_mm_ss").format(new Date());
-                String pdfFileName = PDF_REPORT_NAME + "_" + now + ".pdf";
-                pdfFileName = writePDFReport(pdfReport, config.getReportsDir(), pdfFileName, log);
-                sastResults.setPdfFileName(pdfFileName);
+            String now = new SimpleDateFormat("dd_MM_yyyy-HH_mm_ss").format(new Date());
+            String pdfFileName = PDF_REPORT_NAME + "_" + now + ".pdf";
+            if (config.isStreamReportsToDisk()) {
+                File pdfFile = getScanReportToFile(sastResults.getScanId(), ReportType.PDF, CONTENT_TYPE_APPLICATION_PDF_V1, pdfFileName, true);
+                sastResults.setPDFReportFile(pdfFile, config.getReportsDir() == null);
+                if (config.getReportsDir() != null) {
+                    log.info("PDF report location: " + pdfFile.getAbsolutePath());
+                    sastResults.setPdfFileName(pdfFileName);
+                }
+            } else {
+                byte[] pdfReport = getScanReport(sastResults.getScanId(), ReportType.PDF, CONTENT_TYPE_APPLICATION_PDF_V1);
+                sastResults.setPDFReport(pdfReport);
+                if (config.getReportsDir() != null) {
+                    pdfFileName = writePDFReport(pdfReport, config.getReportsDir(), pdfFileName, log);
+                    sastResults.setPdfFileName(pdfFileName);
+                }
             }
         }
         return sastResults;
     }
 
+    /**
+     * Waits for the scan on the poll scheduler of the configuration instead of the calling thread.
+     */
+    CompletableFuture<ResponseQueueScanStatus> waitForSASTScanAsync(final long scanId, long projectId) {
+        log.info("Waiting for CxSAST scan to finish.");
+        predictScanDuration(projectId);
+        PollScheduler scheduler = config.getPollScheduler() != null ? config.getPollScheduler() : PollScheduler.getShared();
+        return sastWaiter.waitForTaskToFinishAsync(Long.toString(scanId), config.getSastScanTimeoutInMinutes() * 60, deadline, log, scheduler)
+                .thenApply(scanStatus -> {
+                    finishedScanId = scanId;
+                    return scanStatus;
+                });
+    }
+
+    private void predictScanDuration(long projectId) {
+        scanPrediction = scanHistory == null ? null : scanHistory.predict(config.getUrl(), projectId, getPresetKey(), Boolean.TRUE.equals(config.getIncremental()));
+        scanQueuedMillis = -1;
+        scanTotalMillis = -1;
+        slowScanReported = false;
+        if (scanPrediction != null) {
+            log.info("Expected CxSAST scan duration: " + formatDuration(scanPrediction.getDurationMillis()) + " (based on " + scanPrediction.getScans() + " previous scans)");
+        }
+    }
+
+    private void recordScanDuration(SASTResults sastResults, long projectId) {
+        if (scanHistory == null || scanTotalMillis < 0) {
+            return;
+        }
+        ScanHistory.Record record = new ScanHistory.Record();
+        record.server = config.getUrl();
+        record.projectId = projectId;
+        record.scanId = sastResults.getScanId();
+        record.finishedAtMillis = System.currentTimeMillis();
+        record.preset = getPresetKey();
+        record.incremental = Boolean.TRUE.equals(config.getIncremental());
+        record.loc = NumberUtils.toLong(sastResults.getLOC(), -1);
+        record.files = NumberUtils.toLong(sastResults.getFilesScanned(), -1);
+        record.queuedMillis = scanQueuedMillis;
+        record.totalMillis = scanTotalMillis;
+        scanHistory.add(record, log);
+    }
+
+    private String getPresetKey() {
+        return config.getPresetName() != null ? config.getPresetName() : String.valueOf(config.getPresetId());
+    }
+
+    private static boolean isQueued(ResponseQueueScanStatus scanStatus) {
+        String stage = scanStatus.getStage() == null ? null : scanStatus.getStage().getValue();
+        return CurrentStatus.QUEUED.value().equals(stage) || CurrentStatus.WAITING_TO_PROCESS.value().equals(stage)
+                || CurrentStatus.UNZIPPING.value().equals(stage);
+    }
+
     private void resolveSASTViolation(SASTResults sastResults, long projectId) {
         try {
-            cxARMWaiter.waitForTaskToFinish(Long.toString(projectId), cxARMTimeoutSec, log);
+            cxARMWaiter.waitForTaskToFinish(Long.toString(projectId), 0, getStageDeadline(CXARM_TIMEOUT_SEC), log);
             getProjectViolatedPolicies(httpClient, config.getCxARMUrl(), projectId, SAST.value())
                     .forEach(sastResults::addPolicy);
         } catch (Exception ex) {
@@ -253,10 +382,20 @@ class CxSASTClient {
 
         //SAST detailed report
         if (config.getGenerateXmlReport() == null || config.getGenerateXmlReport()) {
-            byte[] cxReport = getScanReport(sastResults.getScanId(), ReportType.XML, CONTENT_TYPE_APPLICATION_XML_V1);
-            CxXMLResults reportObj = convertToXMLResult(cxReport);
-            sastResults.setScanDetailedReport(reportObj);
-            sastResults.setRawXMLReport(cxReport);
+            if (config.isStreamReportsToDisk()) {
+                //the XML report is not one of the reports written to reportsDir
+                File cxReport = getScanReportToFile(sastResults.getScanId(), ReportType.XML, CONTENT_TYPE_APPLICATION_XML_V1, XML_REPORT_NAME + "_" + scanId + ".xml", false);
+                //results are aggregated while the report is parsed
+                SASTResultsAggregator aggregator = new SASTResultsAggregator();
+                parseXMLReport(cxReport, config.isXmlReportSummaryOnly(), aggregator);
+                sastResults.setScanDetailedReport(aggregator);
+                sastResults.setRawXMLReportFile(cxReport, true);
+            } else {
+                byte[] cxReport = getScanReport(sastResults.getScanId(), ReportType.XML, CONTENT_TYPE_APPLICATION_XML_V1);
+                CxXMLResults reportObj = convertToXMLResult(cxReport);
+                sastResults.setScanDetailedReport(reportObj);
+                sastResults.setRawXMLReport(cxReport);
+            }
         }
         sastResults.setSastResultsReady(true);
         return sastResults;
@@ -276,9 +415,12 @@ class CxSASTClient {
     //Cancel SAST Scan
     public void cancelSASTScan(long scanId) throws IOException, CxClientException {
         UpdateScanStatusRequest request = new UpdateScanStatusRequest(CurrentStatus.CANCELED);
-        String json = convertToJson(request);
-        StringEntity entity = new StringEntity(json);
-        httpClient.patchRequest(SAST_QUEUE_SCAN_STATUS.replace("{scanId}", Long.toString(scanId)), CONTENT_TYPE_APPLICATION_JSON_V1, entity, 200, "cancel SAST scan");
+        HttpEntity entity = convertToJsonEntity(request);
+        //the scan is cancelled even when the run deadline has passed, so that a timed out run does not leave it running
+        httpClient.cleanup(() -> {
+            httpClient.patchRequest(SAST_QUEUE_SCAN_STATUS.replace("{scanId}", Long.toString(scanId)), CONTENT_TYPE_APPLICATION_JSON_V1, entity, 200, "cancel SAST scan");
+            return null;
+        });
         log.info("SAST Scan canceled. (scanId: " + scanId + ")");
     }
 
@@ -313,21 +455,57 @@ class CxSASTClient {
     }
 
     private void defineScanSetting(ScanSettingRequest scanSetting) throws IOException, CxClientException {
-        StringEntity entity = new StringEntity(convertToJson(scanSetting));
+        HttpEntity entity = convertToJsonEntity(scanSetting);
         httpClient.putRequest(SAST_UPDATE_SCAN_SETTINGS, CONTENT_TYPE_APPLICATION_JSON_V1, entity, CxID.class, 200, "define scan setting");
     }
 
     private void uploadZipFile(File zipFile, long projectId) throws CxClientException, IOException {
-        InputStreamBody streamBody = new InputStreamBody(new FileInputStream(zipFile.getAbsoluteFile()), ContentType.APPLICATION_OCTET_STREAM, "zippedSource");
+        //a file body has a content length, so it is also accepted by servers that reject the chunked upload
+        uploadZipBody(new FileBody(zipFile.getAbsoluteFile(), ContentType.APPLICATION_OCTET_STREAM, "zippedSource"), projectId);
+    }
+
+    private void uploadZipTempFile(long projectId) throws CxClientException, IOException {
+        File zipTempFile = CxZipUtils.zipWorkspaceFolder(config, MAX_ZIP_SIZE_BYTES, log);
+        //Upload zipped source file
+        uploadZipFile(zipTempFile, projectId);
+        deleteTempZipFile(zipTempFile, log);
+    }
+
+    //zips straight into the chunked request body. The body cannot be sent twice, so it is neither retried nor re-sent
+    //after a token refresh: those failures fall back to the repeatable temp file upload, as do servers and proxies
+    //rejecting a chunked body or the Expect header
+    private void uploadZipStream(long projectId) throws CxClientException, IOException {
+        try {
+            uploadZipBody(CxZipUtils.createStreamingZipBody(config, MAX_ZIP_SIZE_BYTES, log), projectId);
+        } catch (CxHTTPClientException e) {
+            int status = e.getStatusCode();
+            if (status == HttpStatus.SC_LENGTH_REQUIRED || status == HttpStatus.SC_EXPECTATION_FAILED) {
+                log.info("Server rejected the streamed sources upload (" + status + "), zipping to a temporary file");
+                zipStreamingRejected = true;
+            } else if (status == HttpStatus.SC_UNAUTHORIZED || status == HttpStatus.SC_BAD_GATEWAY
+                    || status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_GATEWAY_TIMEOUT) {
+                log.info("Streamed sources upload failed (" + status + "), retrying with a temporary file");
+            } else {
+                throw e;
+            }
+            uploadZipTempFile(projectId);
+        } catch (IOException e) {
+            //e.g. a reset connection, or the body already streamed before a re-authentication
+            log.info("Streamed sources upload failed (" + e.getMessage() + "), retrying with a temporary file");
+            uploadZipTempFile(projectId);
+        }
+    }
+
+    private void uploadZipBody(ContentBody zipBody, long projectId) throws CxClientException, IOException {
         MultipartEntityBuilder builder = MultipartEntityBuilder.create();
         builder.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
-        builder.addPart("zippedSource", streamBody);
+        builder.addPart("zippedSource", zipBody);
         HttpEntity entity = builder.build();
         httpClient.postRequest(SAST_ZIP_ATTACHMENTS.replace("{projectId}", Long.toString(projectId)), null, entity, null, 204, "upload ZIP file");
     }
 
     private CxID createScan(CreateScanRequest request) throws CxClientException, IOException {
-        StringEntity entity = new StringEntity(convertToJson(request));
+        HttpEntity entity = convertToJsonEntity(request);
         return httpClient.postRequest(SAST_CREATE_SCAN, CONTENT_TYPE_APPLICATION_JSON_V1, entity, CxID.class, 201, "create new SAST Scan");
     }
 
@@ -347,18 +525,40 @@ class CxSASTClient {
         return (List<ResponseQueueScanStatus>) httpClient.getRequest(SAST_GET_QUEUED_SCANS.replace("{projectId}", Long.toString(projectId)), CONTENT_TYPE_APPLICATION_JSON_V1, ResponseQueueScanStatus.class, 200, "scans in the queue. (projectId: )" + projectId, true);
     }
 
+    private List<ResponseQueueScanStatus> getAllQueueScans() throws IOException, CxClientException {
+        return (List<ResponseQueueScanStatus>) httpClient.getRequest(SAST_GET_ALL_QUEUED_SCANS, CONTENT_TYPE_APPLICATION_JSON_V1, ResponseQueueScanStatus.class, 200, "scans in the queue", true);
+    }
+
     private CreateReportResponse createScanReport(CreateReportRequest reportRequest) throws CxClientException, IOException {
-        StringEntity entity = new StringEntity(convertToJson(reportRequest));
+        HttpEntity entity = convertToJsonEntity(reportRequest);
         return httpClient.postRequest(SAST_CREATE_REPORT, CONTENT_TYPE_APPLICATION_JSON_V1, entity, CreateReportResponse.class, 202, "to create " + reportRequest.getReportType() + " scan report");
     }
 
     private byte[] getScanReport(long scanId, ReportType reportType, String contentType) throws CxClientException, IOException, InterruptedException {
+        int reportId = createReportAndWait(scanId, reportType);
+        return getReport(reportId, contentType);
+    }
+
+    //streams the report to reportsDir when toReportsDir is set, otherwise to a temporary file owned by the results, instead of holding it in memory
+    private File getScanReportToFile(long scanId, ReportType reportType, String contentType, String fileName, boolean toReportsDir) throws CxClientException, IOException, InterruptedException {
+        int reportId = createReportAndWait(scanId, reportType);
+        File target;
+        if (toReportsDir && config.getReportsDir() != null) {
+            target = new File(config.getReportsDir() + CX_REPORT_LOCATION, fileName);
+        } else {
+            //owned by the results, which delete it with SASTResults.deleteTemporaryReports(); at the latest on JVM exit
+            target = File.createTempFile(StringUtils.substringBeforeLast(fileName, ".") + "_", "." + StringUtils.substringAfterLast(fileName, "."));
+            target.deleteOnExit();
+        }
+        return httpClient.getRequestToFile(SAST_GET_REPORT.replace("{reportId}", Long.toString(reportId)), contentType, target, 200, " scan report: " + reportId);
+    }
+
+    private int createReportAndWait(long scanId, ReportType reportType) throws CxClientException, IOException, InterruptedException {
         CreateReportRequest reportRequest = new CreateReportRequest(scanId, reportType.name());
         CreateReportResponse createReportResponse = createScanReport(reportRequest);
         int reportId = createReportResponse.getReportId();
-        reportWaiter.waitForTaskToFinish(Long.toString(reportId), reportTimeoutSec, log);
-
-        return getReport(reportId, contentType);
+        reportWaiter.waitForTaskToFinish(Long.toString(reportId), 0, getStageDeadline(REPORT_TIMEOUT_SEC), log);
+        return reportId;
     }
 
     private byte[] getReport(long reportId, String contentType) throws CxClientException, IOException {
@@ -367,7 +567,13 @@ class CxSASTClient {
 
     //SCAN Waiter - overload methods
     private ResponseQueueScanStatus getSASTScanStatus(String scanId) throws CxClientException, IOException {
-        ResponseQueueScanStatus scanStatus = httpClient.getRequest(SAST_QUEUE_SCAN_STATUS.replace("{scanId}", scanId), CONTENT_TYPE_APPLICATION_JSON_V1, ResponseQueueScanStatus.class, 200, "SAST scan status", false);
+        ResponseQueueScanStatus scanStatus = null;
+        if (config.getScanQueueTracker() != null) {
+            scanStatus = config.getScanQueueTracker().getStatus(Long.parseLong(scanId), this::getAllQueueScans, log);
+        }
+        if (scanStatus == null) {
+            scanStatus = httpClient.getRequest(SAST_QUEUE_SCAN_STATUS.replace("{scanId}", scanId), CONTENT_TYPE_APPLICATION_JSON_V1, ResponseQueueScanStatus.class, 200, "SAST scan status", false);
+        }
         String currentStatus = scanStatus.getStage().getValue();
 
         if (CurrentStatus.FAILED.value().equals(currentStatus) || CurrentStatus.CANCELED.value().equals(currentStatus) ||
@@ -382,18 +588,30 @@ class CxSASTClient {
         return scanStatus;
     }
 
-    private void printSASTProgress(ResponseQueueScanStatus scanStatus, long startTime) {
-        long elapsedSec = System.currentTimeMillis() / 1000 - startTime;
+    private void printSASTProgress(ResponseQueueScanStatus scanStatus, PollProgress progress) {
+        String prefix = (scanStatus.getTotalPercent() < 10) ? " " : "";
+        long remainingMillis = progress.getEstimatedRemainingMillis();
+        log.info("Waiting for SAST scan results. Elapsed time: " + formatDuration(progress.getElapsedMillis()) + ". " + prefix +
+                scanStatus.getTotalPercent() + "% processed. Status: " + scanStatus.getStage().getValue() + "." +
+                (remainingMillis > 0 ? " Estimated time left: " + formatDuration(remainingMillis) + "." : ""));
+
+        ScanHistory.Prediction prediction = scanPrediction;
+        if (prediction != null && !slowScanReported && progress.getElapsedMillis() > prediction.getEnvelopeMillis()) {
+            slowScanReported = true;
+            log.warn("CxSAST scan is running for " + formatDuration(progress.getElapsedMillis()) + ", far longer than the " +
+                    formatDuration(prediction.getDurationMillis()) + " expected from " + prediction.getScans() + " previous scans of the project");
+        }
+    }
+
+    private static String formatDuration(long millis) {
+        long elapsedSec = millis / 1000;
         long hours = elapsedSec / 3600;
         long minutes = elapsedSec % 3600 / 60;
         long seconds = elapsedSec % 60;
         String hoursStr = (hours < 10) ? ("0" + Long.toString(hours)) : (Long.toString(hours));
         String minutesStr = (minutes < 10) ? ("0" + Long.toString(minutes)) : (Long.toString(minutes));
         String secondsStr = (seconds < 10) ? ("0" + Long.toString(seconds)) : (Long.toString(seconds));
-
-        String prefix = (scanStatus.getTotalPercent() < 10) ? " " : "";
-        log.info("Waiting for SAST scan results. Elapsed time: " + hoursStr + ":" + minutesStr + ":" + secondsStr + ". " + prefix +
-                scanStatus.getTotalPercent() + "% processed. Status: " + scanStatus.getStage().getValue() + ".");
+        return hoursStr + ":" + minutesStr + ":" + secondsStr;
     }
 
     private ResponseQueueScanStatus resolveSASTStatus(ResponseQueueScanStatus scanStatus) throws CxClientException {
@@ -421,9 +639,9 @@ class CxSASTClient {
         return reportStatus;
     }
 
-    private void printReportProgress(ReportStatus reportStatus, long startTime) {
+    private void printReportProgress(ReportStatus reportStatus, Deadline stageDeadline) {
         String reportType = reportStatus.getContentType().replace("application/", "");
-        log.info("Waiting for server to generate " + reportType + " report. " + (startTime + reportTimeoutSec - (System.currentTimeMillis() / 1000)) + " seconds left to timeout");
+        log.info("Waiting for server to generate " + reportType + " report. " + stageDeadline.getRemainingMillis() / 1000 + " seconds left to timeout");
     }
 
     private ReportStatus resolveReportStatus(ReportStatus reportStatus) throws CxClientException {
@@ -454,8 +672,8 @@ class CxSASTClient {
         return cxARMStatus;
     }
 
-    private void printCxARMProgress(CxARMStatus cxARMStatus, long startTime) {
-        log.info("Waiting for server to retrieve policy violations. " + (startTime + cxARMTimeoutSec - (System.currentTimeMillis() / 1000)) + " seconds left to timeout"); //todo Liran
+    private void printCxARMProgress(CxARMStatus cxARMStatus, Deadline stageDeadline) {
+        log.info("Waiting for server to retrieve policy violations. " + stageDeadline.getRemainingMillis() / 1000 + " seconds left to timeout"); //todo Liran
     }
 
     private CxARMStatus resolveCxARMStatus(CxARMStatus cxARMStatus) throws CxClientException {
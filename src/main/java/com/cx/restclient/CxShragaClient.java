@@ -1,5 +1,6 @@
 package com.cx.restclient;
 
+import com.cx.restclient.common.Deadline;
 import com.cx.restclient.common.summary.SummaryUtils;
 import com.cx.restclient.configuration.CxScanConfig;
 import com.cx.restclient.cxArm.dto.CxArmConfig;
@@ -7,23 +8,36 @@ import com.cx.restclient.dto.CxVersion;
 import com.cx.restclient.dto.Team;
 import com.cx.restclient.exception.CxClientException;
 import com.cx.restclient.exception.CxHTTPClientException;
+import com.cx.restclient.httpClient.CxConnectionPool;
 import com.cx.restclient.httpClient.CxHttpClient;
+import com.cx.restclient.httpClient.ExponentialBackoffRetryPolicy;
+import com.cx.restclient.httpClient.InMemoryMetricsRecorder;
+import com.cx.restclient.httpClient.MetricsRecorder;
+import com.cx.restclient.httpClient.ReferenceDataCache;
+import com.cx.restclient.httpClient.RetryPolicy;
 import com.cx.restclient.osa.dto.OSAResults;
 import com.cx.restclient.sast.dto.*;
 import org.apache.http.client.HttpResponseException;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.HttpEntity;
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.cx.restclient.common.CxPARAM.*;
 import static com.cx.restclient.cxArm.utils.CxARMUtils.getPoliciesNames;
 import static com.cx.restclient.httpClient.utils.ContentType.CONTENT_TYPE_APPLICATION_JSON_V1;
-import static com.cx.restclient.httpClient.utils.HttpClientHelper.convertToJson;
+import static com.cx.restclient.httpClient.utils.HttpClientHelper.convertToJsonEntity;
 import static com.cx.restclient.sast.utils.SASTParam.*;
 
 /**
@@ -40,21 +54,36 @@ public class CxShragaClient {
 
     private CxSASTClient sastClient;
     private CxOSAClient osaClient;
+    private volatile Deadline deadline = Deadline.NONE;
     private long sastScanId;
     private String osaScanId;
     private SASTResults sastResults = new SASTResults();
     private OSAResults osaResults = new OSAResults();
 
+    private TeamIndex teamIndex;
+    private List<Preset> indexedPresets;
+    private Map<String, Integer> presetIdsByName;
+
 
     public CxShragaClient(CxScanConfig config, Logger log) throws MalformedURLException {
         this.config = config;
         this.log = log;
+        CxConnectionPool connectionPool = config.isShareConnectionPool() ? CxConnectionPool.getSharedPool(config, log) : new CxConnectionPool(config, log);
         this.httpClient = new CxHttpClient(
                 config.getUrl(),
                 config.getUsername(),
                 config.getPassword(),
                 config.getCxOrigin(),
-                config.isDisableCertificateValidation(), config.isUseSSOLogin(), log);
+                config.isDisableCertificateValidation(), config.isUseSSOLogin(), connectionPool, config.getHttpTransport(), log);
+        for (RetryPolicy.OperationClass operation : RetryPolicy.OperationClass.values()) {
+            httpClient.setRetryPolicy(operation, new ExponentialBackoffRetryPolicy(config, operation));
+        }
+        if (config.isUseReferenceDataCache()) {
+            httpClient.setReferenceDataCache(ReferenceDataCache.getSharedCache(config.getReferenceDataCacheFile(), log), config.getReferenceDataCacheTtlSec() * 1000L);
+        }
+        if (config.isCollectHttpMetrics()) {
+            httpClient.setMetricsRecorder(new InMemoryMetricsRecorder());
+        }
         sastClient = new CxSASTClient(httpClient, log, config);
         osaClient = new CxOSAClient(httpClient, log, config);
     }
@@ -96,12 +125,14 @@ public class CxShragaClient {
     }
 
     public long createSASTScan() throws IOException, CxClientException {
+        startDeadline();
         sastScanId = sastClient.createSASTScan(projectId);
         sastResults.setSastScanLink(config.getUrl(), sastScanId, projectId);
         return sastScanId;
     }
 
     public String createOSAScan() throws IOException, CxClientException {
+        startDeadline();
         osaScanId = osaClient.createOSAScan(projectId);
         osaResults.setOsaProjectSummaryLink(config.getUrl(), projectId);
         return osaScanId;
@@ -116,6 +147,15 @@ public class CxShragaClient {
         return sastResults;
     }
 
+    /**
+     * Waits for the SAST scan without blocking the calling thread: its status is polled by the
+     * {@link com.cx.restclient.common.PollScheduler} of the configuration. Once the future completes,
+     * {@link #waitForSASTResults()} retrieves the results without waiting for the scan again.
+     */
+    public CompletableFuture<ResponseQueueScanStatus> waitForSASTScanAsync() {
+        return sastClient.waitForSASTScanAsync(sastScanId, projectId);
+    }
+
     public SASTResults getLatestSASTResults() throws InterruptedException, CxClientException, IOException {
         sastResults = sastClient.getLatestSASTResults(projectId);
         return sastResults;
@@ -153,7 +193,7 @@ public class CxShragaClient {
     }
 
     private CxArmConfig getCxARMConfig() throws IOException, CxClientException {
-        return httpClient.getRequest(CX_ARM_URL, CONTENT_TYPE_APPLICATION_JSON_V1, CxArmConfig.class, 200, "CxARM URL", false);
+        return httpClient.getCachedRequest(CX_ARM_URL, CONTENT_TYPE_APPLICATION_JSON_V1, CxArmConfig.class, "CxARM URL", false, false);
     }
 
     public String generateHTMLSummary() throws Exception {
@@ -176,10 +216,50 @@ public class CxShragaClient {
         return projects;
     }
 
+    /**
+     * Deadline of the run from {@link CxScanConfig#getRunTimeoutInMinutes()}, started by the first scan created.
+     * The scan waits, the report and policy violation waits and every request but the cleanup ones consume it.
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    private synchronized void startDeadline() {
+        if (deadline == Deadline.NONE && config.getRunTimeoutInMinutes() > 0) {
+            deadline = new Deadline(TimeUnit.MINUTES.toMillis(config.getRunTimeoutInMinutes()));
+            httpClient.setDeadline(deadline);
+            sastClient.setDeadline(deadline);
+            osaClient.setDeadline(deadline);
+        }
+    }
+
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        httpClient.setMetricsRecorder(metricsRecorder);
+        sastClient.setMetricsRecorder(httpClient.getMetricsRecorder());
+        osaClient.setMetricsRecorder(httpClient.getMetricsRecorder());
+    }
+
     public void close() {
+        writeHttpMetrics();
         httpClient.close();
     }
 
+    private void writeHttpMetrics() {
+        if (!(httpClient.getMetricsRecorder() instanceof InMemoryMetricsRecorder)) {
+            return;
+        }
+        InMemoryMetricsRecorder metrics = (InMemoryMetricsRecorder) httpClient.getMetricsRecorder();
+        log.info(metrics.getSummary());
+        if (config.getReportsDir() != null) {
+            try {
+                File metricsFile = metrics.writePrometheus(new File(config.getReportsDir() + CX_REPORT_LOCATION));
+                log.info("HTTP metrics location: " + metricsFile.getAbsolutePath());
+            } catch (IOException e) {
+                log.warn("Failed to write HTTP metrics: " + e.getMessage());
+            }
+        }
+    }
+
     //HELP config  Methods
     public void login() throws IOException, CxClientException {
         // perform login to server
@@ -189,7 +269,7 @@ public class CxShragaClient {
 
     public void getCxVersion() throws IOException, CxClientException {
         try {
-            config.setCxVersion(httpClient.getRequest(CX_VERSION, CONTENT_TYPE_APPLICATION_JSON_V1, CxVersion.class, 200, "cx Version", false));
+            config.setCxVersion(httpClient.getCachedRequest(CX_VERSION, CONTENT_TYPE_APPLICATION_JSON_V1, CxVersion.class, "cx Version", false, false));
             String hotfix = "";
             try {
                 if (config.getCxVersion().getHotFix() != null && Integer.parseInt(config.getCxVersion().getHotFix()) > 0) {
@@ -206,12 +286,12 @@ public class CxShragaClient {
 
     public String getTeamIdByName(String teamName) throws CxClientException, IOException {
         teamName = replaceDelimiters(teamName);
-        List<Team> allTeams = getTeamList();
-        for (Team team : allTeams) {
-            String fullName = replaceDelimiters(team.getFullName());
-            if (fullName.equalsIgnoreCase(teamName)) { //TODO caseSenesitive
-                return team.getId();
-            }
+        String teamId = getTeamIndex(false).teamIdsByName.get(teamName.toLowerCase(Locale.ROOT)); //TODO caseSenesitive
+        if (teamId == null && httpClient.hasReferenceDataCache()) { //the team may have been created after the list was cached
+            teamId = getTeamIndex(true).teamIdsByName.get(teamName.toLowerCase(Locale.ROOT));
+        }
+        if (teamId != null) {
+            return teamId;
         }
         throw new CxClientException("Could not resolve team ID from team name: " + teamName);
     }
@@ -225,28 +305,30 @@ public class CxShragaClient {
     }
 
     public String getTeamNameById(String teamId) throws CxClientException, IOException {
-        List<Team> allTeams = getTeamList();
-        for (Team team : allTeams) {
-            if (teamId.equals(team.getId())) {
-                return team.getFullName();
-            }
+        String teamName = getTeamIndex(false).teamNamesById.get(teamId);
+        if (teamName == null && httpClient.hasReferenceDataCache()) {
+            teamName = getTeamIndex(true).teamNamesById.get(teamId);
+        }
+        if (teamName != null) {
+            return teamName;
         }
         throw new CxClientException("Could not resolve team name from id: " + teamId);
     }
 
     public int getPresetIdByName(String presetName) throws CxClientException, IOException {
-        List<Preset> allPresets = getPresetList();
-        for (Preset preset : allPresets) {
-            if (preset.getName().equalsIgnoreCase(presetName)) { //TODO caseSenesitive- checkkk
-                return preset.getId();
-            }
+        Integer presetId = getPresetIndex(false).get(presetName.toLowerCase(Locale.ROOT)); //TODO caseSenesitive- checkkk
+        if (presetId == null && httpClient.hasReferenceDataCache()) {
+            presetId = getPresetIndex(true).get(presetName.toLowerCase(Locale.ROOT));
+        }
+        if (presetId != null) {
+            return presetId;
         }
 
         throw new CxClientException("Could not resolve preset ID from preset name: " + presetName);
     }
 
     public List<Team> getTeamList() throws IOException, CxClientException {
-        return (List<Team>) httpClient.getRequest(CXTEAMS, CONTENT_TYPE_APPLICATION_JSON_V1, Team.class, 200, "team list", true);
+        return new ArrayList<Team>(getCachedTeamList(false));
     }
 
     public Preset getPresetById(int presetId) throws IOException, CxClientException {
@@ -254,11 +336,62 @@ public class CxShragaClient {
     }
 
     public List<Preset> getPresetList() throws IOException, CxClientException {
-        return (List<Preset>) httpClient.getRequest(CXPRESETS, CONTENT_TYPE_APPLICATION_JSON_V1, Preset.class, 200, "preset list", true);
+        return new ArrayList<Preset>(getCachedPresetList(false));
     }
 
     public List<CxNameObj> getConfigurationSetList() throws IOException, CxClientException {
-        return (List<CxNameObj>) httpClient.getRequest(SAST_ENGINE_CONFIG, CONTENT_TYPE_APPLICATION_JSON_V1, CxNameObj.class, 200, "engine configurations", true);
+        return new ArrayList<CxNameObj>((List<CxNameObj>) httpClient.getCachedRequest(SAST_ENGINE_CONFIG, CONTENT_TYPE_APPLICATION_JSON_V1, CxNameObj.class, "engine configurations", true, false));
+    }
+
+    private List<Team> getCachedTeamList(boolean forceRevalidate) throws IOException, CxClientException {
+        return (List<Team>) httpClient.getCachedRequest(CXTEAMS, CONTENT_TYPE_APPLICATION_JSON_V1, Team.class, "team list", true, forceRevalidate);
+    }
+
+    private List<Preset> getCachedPresetList(boolean forceRevalidate) throws IOException, CxClientException {
+        return (List<Preset>) httpClient.getCachedRequest(CXPRESETS, CONTENT_TYPE_APPLICATION_JSON_V1, Preset.class, "preset list", true, forceRevalidate);
+    }
+
+    //the indexes are rebuilt only when the cached list instance changes
+    private synchronized TeamIndex getTeamIndex(boolean forceRevalidate) throws IOException, CxClientException {
+        List<Team> teams = getCachedTeamList(forceRevalidate);
+        if (teamIndex == null || teamIndex.teams != teams) {
+            teamIndex = new TeamIndex(teams);
+        }
+        return teamIndex;
+    }
+
+    private synchronized Map<String, Integer> getPresetIndex(boolean forceRevalidate) throws IOException, CxClientException {
+        List<Preset> presets = getCachedPresetList(forceRevalidate);
+        if (indexedPresets != presets) {
+            Map<String, Integer> index = new HashMap<String, Integer>();
+            for (Preset preset : presets) {
+                if (preset.getName() != null && !index.containsKey(preset.getName().toLowerCase(Locale.ROOT))) {
+                    index.put(preset.getName().toLowerCase(Locale.ROOT), preset.getId());
+                }
+            }
+            presetIdsByName = index;
+            indexedPresets = presets;
+        }
+        return presetIdsByName;
+    }
+
+    private class TeamIndex {
+        private final List<Team> teams;
+        private final Map<String, String> teamIdsByName = new HashMap<String, String>();
+        private final Map<String, String> teamNamesById = new HashMap<String, String>();
+
+        TeamIndex(List<Team> teams) {
+            this.teams = teams;
+            for (Team team : teams) {
+                String fullName = replaceDelimiters(team.getFullName()).toLowerCase(Locale.ROOT);
+                if (!teamIdsByName.containsKey(fullName)) {
+                    teamIdsByName.put(fullName, team.getId());
+                }
+                if (!teamNamesById.containsKey(team.getId())) {
+                    teamNamesById.put(team.getId(), team.getFullName());
+                }
+            }
+        }
     }
 
     public void setOsaFSAProperties(Properties fsaConfig) {  //For CxMaven plugin
@@ -340,8 +473,7 @@ public class CxShragaClient {
     }
 
     private Project createNewProject(CreateProjectRequest request) throws CxClientException, IOException {
-        String json = convertToJson(request);
-        StringEntity entity = new StringEntity(json);
+        HttpEntity entity = convertToJsonEntity(request);
         return httpClient.postRequest(CREATE_PROJECT, CONTENT_TYPE_APPLICATION_JSON_V1, entity, Project.class, 201, "create new project: " + request.getName());
     }
 }
\ No newline at end of file
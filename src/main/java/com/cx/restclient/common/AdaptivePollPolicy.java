@@ -0,0 +1,45 @@
+package com.cx.restclient.common;
+
+/**
+ * Polls often when the task is expected to finish soon and rarely in between.
+ * While the remaining time can be estimated from the progress of the task, each poll waits half of it, so the
+ * polls get closer as the predicted finish approaches, and once the task is late the delay grows with its lateness.
+ * Without an estimate (no progress reported yet) the delay grows with the elapsed time, so a short task is noticed
+ * quickly and a long one is not polled needlessly.
+ * The delay always stays between the minimum and maximum intervals.
+ */
+public class AdaptivePollPolicy implements PollPolicy {
+
+    //without an estimate, the finish is noticed within a quarter of the elapsed time
+    private static final int ELAPSED_FRACTION = 4;
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+
+    public AdaptivePollPolicy(long minIntervalMillis, long maxIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = Math.max(minIntervalMillis, maxIntervalMillis);
+    }
+
+    public long nextPollDelayMillis(PollProgress progress) {
+        long elapsed = progress.getElapsedMillis();
+        long finish = progress.getEstimatedFinishMillis();
+        long delay;
+        if (finish < 0) {
+            delay = elapsed / ELAPSED_FRACTION;
+        } else if (finish > elapsed) {
+            delay = (finish - elapsed) / 2;
+        } else {
+            delay = (elapsed - finish) / ELAPSED_FRACTION; //late: back off again as the delay grows
+        }
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, delay));
+    }
+
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+}
@@ -22,6 +22,7 @@ public abstract class CxPARAM {
 
     public static final String ORIGIN_HEADER = "cxOrigin";
     public static final String CSRF_TOKEN_HEADER = "CXCSRFToken";
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
     public static final String PROJECT_POLICY_VIOLATED_STATUS = "Project policy status : violated";
     public static final String PROJECT_POLICY_COMPLAINT_STATUS = "Project policy status : compliant";
 
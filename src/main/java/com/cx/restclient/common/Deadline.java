@@ -0,0 +1,120 @@
+package com.cx.restclient.common;
+
+import com.cx.restclient.exception.CxClientException;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget of a whole run, measured on the monotonic clock from its creation.
+ * The stages of the run (scan, reports, policy violations) and their HTTP requests all consume the same budget:
+ * waits poll no later than the deadline and fail once it has passed, and requests still in flight at that moment
+ * are cancelled through {@link #onExpiry(Runnable)}.
+ */
+public class Deadline {
+
+    /**
+     * A deadline that never expires.
+     */
+    public static final Deadline NONE = new Deadline(0);
+
+    private final long budgetNanos;
+    private final long startNanos = System.nanoTime();
+    private final Set<Runnable> cancellations = ConcurrentHashMap.newKeySet();
+    private volatile boolean timerStarted;
+
+    /**
+     * @param budgetMillis time until the deadline; 0 or less - no deadline
+     */
+    public Deadline(long budgetMillis) {
+        this.budgetNanos = budgetMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(budgetMillis) : -1;
+    }
+
+    public boolean isBounded() {
+        return budgetNanos > 0;
+    }
+
+    public long getBudgetMillis() {
+        return isBounded() ? TimeUnit.NANOSECONDS.toMillis(budgetNanos) : Long.MAX_VALUE;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the time left rounded up, so that a delay of that length ends past the deadline; 0 once expired,
+     * or Long.MAX_VALUE without a deadline
+     */
+    public long getRemainingMillis() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        long remainingNanos = budgetNanos - (System.nanoTime() - startNanos);
+        return remainingNanos > 0 ? (remainingNanos + 999999) / 1000000 : 0;
+    }
+
+    public boolean isExpired() {
+        return isBounded() && System.nanoTime() - startNanos >= budgetNanos;
+    }
+
+    /**
+     * @return the delay, shortened so that it ends at the deadline
+     */
+    public long limit(long delayMillis) {
+        return Math.min(delayMillis, getRemainingMillis());
+    }
+
+    /**
+     * @param operation what was aborted, e.g. "Scan report"
+     * @throws CxClientException if the deadline has passed
+     */
+    public void check(String operation) throws CxClientException {
+        if (isExpired()) {
+            throw expired(operation, null);
+        }
+    }
+
+    /**
+     * The error of an operation aborted by the deadline.
+     */
+    public CxClientException expired(String operation, Throwable cause) {
+        return new CxClientException("Failed to perform " + operation + ": " + operation + " has been automatically aborted: reached the timeout of the run ("
+                + TimeUnit.MILLISECONDS.toMinutes(getBudgetMillis()) + " minutes)", cause);
+    }
+
+    /**
+     * Registers the cancellation of an operation in flight, run when the deadline passes, or at once if it already has.
+     * The operation removes it with {@link #removeOnExpiry(Runnable)} when it completes.
+     */
+    public void onExpiry(Runnable cancel) {
+        if (!isBounded()) {
+            return;
+        }
+        cancellations.add(cancel);
+        if (!timerStarted) {
+            startTimer();
+        }
+        if (isExpired()) {
+            cancel.run();
+        }
+    }
+
+    public void removeOnExpiry(Runnable cancel) {
+        cancellations.remove(cancel);
+    }
+
+    private synchronized void startTimer() {
+        if (!timerStarted) {
+            timerStarted = true;
+            PollScheduler.getShared().schedule(this::expire, getRemainingMillis());
+        }
+    }
+
+    private void expire() {
+        for (Runnable cancel : cancellations) {
+            cancel.run();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.cx.restclient.common;
+
+/**
+ * Polls at a constant interval.
+ */
+public class FixedPollPolicy implements PollPolicy {
+
+    private final long intervalMillis;
+
+    public FixedPollPolicy(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long nextPollDelayMillis(PollProgress progress) {
+        return intervalMillis;
+    }
+}
@@ -0,0 +1,16 @@
+package com.cx.restclient.common;
+
+import java.io.Serializable;
+
+/**
+ * Decides how long a {@link Waiter} waits before the next status request.
+ * Implementations must be stateless or thread-safe: a policy can be shared by concurrent waits.
+ * A policy is part of the {@link com.cx.restclient.configuration.CxScanConfig}, so it must be serializable.
+ */
+public interface PollPolicy extends Serializable {
+
+    /**
+     * @return the delay before the next status request in milliseconds
+     */
+    long nextPollDelayMillis(PollProgress progress);
+}
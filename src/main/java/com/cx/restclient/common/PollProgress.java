@@ -0,0 +1,86 @@
+package com.cx.restclient.common;
+
+/**
+ * State of a {@link Waiter} passed to its {@link PollPolicy}: the polls so far, the elapsed time and the
+ * progress reported by the last status.
+ * The remaining time is estimated from the rate of progress since the reported percentage first changed, so
+ * time spent in a queue at a constant percentage does not slow the estimate down. Until the progress allows an
+ * estimate, the expected duration of the task, if known, stands in for it.
+ */
+public class PollProgress {
+
+    private int polls;
+    private long elapsedMillis;
+    private int percent = -1;
+    private long rateStartMillis = -1;
+    private int rateStartPercent = -1;
+    private long percentChangeMillis;
+    private long expectedDurationMillis = -1;
+
+    void setExpectedDurationMillis(long expectedDurationMillis) {
+        this.expectedDurationMillis = expectedDurationMillis;
+    }
+
+    /**
+     * Records a status request.
+     *
+     * @param percent progress reported by the status, or -1 if the status has no progress
+     */
+    void update(long elapsedMillis, int percent) {
+        this.polls++;
+        if (percent != this.percent) {
+            //it changed at some point since the previous poll
+            percentChangeMillis = (this.elapsedMillis + elapsedMillis) / 2;
+        }
+        this.elapsedMillis = elapsedMillis;
+        this.percent = percent;
+        if (percent >= 0 && (rateStartPercent < 0 || percent <= rateStartPercent)) {
+            //the rate is measured from the last poll before the percentage moved
+            rateStartMillis = elapsedMillis;
+            rateStartPercent = percent;
+        }
+    }
+
+    /**
+     * Status requests made so far, including the first one.
+     */
+    public int getPolls() {
+        return polls;
+    }
+
+    /**
+     * Time since the wait started, at the last status request.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Progress reported by the last status, or -1 if the status has no progress.
+     */
+    public int getPercent() {
+        return percent;
+    }
+
+    /**
+     * @return the estimated time until the task completes, 0 if it is past its estimate, or -1 if the progress
+     * so far does not allow an estimate
+     */
+    public long getEstimatedRemainingMillis() {
+        long finish = getEstimatedFinishMillis();
+        return finish < 0 ? -1 : Math.max(0, finish - elapsedMillis);
+    }
+
+    /**
+     * @return the elapsed time at which the task is expected to complete, or -1 if neither the progress so far nor
+     * an expected duration allow an estimate
+     */
+    public long getEstimatedFinishMillis() {
+        if (percent <= rateStartPercent || rateStartPercent < 0 || percent >= 100) {
+            return expectedDurationMillis;
+        }
+        //the finish is extrapolated from the time the current percentage was reached
+        double millisPerPercent = (double) (percentChangeMillis - rateStartMillis) / (percent - rateStartPercent);
+        return percentChangeMillis + (long) ((100 - percent) * millisPerPercent);
+    }
+}
@@ -0,0 +1,63 @@
+package com.cx.restclient.common;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the status requests of many {@link Waiter} waits on a few threads.
+ * A wait holds no thread between its polls: each poll is a task scheduled after the delay chosen by the
+ * {@link PollPolicy}, so thousands of outstanding scans need only as many threads as concurrent status requests.
+ * The threads are daemons, and the shared scheduler is never shut down.
+ */
+public class PollScheduler {
+
+    public static final int DEFAULT_THREADS = 4;
+
+    private static volatile PollScheduler sharedScheduler;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    public PollScheduler(int threads) {
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cx-poll-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public static PollScheduler getShared() {
+        if (sharedScheduler == null) {
+            synchronized (PollScheduler.class) {
+                if (sharedScheduler == null) {
+                    sharedScheduler = new PollScheduler(DEFAULT_THREADS);
+                }
+            }
+        }
+        return sharedScheduler;
+    }
+
+    void schedule(Runnable poll, long delayMillis) {
+        executor.schedule(poll, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Polls scheduled and not started yet.
+     */
+    public int getPendingPolls() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the scheduler. Outstanding waits are not completed.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
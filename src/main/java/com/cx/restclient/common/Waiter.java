@@ -3,10 +3,14 @@ package com.cx.restclient.common;
 import com.cx.restclient.dto.BaseStatus;
 import com.cx.restclient.dto.Status;
 import com.cx.restclient.exception.CxClientException;
+import com.cx.restclient.httpClient.MetricsRecorder;
 import org.slf4j.Logger;
 
 import java.io.IOException;
-import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Galn on 13/02/2018.
@@ -15,52 +19,202 @@ public abstract class Waiter<T> {
 
     private int retry = 3;
     private String scanType;
-    private int sleepIntervalSec;
+    private PollPolicy pollPolicy;
+    private MetricsRecorder metricsRecorder = MetricsRecorder.NOOP;
 
+    /**
+     * @param interval seconds between status requests
+     */
     public Waiter(String scanType, int interval) {
+        this(scanType, new FixedPollPolicy(interval * 1000L));
+    }
+
+    public Waiter(String scanType, PollPolicy pollPolicy) {
         this.scanType = scanType;
-        this.sleepIntervalSec = interval;
+        this.pollPolicy = pollPolicy;
     }
 
-    private long startTimeSec;
+    private volatile long startTimeSec;
+    private volatile PollProgress progress = new PollProgress();
+    private volatile Deadline deadline = Deadline.NONE;
+    //the wait whose callbacks run on the current thread, when waits run on a PollScheduler
+    private final ThreadLocal<Wait> currentWait = new ThreadLocal<Wait>();
 
     protected Status status = null;
 
     public T waitForTaskToFinish(String taskId, Integer scanTimeoutSec, Logger log) throws CxClientException, InterruptedException {
-        startTimeSec = System.currentTimeMillis() / 1000;
-        long elapsedTimeSec = 0L;
-        T obj;
+        return waitForTaskToFinish(taskId, scanTimeoutSec, Deadline.NONE, log);
+    }
 
-        try {
-            obj = getStatus(taskId);
-            status = ((BaseStatus) obj).getBaseStatus();
+    /**
+     * @param scanTimeoutSec timeout of this wait; 0 or less - none
+     * @param deadline       deadline of the run the wait belongs to; the wait fails once it has passed
+     */
+    public T waitForTaskToFinish(String taskId, Integer scanTimeoutSec, Deadline deadline, Logger log) throws CxClientException, InterruptedException {
+        Wait wait = new Wait(taskId, scanTimeoutSec, deadline, log);
+        long delay;
+        while ((delay = wait.poll()) >= 0) {
+            Thread.sleep(delay);
+        }
+        return wait.resolve();
+    }
 
+    /**
+     * Waits for the task on a scheduler instead of the calling thread. The status requests and callbacks run on
+     * the scheduler threads, one wait at a time, so a wait must not block them beyond its status request.
+     * Cancelling the returned future stops the wait.
+     *
+     * @return a future completed with the resolved status, or failed with a {@link java.util.concurrent.CompletionException}
+     * whose cause is the {@link CxClientException} the blocking wait would throw
+     */
+    public CompletableFuture<T> waitForTaskToFinishAsync(String taskId, Integer scanTimeoutSec, Logger log, PollScheduler scheduler) {
+        return waitForTaskToFinishAsync(taskId, scanTimeoutSec, Deadline.NONE, log, scheduler);
+    }
 
-            while (status.equals(Status.IN_PROGRESS) && (scanTimeoutSec <= 0 || elapsedTimeSec < scanTimeoutSec)) {
-                Thread.sleep(sleepIntervalSec * 1000);
+    public CompletableFuture<T> waitForTaskToFinishAsync(String taskId, Integer scanTimeoutSec, Deadline deadline, Logger log, PollScheduler scheduler) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        final Wait wait = new Wait(taskId, scanTimeoutSec, deadline, log);
+        Runnable poll = new Runnable() {
+            public void run() {
+                if (future.isDone()) { //cancelled
+                    return;
+                }
                 try {
-                    obj = getStatus(taskId);
-                    status = ((BaseStatus) obj).getBaseStatus();
-                    log.debug(status.value());
+                    long delay = wait.poll();
+                    if (delay >= 0) {
+                        scheduler.schedule(this, delay);
+                    } else {
+                        future.complete(wait.resolve());
+                    }
                 } catch (Exception e) {
-                    log.debug("Failed to get status from " + scanType + ". retrying (" + (retry - 1) + " tries left). Error message: " + e.getMessage());
-                    retry--;
-                    if (retry <= 0) {
-                        throw new CxClientException("Failed to get status from " + scanType + ". Error message: " + e.getMessage(), e);
+                    future.completeExceptionally(new CompletionException(e));
+                }
+            }
+        };
+        try {
+            scheduler.schedule(poll, 0);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new CompletionException(e));
+        }
+        return future;
+    }
+
+    /**
+     * State of one wait; the blocking and scheduled waits drive it the same way, one poll at a time.
+     */
+    private class Wait {
+        private final String taskId;
+        private final Integer scanTimeoutSec;
+        private final Deadline deadline;
+        private final Logger log;
+        private final long startTimeSec = System.currentTimeMillis() / 1000;
+        private final long startNanos = System.nanoTime();
+        private final PollProgress progress = new PollProgress();
+        private int retry = Waiter.this.retry;
+        private long elapsedTimeSec = 0L;
+        private T obj;
+        private Status status;
+
+        Wait(String taskId, Integer scanTimeoutSec, Deadline deadline, Logger log) {
+            this.taskId = taskId;
+            this.scanTimeoutSec = scanTimeoutSec;
+            this.deadline = deadline;
+            this.log = log;
+            Waiter.this.startTimeSec = startTimeSec;
+            Waiter.this.progress = progress;
+            Waiter.this.deadline = deadline;
+            progress.setExpectedDurationMillis(getExpectedDurationMillis(taskId));
+        }
+
+        /**
+         * Requests the status once.
+         *
+         * @return the delay before the next status request, or -1 when the task is no longer in progress
+         */
+        long poll() throws CxClientException {
+            currentWait.set(this);
+            try {
+                if (progress.getPolls() == 0) {
+                    obj = getStatus(taskId);
+                    setStatus(((BaseStatus) obj).getBaseStatus());
+                    progress.update(0, getProgressPercent(obj));
+                } else {
+                    try {
+                        obj = getStatus(taskId);
+                        setStatus(((BaseStatus) obj).getBaseStatus());
+                        progress.update(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), getProgressPercent(obj));
+                        log.debug(status.value());
+                    } catch (Exception e) {
+                        log.debug("Failed to get status from " + scanType + ". retrying (" + (retry - 1) + " tries left). Error message: " + e.getMessage());
+                        retry--;
+                        if (retry <= 0) {
+                            throw new CxClientException("Failed to get status from " + scanType + ". Error message: " + e.getMessage(), e);
+                        }
+                        return nextDelay();
                     }
-                    continue;
+                    elapsedTimeSec = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+                    printProgress(obj);
                 }
-                elapsedTimeSec = (new Date()).getTime() / 1000 - startTimeSec;
-                printProgress(obj);
+                return nextDelay();
+            } catch (Exception e) {
+                finish();
+                throw new CxClientException("Failed to get status from " + scanType + ". Error message: " + e.getMessage(), e);
+            } finally {
+                currentWait.remove();
+            }
+        }
 
+        private long nextDelay() throws CxClientException {
+            if (status.equals(Status.IN_PROGRESS) && (scanTimeoutSec <= 0 || elapsedTimeSec < scanTimeoutSec) && !deadline.isExpired()) {
+                return deadline.limit(pollPolicy.nextPollDelayMillis(progress));
             }
             if (scanTimeoutSec > 0 && scanTimeoutSec <= elapsedTimeSec) {
                 throw new CxClientException("Failed to perform " + scanType + ": " + scanType + " has been automatically aborted: reached the user-specified timeout (" + scanTimeoutSec / 60 + " minutes)");
             }
-        } catch (Exception e) {
-            throw new CxClientException("Failed to get status from " + scanType + ". Error message: " + e.getMessage(), e);
+            if (status.equals(Status.IN_PROGRESS)) {
+                throw deadline.expired(scanType, null);
+            }
+            finish();
+            return -1;
+        }
+
+        private void setStatus(Status status) {
+            this.status = status;
+            Waiter.this.status = status;
+        }
+
+        private void finish() {
+            long waitNanos = System.nanoTime() - startNanos;
+            log.debug(scanType + " status requested " + progress.getPolls() + " times in " + TimeUnit.NANOSECONDS.toSeconds(waitNanos) + " seconds");
+            metricsRecorder.recordWait(scanType, progress.getPolls(), waitNanos);
         }
-        return resolveStatus(obj);
+
+        T resolve() throws CxClientException {
+            currentWait.set(this);
+            try {
+                return resolveStatus(obj);
+            } finally {
+                currentWait.remove();
+            }
+        }
+    }
+
+    /**
+     * Progress of the task reported by a status, used by the {@link PollPolicy} to estimate its completion.
+     *
+     * @return a percentage, or -1 if the status has no progress
+     */
+    protected int getProgressPercent(T status) {
+        return -1;
+    }
+
+    /**
+     * Duration of the task expected before it reports progress, e.g. from past runs.
+     *
+     * @return milliseconds from the start of the wait, or -1 if unknown
+     */
+    protected long getExpectedDurationMillis(String taskId) {
+        return -1;
     }
 
     public abstract T getStatus(String id) throws CxClientException, IOException;
@@ -69,15 +223,49 @@ public abstract class Waiter<T> {
 
     public abstract T resolveStatus(T status) throws CxClientException;
 
+    /**
+     * Status of the wait whose callback is running, or else of the last wait.
+     */
     public Status getStatus() {
-        return status;
+        Wait wait = currentWait.get();
+        return wait != null ? wait.status : status;
     }
 
     public void setStatus(Status status) {
         this.status = status;
     }
 
+    /**
+     * Start of the wait whose callback is running, or else of the last wait.
+     */
     public long getStartTimeSec() {
-        return startTimeSec;
+        Wait wait = currentWait.get();
+        return wait != null ? wait.startTimeSec : startTimeSec;
+    }
+
+    /**
+     * Polls and progress of the wait whose callback is running, or else of the last wait.
+     */
+    public PollProgress getProgress() {
+        Wait wait = currentWait.get();
+        return wait != null ? wait.progress : progress;
+    }
+
+    /**
+     * Deadline of the wait whose callback is running, or else of the last wait.
+     */
+    public Deadline getDeadline() {
+        Wait wait = currentWait.get();
+        return wait != null ? wait.deadline : deadline;
+    }
+
+    public Waiter<T> setPollPolicy(PollPolicy pollPolicy) {
+        this.pollPolicy = pollPolicy;
+        return this;
+    }
+
+    public Waiter<T> setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder == null ? MetricsRecorder.NOOP : metricsRecorder;
+        return this;
     }
 }
@@ -1,7 +1,18 @@
 package com.cx.restclient.configuration;
 
+import com.cx.restclient.common.PollPolicy;
+import com.cx.restclient.common.PollScheduler;
 import com.cx.restclient.dto.CxVersion;
 import com.cx.restclient.dto.RemoteSourceTypes;
+import com.cx.restclient.httpClient.ApacheHttpTransport;
+import com.cx.restclient.httpClient.CxAsyncHttpClient;
+import com.cx.restclient.httpClient.CxConnectionPool;
+import com.cx.restclient.httpClient.ExponentialBackoffRetryPolicy;
+import com.cx.restclient.httpClient.ReferenceDataCache;
+import com.cx.restclient.httpClient.RetryPolicy;
+import com.cx.restclient.sast.utils.ScanQueueTracker;
+import com.cx.restclient.sast.utils.zip.ZipCompression;
+import com.cx.restclient.sast.utils.zip.Zipper;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
@@ -22,6 +33,41 @@ public class CxScanConfig implements Serializable {
     private boolean disableCertificateValidation = false;
     private boolean useSSOLogin = false;
 
+    private String httpTransport = ApacheHttpTransport.NAME;
+    private boolean shareConnectionPool = true;
+    private int connectionPoolMaxTotal = CxConnectionPool.DEFAULT_MAX_TOTAL;
+    private int connectionPoolMaxPerRoute = CxConnectionPool.DEFAULT_MAX_PER_ROUTE;
+    private int connectionIdleTimeoutSec = CxConnectionPool.DEFAULT_IDLE_TIMEOUT_SEC;
+    private int connectionKeepAliveSec = CxConnectionPool.DEFAULT_KEEP_ALIVE_SEC;
+    private int asyncHttpThreads = CxAsyncHttpClient.DEFAULT_THREADS;
+    private int asyncHttpMaxQueued = CxAsyncHttpClient.DEFAULT_MAX_QUEUED;
+
+    private int readRetryMaxAttempts = ExponentialBackoffRetryPolicy.DEFAULT_READ_MAX_ATTEMPTS;
+    private int updateRetryMaxAttempts = ExponentialBackoffRetryPolicy.DEFAULT_UPDATE_MAX_ATTEMPTS;
+    private int createRetryMaxAttempts = ExponentialBackoffRetryPolicy.DEFAULT_CREATE_MAX_ATTEMPTS;
+    private long retryInitialDelayMillis = ExponentialBackoffRetryPolicy.DEFAULT_INITIAL_DELAY_MILLIS;
+    private long retryMaxDelayMillis = ExponentialBackoffRetryPolicy.DEFAULT_MAX_DELAY_MILLIS;
+    private int retryMaxElapsedSec = ExponentialBackoffRetryPolicy.DEFAULT_MAX_ELAPSED_SEC;
+
+    private boolean useReferenceDataCache = false;
+    private int referenceDataCacheTtlSec = ReferenceDataCache.DEFAULT_TTL_SEC;
+    private File referenceDataCacheFile;
+    private File scanHistoryFile;
+
+    private boolean collectHttpMetrics = false;
+    private Boolean streamReportsToDisk;
+    private boolean xmlReportSummaryOnly = false;
+
+    private int zipThreads = Zipper.DEFAULT_THREADS;
+    private boolean streamZipUpload = false;
+    private String zipCacheDir;
+    private ZipCompression zipCompression = ZipCompression.BALANCED;
+    private int zipProgressInterval = 10;
+    private PollPolicy statusPollPolicy;
+    //executors and trackers belong to the JVM that runs the client, not to the config sent to it
+    private transient PollScheduler pollScheduler;
+    private transient ScanQueueTracker scanQueueTracker;
+
     private String mvnPath = "";
 
     private String sourceDir;
@@ -42,6 +88,7 @@ public class CxScanConfig implements Serializable {
     private String sastFilterPattern;
     private Integer sastScanTimeoutInMinutes;
     private Integer osaScanTimeoutInMinutes;
+    private Integer runTimeoutInMinutes;
     private String scanComment;
     private Boolean isIncremental = false;
     private Boolean isSynchronous = false;
@@ -134,6 +181,293 @@ public class CxScanConfig implements Serializable {
         this.useSSOLogin = useSSOLogin;
     }
 
+    public String getHttpTransport() {
+        return httpTransport;
+    }
+
+    /**
+     * @param httpTransport "apache" (default), "jdk" or the name of a CxHttpTransportFactory service provider
+     */
+    public void setHttpTransport(String httpTransport) {
+        this.httpTransport = httpTransport;
+    }
+
+    public boolean isShareConnectionPool() {
+        return shareConnectionPool;
+    }
+
+    /**
+     * Reuses the connections of other clients of the same server in the JVM (default); the shared pool outlives the clients, see {@link CxConnectionPool#shutdownSharedPools()}.
+     */
+    public void setShareConnectionPool(boolean shareConnectionPool) {
+        this.shareConnectionPool = shareConnectionPool;
+    }
+
+    public int getConnectionPoolMaxTotal() {
+        return connectionPoolMaxTotal;
+    }
+
+    public void setConnectionPoolMaxTotal(int connectionPoolMaxTotal) {
+        this.connectionPoolMaxTotal = connectionPoolMaxTotal;
+    }
+
+    public int getConnectionPoolMaxPerRoute() {
+        return connectionPoolMaxPerRoute;
+    }
+
+    public void setConnectionPoolMaxPerRoute(int connectionPoolMaxPerRoute) {
+        this.connectionPoolMaxPerRoute = connectionPoolMaxPerRoute;
+    }
+
+    public int getConnectionIdleTimeoutSec() {
+        return connectionIdleTimeoutSec;
+    }
+
+    public void setConnectionIdleTimeoutSec(int connectionIdleTimeoutSec) {
+        this.connectionIdleTimeoutSec = connectionIdleTimeoutSec;
+    }
+
+    public int getConnectionKeepAliveSec() {
+        return connectionKeepAliveSec;
+    }
+
+    public void setConnectionKeepAliveSec(int connectionKeepAliveSec) {
+        this.connectionKeepAliveSec = connectionKeepAliveSec;
+    }
+
+    public int getAsyncHttpThreads() {
+        return asyncHttpThreads;
+    }
+
+    /**
+     * Workers of a {@link CxAsyncHttpClient}, each busy for a whole request; best kept at most the connection pool size.
+     */
+    public void setAsyncHttpThreads(int asyncHttpThreads) {
+        this.asyncHttpThreads = asyncHttpThreads;
+    }
+
+    public int getAsyncHttpMaxQueued() {
+        return asyncHttpMaxQueued;
+    }
+
+    /**
+     * Calls of a {@link CxAsyncHttpClient} waiting for a worker; further calls fail with a RejectedExecutionException.
+     */
+    public void setAsyncHttpMaxQueued(int asyncHttpMaxQueued) {
+        this.asyncHttpMaxQueued = asyncHttpMaxQueued;
+    }
+
+    public int getReadRetryMaxAttempts() {
+        return readRetryMaxAttempts;
+    }
+
+    public void setReadRetryMaxAttempts(int readRetryMaxAttempts) {
+        this.readRetryMaxAttempts = readRetryMaxAttempts;
+    }
+
+    public int getUpdateRetryMaxAttempts() {
+        return updateRetryMaxAttempts;
+    }
+
+    public void setUpdateRetryMaxAttempts(int updateRetryMaxAttempts) {
+        this.updateRetryMaxAttempts = updateRetryMaxAttempts;
+    }
+
+    public int getCreateRetryMaxAttempts() {
+        return createRetryMaxAttempts;
+    }
+
+    public void setCreateRetryMaxAttempts(int createRetryMaxAttempts) {
+        this.createRetryMaxAttempts = createRetryMaxAttempts;
+    }
+
+    public int getRetryMaxAttempts(RetryPolicy.OperationClass operation) {
+        switch (operation) {
+            case READ:
+                return readRetryMaxAttempts;
+            case UPDATE:
+                return updateRetryMaxAttempts;
+            default:
+                return createRetryMaxAttempts;
+        }
+    }
+
+    public long getRetryInitialDelayMillis() {
+        return retryInitialDelayMillis;
+    }
+
+    public void setRetryInitialDelayMillis(long retryInitialDelayMillis) {
+        this.retryInitialDelayMillis = retryInitialDelayMillis;
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    public void setRetryMaxDelayMillis(long retryMaxDelayMillis) {
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+
+    public int getRetryMaxElapsedSec() {
+        return retryMaxElapsedSec;
+    }
+
+    public void setRetryMaxElapsedSec(int retryMaxElapsedSec) {
+        this.retryMaxElapsedSec = retryMaxElapsedSec;
+    }
+
+    public boolean isUseReferenceDataCache() {
+        return useReferenceDataCache;
+    }
+
+    /**
+     * Caches the server reference data (teams, presets) across clients and revalidates it after a TTL; false (default) - requested on every lookup.
+     */
+    public void setUseReferenceDataCache(boolean useReferenceDataCache) {
+        this.useReferenceDataCache = useReferenceDataCache;
+    }
+
+    public int getReferenceDataCacheTtlSec() {
+        return referenceDataCacheTtlSec;
+    }
+
+    public void setReferenceDataCacheTtlSec(int referenceDataCacheTtlSec) {
+        this.referenceDataCacheTtlSec = referenceDataCacheTtlSec;
+    }
+
+    public File getReferenceDataCacheFile() {
+        return referenceDataCacheFile;
+    }
+
+    public void setReferenceDataCacheFile(File referenceDataCacheFile) {
+        this.referenceDataCacheFile = referenceDataCacheFile;
+    }
+
+    public File getScanHistoryFile() {
+        return scanHistoryFile;
+    }
+
+    /**
+     * Append-only file of the durations of past scans, used to predict the duration of the next scan of a project; null (default) - no history.
+     */
+    public void setScanHistoryFile(File scanHistoryFile) {
+        this.scanHistoryFile = scanHistoryFile;
+    }
+
+    public boolean isCollectHttpMetrics() {
+        return collectHttpMetrics;
+    }
+
+    public void setCollectHttpMetrics(boolean collectHttpMetrics) {
+        this.collectHttpMetrics = collectHttpMetrics;
+    }
+
+    public boolean isStreamReportsToDisk() {
+        return streamReportsToDisk != null ? streamReportsToDisk : reportsDir != null;
+    }
+
+    /**
+     * Streams the reports to reportsDir instead of holding them in memory; null (default) - only when reportsDir is set.
+     * Without reportsDir, the reports go to temporary files deleted when the client is closed.
+     */
+    public void setStreamReportsToDisk(Boolean streamReportsToDisk) {
+        this.streamReportsToDisk = streamReportsToDisk;
+    }
+
+    public boolean isXmlReportSummaryOnly() {
+        return xmlReportSummaryOnly;
+    }
+
+    public void setXmlReportSummaryOnly(boolean xmlReportSummaryOnly) {
+        this.xmlReportSummaryOnly = xmlReportSummaryOnly;
+    }
+
+    public int getZipThreads() {
+        return zipThreads;
+    }
+
+    public void setZipThreads(int zipThreads) {
+        this.zipThreads = zipThreads;
+    }
+
+    public boolean isStreamZipUpload() {
+        return streamZipUpload;
+    }
+
+    /**
+     * Zips the sources straight into the upload instead of a temporary file; false (default). A failed streamed upload falls back to the temporary file.
+     */
+    public void setStreamZipUpload(boolean streamZipUpload) {
+        this.streamZipUpload = streamZipUpload;
+    }
+
+    public String getZipCacheDir() {
+        return zipCacheDir;
+    }
+
+    /**
+     * Folder for the persistent cache of compressed workspace files; null (default) disables the cache.
+     */
+    public void setZipCacheDir(String zipCacheDir) {
+        this.zipCacheDir = zipCacheDir;
+    }
+
+    public ZipCompression getZipCompression() {
+        return zipCompression;
+    }
+
+    /**
+     * Archive size against CPU time: {@link ZipCompression#FAST} suits runners with fast uploads and few cores.
+     */
+    public void setZipCompression(ZipCompression zipCompression) {
+        this.zipCompression = zipCompression;
+    }
+
+    public int getZipProgressInterval() {
+        return zipProgressInterval;
+    }
+
+    /**
+     * Seconds between the progress summaries logged while zipping; 0 logs only the final summary.
+     */
+    public void setZipProgressInterval(int zipProgressInterval) {
+        this.zipProgressInterval = zipProgressInterval;
+    }
+
+    public PollPolicy getStatusPollPolicy() {
+        return statusPollPolicy;
+    }
+
+    /**
+     * Timing of the status requests while waiting for scans, reports and policy violations;
+     * null (default) - adaptive polling within the bounds of each task.
+     */
+    public void setStatusPollPolicy(PollPolicy statusPollPolicy) {
+        this.statusPollPolicy = statusPollPolicy;
+    }
+
+    public PollScheduler getPollScheduler() {
+        return pollScheduler;
+    }
+
+    /**
+     * Scheduler of the waits that do not block the calling thread; null (default) - {@link PollScheduler#getShared()}. Not serialized with the config.
+     */
+    public void setPollScheduler(PollScheduler pollScheduler) {
+        this.pollScheduler = pollScheduler;
+    }
+
+    public ScanQueueTracker getScanQueueTracker() {
+        return scanQueueTracker;
+    }
+
+    /**
+     * Tracker shared by the clients of concurrent scans to poll their status from one scans queue listing; null (default) - each scan polls its own status. Not serialized with the config.
+     */
+    public void setScanQueueTracker(ScanQueueTracker scanQueueTracker) {
+        this.scanQueueTracker = scanQueueTracker;
+    }
+
     public Boolean getAvoidDuplicateProjectScans() {
         return avoidDuplicateProjectScans;
     }
@@ -277,6 +611,17 @@ public class CxScanConfig implements Serializable {
         this.osaScanTimeoutInMinutes = sastOsaScanTimeoutInMinutes;
     }
 
+    public Integer getRunTimeoutInMinutes() {
+        return runTimeoutInMinutes == null ? -1 : runTimeoutInMinutes;
+    }
+
+    /**
+     * Timeout of the whole run, from the creation of the first scan through the scans, reports and policy violations; null or 0 or less - none.
+     */
+    public void setRunTimeoutInMinutes(Integer runTimeoutInMinutes) {
+        this.runTimeoutInMinutes = runTimeoutInMinutes;
+    }
+
     public String getScanComment() {
         return scanComment;
     }
@@ -0,0 +1,69 @@
+package com.cx.restclient.httpClient;
+
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Default transport: Apache HttpClient on the pooled keep-alive connections of a {@link CxConnectionPool}.
+ */
+public class ApacheHttpTransport implements CxHttpTransport {
+
+    public static final String NAME = "apache";
+
+    private final CloseableHttpClient apacheClient;
+
+    public ApacheHttpTransport(CxConnectionPool connectionPool, List<HttpRequestInterceptor> requestInterceptors,
+                               List<HttpResponseInterceptor> responseInterceptors, boolean useSSO) {
+        HttpClientBuilder builder = HttpClientBuilder.create().disableContentCompression();
+        for (HttpRequestInterceptor interceptor : requestInterceptors) {
+            builder.addInterceptorLast(interceptor);
+        }
+        for (HttpResponseInterceptor interceptor : responseInterceptors) {
+            builder.addInterceptorLast(interceptor);
+        }
+        if (useSSO) {
+            //session cookies are kept by SessionCookieStore, so the default cookie handling would only duplicate them
+            builder.disableCookieManagement();
+        }
+        //SSL validation is configured on the pool's socket factories
+        builder.setConnectionManager(connectionPool.getConnectionManager())
+                .setConnectionManagerShared(true)
+                .setKeepAliveStrategy(connectionPool.getKeepAliveStrategy());
+
+        builder.useSystemProperties();
+        apacheClient = builder.build();
+    }
+
+    public CloseableHttpResponse execute(HttpRequestBase request, HttpClientContext context) throws IOException {
+        return apacheClient.execute(request, context);
+    }
+
+    public boolean supportsMethod(String method) {
+        return true;
+    }
+
+    public void close() {
+        HttpClientUtils.closeQuietly(apacheClient);
+    }
+
+    public static class Factory implements CxHttpTransportFactory {
+        public String getName() {
+            return NAME;
+        }
+
+        public CxHttpTransport create(CxConnectionPool connectionPool, List<HttpRequestInterceptor> requestInterceptors,
+                                      List<HttpResponseInterceptor> responseInterceptors, boolean useSSO, Logger log) {
+            return new ApacheHttpTransport(connectionPool, requestInterceptors, responseInterceptors, useSSO);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.configuration.CxScanConfig;
+import com.cx.restclient.exception.CxClientException;
+import org.apache.http.HttpEntity;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking facade over {@link CxHttpClient}.
+ * Every call is dispatched to a worker pool and completes a {@link CompletableFuture}, so callers
+ * can drive many scan sessions without dedicating a thread of their own to each in-flight request.
+ * Requests go through {@link CxHttpClient} itself, keeping the same token refresh, CSRF and cookie handling, and
+ * its blocking transports: a worker is busy for the whole request, so the default pool has as many workers as
+ * the default connection pool has connections, and idle workers exit.
+ * Pools hold a bounded number of waiting calls; once it is full, new calls fail at once with a
+ * {@link RejectedExecutionException} instead of piling up behind the busy workers.
+ * Cancelling a future aborts the request in flight and skips its retries.
+ * A failed future carries the original {@link IOException} or {@link CxClientException} as the cause of its
+ * {@link CompletionException}.
+ */
+public class CxAsyncHttpClient {
+
+    public static final int DEFAULT_THREADS = CxConnectionPool.DEFAULT_MAX_TOTAL;
+    public static final int DEFAULT_MAX_QUEUED = 1000;
+    private static final long IDLE_THREAD_TIMEOUT_SEC = 60;
+
+    private static volatile ExecutorService defaultExecutor;
+
+    private final CxHttpClient httpClient;
+    private final Executor executor;
+
+    public CxAsyncHttpClient(CxHttpClient httpClient) {
+        this(httpClient, getDefaultExecutor());
+    }
+
+    /**
+     * Uses a pool sized by {@link CxScanConfig#getAsyncHttpThreads()} and {@link CxScanConfig#getAsyncHttpMaxQueued()},
+     * the shared default pool unless they differ from the defaults.
+     */
+    public CxAsyncHttpClient(CxHttpClient httpClient, CxScanConfig config) {
+        this(httpClient, config.getAsyncHttpThreads() == DEFAULT_THREADS && config.getAsyncHttpMaxQueued() == DEFAULT_MAX_QUEUED
+                ? getDefaultExecutor() : createExecutor(config.getAsyncHttpThreads(), config.getAsyncHttpMaxQueued()));
+    }
+
+    public CxAsyncHttpClient(CxHttpClient httpClient, Executor executor) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+    }
+
+    //GET REQUEST
+    public <T> CompletableFuture<T> getRequest(final String relPath, final String contentType, final Class<T> responseType, final int expectStatus, final String failedMsg, final boolean isCollection) {
+        return supply(new HttpCall<T>() {
+            public T call() throws IOException, CxClientException {
+                return httpClient.getRequest(relPath, contentType, responseType, expectStatus, failedMsg, isCollection);
+            }
+        });
+    }
+
+    public <T> CompletableFuture<T> getRequest(final String rootURL, final String relPath, final String acceptHeader, final String contentType, final Class<T> responseType, final int expectStatus, final String failedMsg, final boolean isCollection) {
+        return supply(new HttpCall<T>() {
+            public T call() throws IOException, CxClientException {
+                return httpClient.getRequest(rootURL, relPath, acceptHeader, contentType, responseType, expectStatus, failedMsg, isCollection);
+            }
+        });
+    }
+
+    //POST REQUEST
+    public <T> CompletableFuture<T> postRequest(final String relPath, final String contentType, final HttpEntity entity, final Class<T> responseType, final int expectStatus, final String failedMsg) {
+        return supply(new HttpCall<T>() {
+            public T call() throws IOException, CxClientException {
+                return httpClient.postRequest(relPath, contentType, entity, responseType, expectStatus, failedMsg);
+            }
+        });
+    }
+
+    //PUT REQUEST
+    public <T> CompletableFuture<T> putRequest(final String relPath, final String contentType, final HttpEntity entity, final Class<T> responseType, final int expectStatus, final String failedMsg) {
+        return supply(new HttpCall<T>() {
+            public T call() throws IOException, CxClientException {
+                return httpClient.putRequest(relPath, contentType, entity, responseType, expectStatus, failedMsg);
+            }
+        });
+    }
+
+    //PATCH REQUEST
+    public CompletableFuture<Void> patchRequest(final String relPath, final String contentType, final HttpEntity entity, final int expectStatus, final String failedMsg) {
+        return supply(new HttpCall<Void>() {
+            public Void call() throws IOException, CxClientException {
+                httpClient.patchRequest(relPath, contentType, entity, expectStatus, failedMsg);
+                return null;
+            }
+        });
+    }
+
+    public CxHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    private <T> CompletableFuture<T> supply(final HttpCall<T> call) {
+        final RequestCancellation cancellation = new RequestCancellation();
+        final CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                cancellation.cancel();
+                return cancelled;
+            }
+        };
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    if (future.isDone()) { //cancelled before it started
+                        return;
+                    }
+                    try {
+                        future.complete(httpClient.cancellable(cancellation, call));
+                    } catch (Exception e) {
+                        future.completeExceptionally(new CompletionException(e));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(new CompletionException(e));
+        }
+        return future;
+    }
+
+    /**
+     * Creates a pool of daemon workers that exit when idle, rejecting calls once maxQueued calls are waiting.
+     */
+    public static ExecutorService createExecutor(int threads, int maxQueued) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SEC, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(maxQueued), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cx-async-http-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            synchronized (CxAsyncHttpClient.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = createExecutor(DEFAULT_THREADS, DEFAULT_MAX_QUEUED);
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    interface HttpCall<T> {
+        T call() throws IOException, CxClientException;
+    }
+}
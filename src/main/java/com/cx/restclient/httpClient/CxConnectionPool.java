@@ -0,0 +1,180 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.configuration.CxScanConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.ssl.TrustStrategy;
+import org.slf4j.Logger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import java.security.KeyManagementException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled, keep-alive connection manager for {@link CxHttpClient}.
+ * A shared pool is kept per Checkmarx server so that several {@link com.cx.restclient.CxShragaClient}
+ * instances in the same JVM reuse open TCP/TLS connections instead of handshaking on every phase.
+ * Closing a client does not close a shared pool: the pool lives until {@link #shutdownSharedPools()}, while its
+ * idle connections are closed after the idle timeout, so an unused pool holds no socket, only its daemon evictor
+ * thread. Hosts that unload the library (e.g. a CI plugin being reloaded) call {@link #shutdownSharedPools()}.
+ */
+public class CxConnectionPool {
+
+    public static final int DEFAULT_MAX_TOTAL = 20;
+    public static final int DEFAULT_MAX_PER_ROUTE = 10;
+    public static final int DEFAULT_IDLE_TIMEOUT_SEC = 30;
+    public static final int DEFAULT_KEEP_ALIVE_SEC = 60;
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    private static final ConcurrentMap<String, CxConnectionPool> sharedPools = new ConcurrentHashMap<String, CxConnectionPool>();
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final IdleConnectionEvictor idleConnectionEvictor;
+    private final ConnectionKeepAliveStrategy keepAliveStrategy;
+    private final boolean shared;
+    private SSLContext sslContext;
+    private HostnameVerifier hostnameVerifier;
+
+    public CxConnectionPool(int maxTotal, int maxPerRoute, int idleTimeoutSec, int keepAliveSec, boolean disableSSLValidation, Logger log) {
+        this(maxTotal, maxPerRoute, idleTimeoutSec, keepAliveSec, disableSSLValidation, false, log);
+    }
+
+    public CxConnectionPool(CxScanConfig config, Logger log) {
+        this(config.getConnectionPoolMaxTotal(), config.getConnectionPoolMaxPerRoute(), config.getConnectionIdleTimeoutSec(),
+                config.getConnectionKeepAliveSec(), config.isDisableCertificateValidation(), false, log);
+    }
+
+    private CxConnectionPool(int maxTotal, int maxPerRoute, int idleTimeoutSec, final int keepAliveSec, boolean disableSSLValidation, boolean shared, Logger log) {
+        this.shared = shared;
+        connectionManager = new PoolingHttpClientConnectionManager(createSocketFactoryRegistry(disableSSLValidation, log));
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        //honour the server Keep-Alive header, otherwise keep the connection open for keepAliveSec
+        keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return duration > 0 ? duration : TimeUnit.SECONDS.toMillis(keepAliveSec);
+            }
+        };
+
+        idleConnectionEvictor = new IdleConnectionEvictor(connectionManager, idleTimeoutSec, TimeUnit.SECONDS);
+        idleConnectionEvictor.start();
+    }
+
+    /**
+     * Returns the pool shared by all clients of the given server with the same pool settings, creating it on first use.
+     */
+    public static CxConnectionPool getSharedPool(final CxScanConfig config, final Logger log) {
+        String key = StringUtils.defaultString(config.getUrl()).toLowerCase(Locale.ROOT) + "|" +
+                config.isDisableCertificateValidation() + "|" +
+                config.getConnectionPoolMaxTotal() + "|" +
+                config.getConnectionPoolMaxPerRoute() + "|" +
+                config.getConnectionIdleTimeoutSec() + "|" +
+                config.getConnectionKeepAliveSec();
+
+        CxConnectionPool pool = sharedPools.get(key);
+        if (pool == null) {
+            CxConnectionPool newPool = new CxConnectionPool(config.getConnectionPoolMaxTotal(), config.getConnectionPoolMaxPerRoute(),
+                    config.getConnectionIdleTimeoutSec(), config.getConnectionKeepAliveSec(), config.isDisableCertificateValidation(), true, log);
+            pool = sharedPools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            } else {
+                newPool.close();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Closes all shared pools and their open connections. Clients still using a shared pool fail their next request;
+     * clients created afterwards get new pools.
+     */
+    public static void shutdownSharedPools() {
+        for (CxConnectionPool pool : sharedPools.values()) {
+            pool.close();
+        }
+        sharedPools.clear();
+    }
+
+    public HttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    public ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+        return keepAliveStrategy;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public void close() {
+        idleConnectionEvictor.shutdown();
+        connectionManager.shutdown();
+    }
+
+    /**
+     * SSL context matching the pool's certificate validation setting, for transports that do not use the pool itself.
+     */
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    public HostnameVerifier getHostnameVerifier() {
+        return hostnameVerifier;
+    }
+
+    private Registry<ConnectionSocketFactory> createSocketFactoryRegistry(boolean disableSSLValidation, Logger log) {
+        sslContext = SSLContexts.createSystemDefault();
+        hostnameVerifier = new DefaultHostnameVerifier();
+        if (disableSSLValidation) {
+            try {
+                sslContext = SSLContexts.custom().loadTrustMaterial(new TrustStrategy() {
+                    public boolean isTrusted(X509Certificate[] x509Certificates, String s) throws CertificateException {
+                        return true;
+                    }
+                }).build();
+                hostnameVerifier = NoopHostnameVerifier.INSTANCE;
+            } catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
+                log.warn("Failed to disable certificate verification: " + e.getMessage());
+            }
+        }
+
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslContext,
+                split(System.getProperty("https.protocols")), split(System.getProperty("https.cipherSuites")), hostnameVerifier);
+
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+    }
+
+    private static String[] split(String s) {
+        return StringUtils.isBlank(s) ? null : s.split(" *, *");
+    }
+}
@@ -1,41 +1,47 @@
 package com.cx.restclient.httpClient;
 
+import com.cx.restclient.common.Deadline;
 import com.cx.restclient.common.ErrorMessage;
 import com.cx.restclient.common.UrlUtils;
 import com.cx.restclient.dto.TokenLoginResponse;
 import com.cx.restclient.exception.CxClientException;
 import com.cx.restclient.exception.CxHTTPClientException;
 import com.cx.restclient.exception.CxTokenExpiredException;
+import com.cx.restclient.httpClient.utils.CountingDecompressingEntity;
+import com.cx.restclient.httpClient.utils.CountingEntity;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.http.*;
-import org.apache.http.client.CookieStore;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.*;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.HttpClientUtils;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
-import org.apache.http.ssl.SSLContexts;
-import org.apache.http.ssl.TrustStrategy;
 import org.slf4j.Logger;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.KeyManagementException;
-import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
 
 import static com.cx.restclient.common.CxPARAM.*;
 import static com.cx.restclient.httpClient.utils.ContentType.CONTENT_TYPE_APPLICATION_JSON;
@@ -46,17 +52,31 @@ import static com.cx.restclient.httpClient.utils.HttpClientHelper.*;
  */
 public class CxHttpClient {
 
+    public static final long CLEANUP_TIMEOUT_MILLIS = 60000;
+
     private Logger logi;
-    private HttpClient apacheClient;
-    private TokenLoginResponse token;
+    private final CxHttpTransport defaultTransport;
+    private final CxHttpTransport transport;
+    private final CxConnectionPool connectionPool;
+    private final TokenManager tokenManager;
     private String rootUri;
     private final String username;
     private final String password;
     private String cxOrigin;
 
-    private CookieStore cookieStore;
-    private String cookies;
-    private String csrfToken;
+    private final SessionCookieStore cookieStore = new SessionCookieStore();
+    private volatile String csrfToken;
+    private final TransferStats transferStats = new TransferStats();
+    private final RetryStats retryStats = new RetryStats();
+    private volatile MetricsRecorder metricsRecorder = MetricsRecorder.NOOP;
+    private volatile Deadline deadline = Deadline.NONE;
+    //deadline of the cleanup requests sent by the current thread
+    private final ThreadLocal<Deadline> cleanupDeadline = new ThreadLocal<Deadline>();
+    //cancellation of the requests sent by the current thread for a CxAsyncHttpClient call
+    private final ThreadLocal<RequestCancellation> cancellation = new ThreadLocal<RequestCancellation>();
+    private volatile ReferenceDataCache referenceDataCache;
+    private volatile long referenceDataTtlMillis;
+    private final Map<RetryPolicy.OperationClass, RetryPolicy> retryPolicies = new EnumMap<RetryPolicy.OperationClass, RetryPolicy>(RetryPolicy.OperationClass.class);
 
     private Boolean useSSo = false;
 
@@ -64,14 +84,19 @@ public class CxHttpClient {
     private final HttpRequestInterceptor requestFilter = new HttpRequestInterceptor() {
         public void process(HttpRequest httpRequest, HttpContext httpContext) throws HttpException, IOException {
             httpRequest.addHeader(ORIGIN_HEADER, cxOrigin);
+            TokenLoginResponse token = tokenManager.getToken();
             if (token != null) {
                 httpRequest.addHeader(HttpHeaders.AUTHORIZATION, token.getToken_type() + " " + token.getAccess_token());
             }
             if (csrfToken != null) {
                 httpRequest.addHeader(CSRF_TOKEN_HEADER, csrfToken);
             }
-            if (cookies != null) {
-                httpRequest.addHeader("cookie", cookies);
+            if (useSSo) {
+                HttpHost target = HttpClientContext.adapt(httpContext).getTargetHost();
+                String cookieHeader = cookieStore.getCookieHeader(target == null ? null : target.getHostName(), getRequestPath(httpRequest));
+                if (cookieHeader != null) {
+                    httpRequest.addHeader("cookie", cookieHeader);
+                }
             }
         }
     };
@@ -80,41 +105,127 @@ public class CxHttpClient {
     private final HttpResponseInterceptor responseFilter = new HttpResponseInterceptor() {
 
         public void process(HttpResponse httpResponse, HttpContext httpContext) throws HttpException, IOException {
-            for (org.apache.http.cookie.Cookie c : cookieStore.getCookies()) {
-                if (CSRF_TOKEN_HEADER.equals(c.getName())) {
-                    csrfToken = c.getValue();
+            HttpClientContext context = HttpClientContext.adapt(httpContext);
+            HttpHost target = context.getTargetHost();
+            String host = target == null ? null : target.getHostName();
+            String path = context.getRequest() == null ? null : getRequestPath(context.getRequest());
+            for (Header h : httpResponse.getHeaders("Set-Cookie")) {
+                cookieStore.addSetCookieHeader(h.getValue(), host, path);
+            }
+            String csrf = cookieStore.getValue(CSRF_TOKEN_HEADER);
+            if (csrf != null) {
+                csrfToken = csrf;
+            }
+        }
+    };
+
+
+    private final HttpRequestInterceptor acceptEncodingFilter = new HttpRequestInterceptor() {
+        public void process(HttpRequest httpRequest, HttpContext httpContext) throws HttpException, IOException {
+            if (HttpGet.METHOD_NAME.equals(httpRequest.getRequestLine().getMethod()) && !httpRequest.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+                httpRequest.addHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+            }
+        }
+    };
+
+
+    //decodes the body while it is read and counts wire vs. decoded bytes
+    private final HttpResponseInterceptor contentEncodingFilter = new HttpResponseInterceptor() {
+        public void process(HttpResponse httpResponse, HttpContext httpContext) throws HttpException, IOException {
+            HttpEntity entity = httpResponse.getEntity();
+            if (entity == null || entity.getContentLength() == 0) {
+                return;
+            }
+            Header encodingHeader = entity.getContentEncoding();
+            String encoding = encodingHeader == null ? null : encodingHeader.getValue().trim();
+            if (encoding != null && !CountingDecompressingEntity.isSupported(encoding)) {
+                if (!"identity".equalsIgnoreCase(encoding)) {
+                    return; //leave unknown encodings untouched
                 }
+                encoding = null;
             }
-            Header[] setCookies = httpResponse.getHeaders("Set-Cookie");
-            StringBuilder sb = new StringBuilder();
-            for (Header h : setCookies) {
-                sb.append(h.getValue()).append(";");
+            TransferStats stats = (TransferStats) httpContext.getAttribute(TransferStats.CONTEXT_ATTRIBUTE);
+            if (stats != null) {
+                stats.addResponse(encoding != null);
+            }
+            httpResponse.setEntity(new CountingDecompressingEntity(entity, encoding, stats));
+            if (encoding != null) {
+                httpResponse.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+                httpResponse.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+                httpResponse.removeHeaders("Content-MD5");
             }
-            cookies = (cookies == null ? "" : cookies) + sb.toString();
         }
     };
 
 
     public CxHttpClient(String hostname, String username, String password, String origin, boolean disableSSLValidation, boolean isSSO, Logger logi) throws MalformedURLException {
+        this(hostname, username, password, origin, disableSSLValidation, isSSO,
+                new CxConnectionPool(CxConnectionPool.DEFAULT_MAX_TOTAL, CxConnectionPool.DEFAULT_MAX_PER_ROUTE, CxConnectionPool.DEFAULT_IDLE_TIMEOUT_SEC,
+                        CxConnectionPool.DEFAULT_KEEP_ALIVE_SEC, disableSSLValidation, logi), logi);
+    }
+
+    public CxHttpClient(String hostname, String username, String password, String origin, boolean disableSSLValidation, boolean isSSO, CxConnectionPool connectionPool, Logger logi) throws MalformedURLException {
+        this(hostname, username, password, origin, disableSSLValidation, isSSO, connectionPool, ApacheHttpTransport.NAME, logi);
+    }
+
+    public CxHttpClient(String hostname, String username, String password, String origin, boolean disableSSLValidation, boolean isSSO, CxConnectionPool connectionPool, String transportName, Logger logi) throws MalformedURLException {
         this.logi = logi;
         this.username = username;
         this.password = password;
         this.rootUri = UrlUtils.parseURLToString(hostname, "CxRestAPI/");
         this.cxOrigin = origin;
-        //create httpclient
-        HttpClientBuilder builder = HttpClientBuilder.create().addInterceptorFirst(requestFilter);
+        this.connectionPool = connectionPool;
+        this.tokenManager = new TokenManager(new TokenManager.TokenProvider() {
+            public TokenLoginResponse requestToken() throws IOException, CxClientException {
+                UrlEncodedFormEntity requestEntity = generateUrlEncodedFormEntity();
+                HttpPost post = new HttpPost(rootUri + AUTHENTICATION);
+                long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    TokenLoginResponse token = request(post, ContentType.APPLICATION_FORM_URLENCODED.toString(), requestEntity, TokenLoginResponse.class, HttpStatus.SC_OK, "authenticate", false, false);
+                    success = true;
+                    return token;
+                } finally {
+                    metricsRecorder.recordTokenRefresh(System.nanoTime() - start, success);
+                }
+            }
+        }, logi);
+        for (RetryPolicy.OperationClass operation : RetryPolicy.OperationClass.values()) {
+            retryPolicies.put(operation, ExponentialBackoffRetryPolicy.createDefault(operation));
+        }
+        //create the transports, both run the same interceptors
+        this.useSSo = isSSO;
+        List<HttpRequestInterceptor> requestInterceptors = new ArrayList<HttpRequestInterceptor>();
+        requestInterceptors.add(requestFilter);
+        requestInterceptors.add(acceptEncodingFilter);
+        List<HttpResponseInterceptor> responseInterceptors = new ArrayList<HttpResponseInterceptor>();
+        responseInterceptors.add(contentEncodingFilter);
         if (isSSO) {
-            this.useSSo = true;
-            cookieStore = new BasicCookieStore();
-            builder.addInterceptorLast(responseFilter).setDefaultCookieStore(cookieStore);
+            responseInterceptors.add(responseFilter);
         }
-        setSSLTls(builder, "TLSv1.2", logi);
-        if (disableSSLValidation) {
-            builder = disableCertificateValidation(builder, logi);
+        setSSLTls("TLSv1.2", logi);
+        defaultTransport = new ApacheHttpTransport(connectionPool, requestInterceptors, responseInterceptors, isSSO);
+        CxHttpTransportFactory transportFactory = getTransportFactory(transportName);
+        if (transportFactory == null) {
+            logi.warn("Unknown HTTP transport [" + transportName + "], using " + ApacheHttpTransport.NAME);
         }
+        transport = transportFactory == null || ApacheHttpTransport.NAME.equals(transportFactory.getName()) ? defaultTransport :
+                transportFactory.create(connectionPool, requestInterceptors, responseInterceptors, isSSO, logi);
+    }
 
-        builder.useSystemProperties();
-        apacheClient = builder.build();
+    private static CxHttpTransportFactory getTransportFactory(String name) {
+        if (name == null || ApacheHttpTransport.NAME.equalsIgnoreCase(name)) {
+            return new ApacheHttpTransport.Factory();
+        }
+        if (UrlConnectionHttpTransport.NAME.equalsIgnoreCase(name)) {
+            return new UrlConnectionHttpTransport.Factory();
+        }
+        for (CxHttpTransportFactory factory : ServiceLoader.load(CxHttpTransportFactory.class)) {
+            if (name.equalsIgnoreCase(factory.getName())) {
+                return factory;
+            }
+        }
+        return null;
     }
 
     public void login() throws IOException, CxClientException {
@@ -123,9 +234,7 @@ public class CxHttpClient {
             HttpPost post = new HttpPost(rootUri + SSO_AUTHENTICATION);
             request(post, ContentType.APPLICATION_FORM_URLENCODED.toString(), new StringEntity(""), TokenLoginResponse.class, HttpStatus.SC_OK, "authenticate", false, false);
         } else {
-            UrlEncodedFormEntity requestEntity = generateUrlEncodedFormEntity();
-            HttpPost post = new HttpPost(rootUri + AUTHENTICATION);
-            token = request(post, ContentType.APPLICATION_FORM_URLENCODED.toString(), requestEntity, TokenLoginResponse.class, HttpStatus.SC_OK, "authenticate", false, false);
+            tokenManager.login();
         }
     }
 
@@ -152,6 +261,110 @@ public class CxHttpClient {
         return request(get, contentType, null, responseType, expectStatus, "get " + failedMsg, isCollection, true);
     }
 
+    /**
+     * GET that writes the response body to a file as it arrives instead of buffering it in memory.
+     * The body is written to a sibling ".part" file that replaces the target only after a complete download,
+     * so a retried or failed request never leaves a truncated file behind.
+     */
+    public File getRequestToFile(String relPath, String contentType, final File target, final int expectStatus, String failedMsg) throws IOException, CxClientException {
+        HttpGet get = new HttpGet(rootUri + relPath);
+        get.addHeader(HttpHeaders.ACCEPT, CONTENT_TYPE_APPLICATION_JSON);
+        final String msg = "get " + failedMsg;
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory: " + parent);
+        }
+        final File partFile = new File(target.getPath() + ".part");
+        try {
+            return request(get, contentType, null, new ResponseConverter<File>() {
+                public File convert(HttpResponse response) throws IOException, CxClientException {
+                    validateResponse(response, expectStatus, "Failed to " + msg);
+                    OutputStream out = new FileOutputStream(partFile);
+                    try {
+                        if (response.getEntity() != null) {
+                            response.getEntity().writeTo(out);
+                        }
+                    } finally {
+                        out.close();
+                    }
+                    Files.move(partFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    return target;
+                }
+            }, msg, true);
+        } finally {
+            if (partFile.exists() && !partFile.delete()) {
+                logi.warn("Failed to delete partial download: " + partFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * GET for reference data that rarely changes. With a {@link ReferenceDataCache} set, a fresh cached response is
+     * returned without a request and a stale one is revalidated with a conditional GET.
+     * The returned object may be shared with other callers and must not be modified.
+     */
+    public <T> T getCachedRequest(String relPath, String contentType, final Class<T> responseType, String failedMsg, final boolean isCollection, boolean forceRevalidate) throws IOException, CxClientException {
+        final ReferenceDataCache cache = referenceDataCache;
+        if (cache == null) {
+            return getRequest(relPath, contentType, responseType, HttpStatus.SC_OK, failedMsg, isCollection);
+        }
+        final String key = ReferenceDataCache.createKey(rootUri, username, relPath);
+        final String valueType = responseType.getName() + (isCollection ? "[]" : "");
+        ReferenceDataCache.Entry entry = cache.get(key);
+        if (entry != null && !forceRevalidate && entry.isFresh(referenceDataTtlMillis)) {
+            return decodeCachedValue(entry, responseType, isCollection, valueType);
+        }
+
+        HttpGet get = new HttpGet(rootUri + relPath);
+        get.addHeader(HttpHeaders.ACCEPT, CONTENT_TYPE_APPLICATION_JSON);
+        if (entry != null && entry.getETag() != null) {
+            get.addHeader(HttpHeaders.IF_NONE_MATCH, entry.getETag());
+        }
+        if (entry != null && entry.getLastModified() != null) {
+            get.addHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.getLastModified());
+        }
+        final ReferenceDataCache.Entry cachedEntry = entry;
+        final String msg = "get " + failedMsg;
+        ReferenceDataCache.Entry validEntry = request(get, contentType, null, new ResponseConverter<ReferenceDataCache.Entry>() {
+            public ReferenceDataCache.Entry convert(HttpResponse response) throws IOException, CxClientException {
+                if (cachedEntry != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                    cache.touch(cachedEntry);
+                    return cachedEntry;
+                }
+                validateResponse(response, HttpStatus.SC_OK, "Failed to " + msg);
+                byte[] body = convertToObject(response, byte[].class, false);
+                return cache.put(key, body, getHeaderValue(response, HttpHeaders.ETAG), getHeaderValue(response, HttpHeaders.LAST_MODIFIED), logi);
+            }
+        }, msg, true);
+        return decodeCachedValue(validEntry, responseType, isCollection, valueType);
+    }
+
+    /**
+     * Whether {@link #getCachedRequest} serves from a cache; without one, every call downloads the data.
+     */
+    public boolean hasReferenceDataCache() {
+        return referenceDataCache != null;
+    }
+
+    public void setReferenceDataCache(ReferenceDataCache referenceDataCache, long ttlMillis) {
+        this.referenceDataTtlMillis = ttlMillis;
+        this.referenceDataCache = referenceDataCache;
+    }
+
+    private static <T> T decodeCachedValue(ReferenceDataCache.Entry entry, Class<T> responseType, boolean isCollection, String valueType) throws CxClientException {
+        Object value = entry.getValue(valueType);
+        if (value == null) {
+            value = convertToObject(entry.getBody(), responseType, isCollection);
+            entry.setValue(value, valueType);
+        }
+        return (T) value;
+    }
+
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
     //POST REQUEST
     public <T> T postRequest(String relPath, String contentType, HttpEntity entity, Class<T> responseType, int expectStatus, String failedMsg) throws IOException, CxClientException {
         HttpPost post = new HttpPost(rootUri + relPath);
@@ -170,32 +383,151 @@ public class CxHttpClient {
         request(patch, contentType, entity, null, expectStatus, failedMsg, false, true);
     }
 
-    private <T> T request(HttpRequestBase httpMethod, String contentType, HttpEntity entity, Class<T> responseType, int expectStatus, String failedMsg, boolean isCollection, boolean retry) throws IOException, CxClientException {
+    private <T> T request(HttpRequestBase httpMethod, String contentType, HttpEntity entity, final Class<T> responseType, final int expectStatus, final String failedMsg, final boolean isCollection, boolean retry) throws IOException, CxClientException {
+        return request(httpMethod, contentType, entity, new ResponseConverter<T>() {
+            public T convert(HttpResponse response) throws IOException, CxClientException {
+                validateResponse(response, expectStatus, "Failed to " + failedMsg);
+                //extract response as object and return the link
+                return convertToObject(response, responseType, isCollection);
+            }
+        }, failedMsg, retry);
+    }
+
+    private <T> T request(HttpRequestBase httpMethod, String contentType, HttpEntity entity, ResponseConverter<T> converter, String failedMsg, boolean retry) throws IOException, CxClientException {
         if (contentType != null) {
             httpMethod.addHeader("Content-type", contentType);
         }
+        CountingEntity countingEntity = null;
         if (entity != null && httpMethod instanceof HttpEntityEnclosingRequestBase) { //Entity for Post methods
-            ((HttpEntityEnclosingRequestBase) httpMethod).setEntity(entity);
+            countingEntity = new CountingEntity(entity);
+            ((HttpEntityEnclosingRequestBase) httpMethod).setEntity(countingEntity);
+        }
+        if (entity != null && !entity.isRepeatable() && entity.getContentLength() < 0) {
+            //let the server reject a chunked body (e.g. 401, 411) before it is sent, as it cannot be sent twice
+            httpMethod.setHeader(HTTP.EXPECT_DIRECTIVE, HTTP.EXPECT_CONTINUE);
         }
+        //a streamed body cannot be sent twice
+        RetryPolicy retryPolicy = entity == null || entity.isRepeatable() ? getRetryPolicy(RetryPolicy.OperationClass.of(httpMethod.getMethod())) : null;
+        String operation = getOperationName(failedMsg);
+        HttpClientContext context = HttpClientContext.create();
+        TransferStats requestStats = new TransferStats();
+        context.setAttribute(TransferStats.CONTEXT_ATTRIBUTE, requestStats);
+        long startNanos = System.nanoTime();
+        int statusCode = 0;
+        int attempt = 1;
+        Deadline deadline = getRequestDeadline();
+        RequestCancellation requestCancellation = cancellation.get();
+        Runnable abort = httpMethod::abort;
+
+        try {
+            for (; ; attempt++) {
+                try {
+                    deadline.check(operation);
+                    checkCancelled(requestCancellation, operation, null);
+                    deadline.onExpiry(abort);
+                    if (requestCancellation != null) {
+                        requestCancellation.onCancel(abort);
+                    }
+                    T result = execute(httpMethod, context, converter, retry);
+                    statusCode = context.getResponse() == null ? 0 : context.getResponse().getStatusLine().getStatusCode();
+                    retryStats.recordSuccess(attempt);
+                    return result;
+                } catch (CxHTTPClientException e) {
+                    statusCode = e.getStatusCode();
+                    if (!waitBeforeRetry(retryPolicy, operation, attempt, startNanos, e.getStatusCode(), null, failedMsg)) {
+                        retryStats.recordFailure(attempt);
+                        throw e;
+                    }
+                } catch (IOException e) {
+                    statusCode = 0;
+                    if (deadline.isExpired()) {
+                        retryStats.recordFailure(attempt);
+                        throw deadline.expired(operation, e);
+                    }
+                    if (requestCancellation != null && requestCancellation.isCancelled()) {
+                        retryStats.recordFailure(attempt);
+                        checkCancelled(requestCancellation, operation, e);
+                    }
+                    if (!waitBeforeRetry(retryPolicy, operation, attempt, startNanos, 0, e, failedMsg)) {
+                        retryStats.recordFailure(attempt);
+                        throw e;
+                    }
+                } catch (CxClientException e) {
+                    statusCode = e instanceof CxTokenExpiredException ? HttpStatus.SC_UNAUTHORIZED : statusCode;
+                    retryStats.recordFailure(attempt);
+                    throw e;
+                } finally {
+                    deadline.removeOnExpiry(abort);
+                    if (requestCancellation != null) {
+                        requestCancellation.removeOnCancel(abort);
+                    }
+                }
+            }
+        } finally {
+            if (requestStats.getResponses() > 0) {
+                transferStats.add(requestStats);
+                logi.debug(failedMsg + ": " + requestStats);
+            }
+            metricsRecorder.recordRequest(operation, httpMethod.getMethod(), statusCode, System.nanoTime() - startNanos,
+                    countingEntity == null ? 0 : countingEntity.getBytesWritten(), requestStats.getWireBytes(), attempt);
+        }
+    }
+
+    //the failure message without its variable part (e.g. "create new project: <name>") names the operation
+    private static String getOperationName(String failedMsg) {
+        return StringUtils.substringBefore(StringUtils.defaultString(failedMsg), ":").trim();
+    }
+
+    private boolean waitBeforeRetry(RetryPolicy retryPolicy, String operation, int attempt, long startNanos, int statusCode, IOException error, String failedMsg) {
+        if (retryPolicy == null || (statusCode == 0 && error == null)) {
+            return false;
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long delayMillis = retryPolicy.retryDelayMillis(attempt, elapsedMillis, statusCode, error);
+        if (delayMillis < 0 || delayMillis >= getRequestDeadline().getRemainingMillis()) {
+            return false;
+        }
+        String reason = error == null ? String.valueOf(statusCode) : error.getClass().getSimpleName();
+        retryStats.recordRetry(reason);
+        metricsRecorder.recordRetry(operation, reason);
+        logi.warn("Failed to " + failedMsg + " (" + reason + "), retrying in " + delayMillis + " ms (attempt " + (attempt + 1) + ")");
+        //holds the sending thread, a PollScheduler thread included, for at most the elapsed budget of the policy
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    private <T> T execute(HttpRequestBase httpMethod, HttpClientContext context, ResponseConverter<T> converter, boolean retry) throws IOException, CxClientException {
         HttpResponse response = null;
+        TokenLoginResponse usedToken = null;
 
         try {
-            response = apacheClient.execute(httpMethod);
+            if (retry) {
+                //refresh ahead of expiry so the request body never has to be replayed
+                usedToken = tokenManager.getValidToken();
+            }
+            CxHttpTransport requestTransport = transport.supportsMethod(httpMethod.getMethod()) ? transport : defaultTransport;
+            response = requestTransport.execute(httpMethod, context);
 
             if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) { //Token expired
                 throw new CxTokenExpiredException(extractResponseBody(response));
             }
-            validateResponse(response, expectStatus, "Failed to " + failedMsg);
-
-            //extract response as object and return the link
-            return convertToObject(response, responseType, isCollection);
+            return converter.convert(response);
         } catch (UnknownHostException e) {
             throw new CxHTTPClientException(ErrorMessage.CHECKMARX_SERVER_CONNECTION_FAILED.getErrorMessage());
         } catch (CxTokenExpiredException ex) {
             if (retry) {
                 logi.warn("Access token expired, requesting a new token");
-                login();
-                return request(httpMethod, contentType, entity, responseType, expectStatus, failedMsg, isCollection, false);
+                if (useSSo) {
+                    login();
+                } else {
+                    tokenManager.refresh(usedToken);
+                }
+                return execute(httpMethod, context, converter, false);
             }
             throw ex;
         } finally {
@@ -204,27 +536,132 @@ public class CxHttpClient {
         }
     }
 
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder == null ? MetricsRecorder.NOOP : metricsRecorder;
+    }
+
+    /**
+     * Deadline of the requests: a request is not sent or retried after it, and a request in flight when it passes
+     * is cancelled.
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline == null ? Deadline.NONE : deadline;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sends cleanup requests, e.g. cancelling a scan left behind by a run that timed out, on a deadline of their own
+     * instead of the deadline of the run, which may have passed already.
+     */
+    public <T> T cleanup(CleanupRequests<T> requests) throws IOException, CxClientException {
+        Deadline previous = cleanupDeadline.get();
+        cleanupDeadline.set(new Deadline(CLEANUP_TIMEOUT_MILLIS));
+        try {
+            return requests.send();
+        } finally {
+            if (previous == null) {
+                cleanupDeadline.remove();
+            } else {
+                cleanupDeadline.set(previous);
+            }
+        }
+    }
+
+    private static void checkCancelled(RequestCancellation requestCancellation, String operation, Throwable cause) throws CxClientException {
+        if (requestCancellation != null && requestCancellation.isCancelled()) {
+            throw new CxClientException("Failed to perform " + operation + ": the request has been cancelled", cause);
+        }
+    }
+
+    /**
+     * Sends the requests of a {@link CxAsyncHttpClient} call, aborting them once the call is cancelled.
+     */
+    <T> T cancellable(RequestCancellation requestCancellation, CxAsyncHttpClient.HttpCall<T> call) throws IOException, CxClientException {
+        RequestCancellation previous = cancellation.get();
+        cancellation.set(requestCancellation);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                cancellation.remove();
+            } else {
+                cancellation.set(previous);
+            }
+        }
+    }
+
+    private Deadline getRequestDeadline() {
+        Deadline cleanup = cleanupDeadline.get();
+        return cleanup != null ? cleanup : deadline;
+    }
+
+    public interface CleanupRequests<T> {
+        T send() throws IOException, CxClientException;
+    }
+
+    public MetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+
+    public void setRetryPolicy(RetryPolicy.OperationClass operation, RetryPolicy retryPolicy) {
+        synchronized (retryPolicies) {
+            retryPolicies.put(operation, retryPolicy);
+        }
+    }
+
+    private RetryPolicy getRetryPolicy(RetryPolicy.OperationClass operation) {
+        synchronized (retryPolicies) {
+            return retryPolicies.get(operation);
+        }
+    }
+
+    /**
+     * Returns the retry attempt and outcome counters of this client.
+     */
+    public RetryStats getRetryStats() {
+        return retryStats;
+    }
+
+    /**
+     * Returns the response byte counters accumulated by this client.
+     */
+    public TransferStats getTransferStats() {
+        return transferStats;
+    }
+
     public void close() {
-        HttpClientUtils.closeQuietly(apacheClient);
+        if (transferStats.getResponses() > 0) {
+            logi.debug("HTTP responses " + transferStats);
+        }
+        if (retryStats.getRetries() > 0) {
+            logi.debug("HTTP retries: " + retryStats);
+        }
+        tokenManager.close();
+        if (transport != defaultTransport) {
+            transport.close();
+        }
+        defaultTransport.close();
+        if (!connectionPool.isShared()) {
+            connectionPool.close();
+        }
     }
 
-    private HttpClientBuilder disableCertificateValidation(HttpClientBuilder builder, Logger logi) {
+    private static String getRequestPath(HttpRequest request) {
         try {
-            SSLContext disabledSSLContext = SSLContexts.custom().loadTrustMaterial(new TrustStrategy() {
-                public boolean isTrusted(X509Certificate[] x509Certificates, String s) throws CertificateException {
-                    return true;
-                }
-            }).build();
-            builder.setSslcontext(disabledSSLContext);
-            builder.setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
-        } catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
-            logi.warn("Failed to disable certificate verification: " + e.getMessage());
+            return URI.create(request.getRequestLine().getUri()).getRawPath();
+        } catch (IllegalArgumentException e) {
+            return null;
         }
+    }
 
-        return builder;
+    private interface ResponseConverter<T> {
+        T convert(HttpResponse response) throws IOException, CxClientException;
     }
 
-    private void setSSLTls(HttpClientBuilder builder, String protocol, Logger log) {
+    private void setSSLTls(String protocol, Logger log) {
         try {
             final SSLContext sslContext = SSLContext.getInstance(protocol);
             sslContext.init(null, null, null);
@@ -0,0 +1,25 @@
+package com.cx.restclient.httpClient;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+
+import java.io.IOException;
+
+/**
+ * Sends the requests of a {@link CxHttpClient} over the wire.
+ * A transport must run the client's request and response interceptors (authentication, CSRF, cookies,
+ * content decoding), leave the context's target host, request and response attributes set, and return a
+ * response whose entity can be streamed. Transports are created by a {@link CxHttpTransportFactory}.
+ */
+public interface CxHttpTransport {
+
+    CloseableHttpResponse execute(HttpRequestBase request, HttpClientContext context) throws IOException;
+
+    /**
+     * Returns false for HTTP methods the transport cannot send; such requests fall back to the default transport.
+     */
+    boolean supportsMethod(String method);
+
+    void close();
+}
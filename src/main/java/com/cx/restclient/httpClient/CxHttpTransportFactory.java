@@ -0,0 +1,25 @@
+package com.cx.restclient.httpClient;
+
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.slf4j.Logger;
+
+import java.util.List;
+
+/**
+ * Service provider of a {@link CxHttpTransport}, selected by name (see CxScanConfig.setHttpTransport).
+ * Besides the built-in "apache" and "jdk" transports, implementations are discovered with
+ * {@link java.util.ServiceLoader} from META-INF/services/com.cx.restclient.httpClient.CxHttpTransportFactory.
+ */
+public interface CxHttpTransportFactory {
+
+    String getName();
+
+    /**
+     * @param requestInterceptors  interceptors to run on every request, in order
+     * @param responseInterceptors interceptors to run on every response, in order
+     * @param useSSO               session cookies are handled by the interceptors and must not be managed by the transport
+     */
+    CxHttpTransport create(CxConnectionPool connectionPool, List<HttpRequestInterceptor> requestInterceptors,
+                           List<HttpResponseInterceptor> responseInterceptors, boolean useSSO, Logger log);
+}
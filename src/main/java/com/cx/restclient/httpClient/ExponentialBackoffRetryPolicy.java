@@ -0,0 +1,89 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.configuration.CxScanConfig;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Idempotency-aware retry policy with exponential backoff and full jitter.
+ * Reads and updates are retried on 502/503/504, timeouts and dropped connections. Creations (POST) are retried
+ * only when the server cannot have processed them: the connection was never established, or the server answered 503.
+ * Retries stop after maxAttempts or when the next backoff would exceed the maxElapsed budget.
+ * The backoff is slept on the thread sending the request, which a status request of a
+ * {@link com.cx.restclient.common.PollScheduler} wait holds for that long; the budget bounds it, so keep it short
+ * where the scheduler threads are few.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    public static final int DEFAULT_READ_MAX_ATTEMPTS = 4;
+    public static final int DEFAULT_UPDATE_MAX_ATTEMPTS = 3;
+    public static final int DEFAULT_CREATE_MAX_ATTEMPTS = 2;
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 500;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 8000;
+    public static final int DEFAULT_MAX_ELAPSED_SEC = 60;
+
+    private final OperationClass operation;
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final long maxElapsedMillis;
+
+    public ExponentialBackoffRetryPolicy(OperationClass operation, int maxAttempts, long initialDelayMillis, long maxDelayMillis, long maxElapsedMillis) {
+        this.operation = operation;
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxElapsedMillis = maxElapsedMillis;
+    }
+
+    public ExponentialBackoffRetryPolicy(CxScanConfig config, OperationClass operation) {
+        this(operation, config.getRetryMaxAttempts(operation), config.getRetryInitialDelayMillis(),
+                config.getRetryMaxDelayMillis(), config.getRetryMaxElapsedSec() * 1000L);
+    }
+
+    public static ExponentialBackoffRetryPolicy createDefault(OperationClass operation) {
+        int maxAttempts = operation == OperationClass.READ ? DEFAULT_READ_MAX_ATTEMPTS :
+                operation == OperationClass.UPDATE ? DEFAULT_UPDATE_MAX_ATTEMPTS : DEFAULT_CREATE_MAX_ATTEMPTS;
+        return new ExponentialBackoffRetryPolicy(operation, maxAttempts, DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_MAX_ELAPSED_SEC * 1000L);
+    }
+
+    public long retryDelayMillis(int attempt, long elapsedMillis, int statusCode, IOException error) {
+        if (attempt >= maxAttempts || !isRetryable(statusCode, error)) {
+            return -1;
+        }
+        //full jitter: a random delay between 0 and the exponential cap spreads out clients failing together
+        long cap = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        return elapsedMillis + delay > maxElapsedMillis ? -1 : delay;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    private boolean isRetryable(int statusCode, IOException error) {
+        if (error == null) {
+            if (operation == OperationClass.CREATE) {
+                return statusCode == 503;
+            }
+            return statusCode == 502 || statusCode == 503 || statusCode == 504;
+        }
+        if (error instanceof UnknownHostException || error instanceof SSLException) {
+            return false;
+        }
+        //the request never reached the server
+        if (error instanceof ConnectException || error instanceof ConnectTimeoutException) {
+            return true;
+        }
+        return operation != OperationClass.CREATE &&
+                (error instanceof NoHttpResponseException || error instanceof SocketTimeoutException || error instanceof SocketException);
+    }
+}
@@ -0,0 +1,242 @@
+package com.cx.restclient.httpClient;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link MetricsRecorder} that aggregates per-operation latency histograms, byte counts, status codes and retries
+ * in memory. At the end of a run the totals can be logged with {@link #getSummary()} or written in the
+ * Prometheus text exposition format with {@link #writePrometheus(File)}.
+ */
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+
+    public static final String PROMETHEUS_FILE_NAME = "cx_http_metrics.prom";
+
+    //latency histogram bucket upper bounds in milliseconds
+    private static final long[] BUCKETS_MILLIS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+    private final AtomicLong tokenRefreshes = new AtomicLong();
+    private final AtomicLong tokenRefreshFailures = new AtomicLong();
+    private final AtomicLong tokenRefreshNanos = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLongArray> waits = new ConcurrentHashMap<String, AtomicLongArray>(); //waits, polls, nanos
+
+    public void recordRequest(String operation, String method, int statusCode, long latencyNanos, long requestBytes, long responseBytes, int attempts) {
+        getOperation(operation, method).record(statusCode, latencyNanos, requestBytes, responseBytes);
+    }
+
+    public void recordRetry(String operation, String reason) {
+        increment(getOperation(operation, null).retries, reason);
+    }
+
+    public void recordTokenRefresh(long latencyNanos, boolean success) {
+        tokenRefreshes.incrementAndGet();
+        tokenRefreshNanos.addAndGet(latencyNanos);
+        if (!success) {
+            tokenRefreshFailures.incrementAndGet();
+        }
+    }
+
+    public void recordWait(String operation, int polls, long waitNanos) {
+        AtomicLongArray wait = waits.get(operation);
+        if (wait == null) {
+            AtomicLongArray newWait = new AtomicLongArray(3);
+            wait = waits.putIfAbsent(operation, newWait);
+            if (wait == null) {
+                wait = newWait;
+            }
+        }
+        wait.incrementAndGet(0);
+        wait.addAndGet(1, polls);
+        wait.addAndGet(2, waitNanos);
+    }
+
+    /**
+     * Returns a human readable table: one line per operation, slowest total time first.
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder("HTTP operations summary:\n");
+        sb.append(String.format(Locale.ROOT, "%-45s %7s %7s %10s %10s %10s %12s %12s%n",
+                "operation", "count", "errors", "total ms", "avg ms", "max ms", "sent bytes", "recv bytes"));
+        OperationMetrics[] sorted = operations.values().toArray(new OperationMetrics[0]);
+        java.util.Arrays.sort(sorted, (o1, o2) -> Long.compare(o2.totalNanos.get(), o1.totalNanos.get()));
+        for (OperationMetrics op : sorted) {
+            long count = op.count.get();
+            sb.append(String.format(Locale.ROOT, "%-45s %7d %7d %10d %10d %10d %12d %12d%n",
+                    op.name, count, op.errors.get(), toMillis(op.totalNanos.get()), count == 0 ? 0 : toMillis(op.totalNanos.get() / count),
+                    toMillis(op.maxNanos.get()), op.requestBytes.get(), op.responseBytes.get()));
+            if (!op.retries.isEmpty()) {
+                sb.append("    retries: ").append(snapshot(op.retries)).append("\n");
+            }
+        }
+        sb.append("token refreshes: ").append(tokenRefreshes.get()).append(" (").append(tokenRefreshFailures.get()).append(" failed, ")
+                .append(toMillis(tokenRefreshNanos.get())).append(" ms)");
+        for (Map.Entry<String, AtomicLongArray> e : new TreeMap<String, AtomicLongArray>(waits).entrySet()) {
+            AtomicLongArray wait = e.getValue();
+            sb.append("\n").append(e.getKey()).append(" waits: ").append(wait.get(0)).append(" (").append(wait.get(1))
+                    .append(" status polls, ").append(TimeUnit.NANOSECONDS.toSeconds(wait.get(2))).append(" s)");
+        }
+        return sb.toString();
+    }
+
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP cx_http_request_duration_seconds Checkmarx REST request latency including retries.\n");
+        sb.append("# TYPE cx_http_request_duration_seconds histogram\n");
+        for (OperationMetrics op : sortedOperations()) {
+            String labels = "operation=\"" + escape(op.name) + "\",method=\"" + escape(op.method) + "\"";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+                cumulative += op.buckets.get(i);
+                sb.append("cx_http_request_duration_seconds_bucket{").append(labels).append(",le=\"")
+                        .append(formatSeconds(BUCKETS_MILLIS[i] / 1000.0)).append("\"} ").append(cumulative).append("\n");
+            }
+            sb.append("cx_http_request_duration_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ").append(op.count.get()).append("\n");
+            sb.append("cx_http_request_duration_seconds_sum{").append(labels).append("} ").append(formatSeconds(op.totalNanos.get() / 1e9)).append("\n");
+            sb.append("cx_http_request_duration_seconds_count{").append(labels).append("} ").append(op.count.get()).append("\n");
+        }
+        appendCounter(sb, "cx_http_requests_total", "Checkmarx REST requests by final status code (0 - no response).", "status", true);
+        appendCounter(sb, "cx_http_retries_total", "Checkmarx REST request retries by reason.", "reason", false);
+        sb.append("# HELP cx_http_request_bytes_total Request body bytes sent.\n# TYPE cx_http_request_bytes_total counter\n");
+        for (OperationMetrics op : sortedOperations()) {
+            sb.append("cx_http_request_bytes_total{operation=\"").append(escape(op.name)).append("\"} ").append(op.requestBytes.get()).append("\n");
+        }
+        sb.append("# HELP cx_http_response_bytes_total Response body bytes received on the wire.\n# TYPE cx_http_response_bytes_total counter\n");
+        for (OperationMetrics op : sortedOperations()) {
+            sb.append("cx_http_response_bytes_total{operation=\"").append(escape(op.name)).append("\"} ").append(op.responseBytes.get()).append("\n");
+        }
+        sb.append("# HELP cx_token_refresh_total Access token requests.\n# TYPE cx_token_refresh_total counter\n");
+        sb.append("cx_token_refresh_total{result=\"success\"} ").append(tokenRefreshes.get() - tokenRefreshFailures.get()).append("\n");
+        sb.append("cx_token_refresh_total{result=\"failure\"} ").append(tokenRefreshFailures.get()).append("\n");
+        sb.append("# HELP cx_wait_polls_total Status requests made while waiting for server tasks.\n# TYPE cx_wait_polls_total counter\n");
+        for (Map.Entry<String, AtomicLongArray> e : new TreeMap<String, AtomicLongArray>(waits).entrySet()) {
+            sb.append("cx_wait_polls_total{operation=\"").append(escape(e.getKey())).append("\"} ").append(e.getValue().get(1)).append("\n");
+        }
+        sb.append("# HELP cx_waits_total Completed waits for server tasks.\n# TYPE cx_waits_total counter\n");
+        for (Map.Entry<String, AtomicLongArray> e : new TreeMap<String, AtomicLongArray>(waits).entrySet()) {
+            sb.append("cx_waits_total{operation=\"").append(escape(e.getKey())).append("\"} ").append(e.getValue().get(0)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the metrics in Prometheus text format to {@link #PROMETHEUS_FILE_NAME} in the given directory.
+     */
+    public File writePrometheus(File dir) throws IOException {
+        File file = new File(dir, PROMETHEUS_FILE_NAME);
+        FileUtils.writeStringToFile(file, toPrometheus(), StandardCharsets.UTF_8.name());
+        return file;
+    }
+
+    private void appendCounter(StringBuilder sb, String name, String help, String label, boolean statusCodes) {
+        sb.append("# HELP ").append(name).append(" ").append(help).append("\n# TYPE ").append(name).append(" counter\n");
+        for (OperationMetrics op : sortedOperations()) {
+            for (Map.Entry<String, Long> e : snapshot(statusCodes ? op.statusCodes : op.retries).entrySet()) {
+                sb.append(name).append("{operation=\"").append(escape(op.name)).append("\",").append(label).append("=\"")
+                        .append(escape(e.getKey())).append("\"} ").append(e.getValue()).append("\n");
+            }
+        }
+    }
+
+    private Iterable<OperationMetrics> sortedOperations() {
+        return new TreeMap<String, OperationMetrics>(operations).values();
+    }
+
+    private OperationMetrics getOperation(String name, String method) {
+        OperationMetrics op = operations.get(name);
+        if (op == null) {
+            OperationMetrics newOp = new OperationMetrics(name);
+            op = operations.putIfAbsent(name, newOp);
+            if (op == null) {
+                op = newOp;
+            }
+        }
+        if (method != null && op.method == null) {
+            op.method = method;
+        }
+        return op;
+    }
+
+    private static void increment(ConcurrentMap<String, AtomicLong> counters, String key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(key, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    private static Map<String, Long> snapshot(ConcurrentMap<String, AtomicLong> counters) {
+        Map<String, Long> map = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            map.put(e.getKey(), e.getValue().get());
+        }
+        return map;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static String formatSeconds(double seconds) {
+        return String.format(Locale.ROOT, "%.3f", seconds);
+    }
+
+    private static String escape(String label) {
+        return label == null ? "" : label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class OperationMetrics {
+        private final String name;
+        private volatile String method;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_MILLIS.length);
+        private final ConcurrentMap<String, AtomicLong> statusCodes = new ConcurrentHashMap<String, AtomicLong>();
+        private final ConcurrentMap<String, AtomicLong> retries = new ConcurrentHashMap<String, AtomicLong>();
+
+        OperationMetrics(String name) {
+            this.name = name;
+        }
+
+        void record(int statusCode, long latencyNanos, long sent, long received) {
+            count.incrementAndGet();
+            if (statusCode == 0 || statusCode >= 400) {
+                errors.incrementAndGet();
+            }
+            totalNanos.addAndGet(latencyNanos);
+            long max;
+            while ((max = maxNanos.get()) < latencyNanos && !maxNanos.compareAndSet(max, latencyNanos)) {
+                //retry
+            }
+            requestBytes.addAndGet(Math.max(0, sent));
+            responseBytes.addAndGet(Math.max(0, received));
+            long millis = toMillis(latencyNanos);
+            for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+                if (millis <= BUCKETS_MILLIS[i]) {
+                    buckets.incrementAndGet(i);
+                    break;
+                }
+            }
+            increment(statusCodes, String.valueOf(statusCode));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.cx.restclient.httpClient;
+
+/**
+ * Receives per-operation measurements from {@link CxHttpClient}.
+ * Implementations can bridge to any metrics library; {@link InMemoryMetricsRecorder} keeps them in memory.
+ * The operation is the logical request name (e.g. "get scan status"), not the URL, so label cardinality stays low.
+ * Implementations must be thread-safe and cheap: they are called on the request thread.
+ */
+public interface MetricsRecorder {
+
+    MetricsRecorder NOOP = new MetricsRecorder() {
+        public void recordRequest(String operation, String method, int statusCode, long latencyNanos, long requestBytes, long responseBytes, int attempts) {
+        }
+
+        public void recordRetry(String operation, String reason) {
+        }
+
+        public void recordTokenRefresh(long latencyNanos, boolean success) {
+        }
+    };
+
+    /**
+     * Records a completed request, including all its retries.
+     *
+     * @param statusCode    the final HTTP status, or 0 if no response was received
+     * @param requestBytes  request body bytes sent over all attempts
+     * @param responseBytes response body bytes received on the wire over all attempts
+     */
+    void recordRequest(String operation, String method, int statusCode, long latencyNanos, long requestBytes, long responseBytes, int attempts);
+
+    /**
+     * @param reason HTTP status code or exception type of the failed attempt
+     */
+    void recordRetry(String operation, String reason);
+
+    void recordTokenRefresh(long latencyNanos, boolean success);
+
+    /**
+     * Records a completed wait for a server task, such as a scan or a report.
+     *
+     * @param operation the waited task, e.g. "CxSAST scan"
+     * @param polls     status requests made by the wait
+     */
+    default void recordWait(String operation, int polls, long waitNanos) {
+    }
+}
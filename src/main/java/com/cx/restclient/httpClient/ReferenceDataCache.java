@@ -0,0 +1,191 @@
+package com.cx.restclient.httpClient;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process cache of server reference data (version, teams, presets, engine configurations, CxARM URL).
+ * Entries are served without a request while younger than the TTL and revalidated with a conditional GET
+ * (If-None-Match / If-Modified-Since) afterwards, so an unchanged list costs a 304 instead of a full download.
+ * Caches are shared per persistence file; with a file the entries survive across runs.
+ */
+public class ReferenceDataCache {
+
+    public static final int DEFAULT_TTL_SEC = 300;
+
+    private static final ConcurrentMap<String, ReferenceDataCache> sharedCaches = new ConcurrentHashMap<String, ReferenceDataCache>();
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final File persistenceFile;
+    private final Object persistenceLock = new Object();
+
+    public ReferenceDataCache(File persistenceFile, Logger log) {
+        this.persistenceFile = persistenceFile;
+        load(log);
+    }
+
+    /**
+     * Returns the cache shared by all clients using the same persistence file (null for memory only).
+     */
+    public static ReferenceDataCache getSharedCache(File persistenceFile, Logger log) {
+        String key = persistenceFile == null ? "" : persistenceFile.getAbsolutePath();
+        ReferenceDataCache cache = sharedCaches.get(key);
+        if (cache == null) {
+            ReferenceDataCache newCache = new ReferenceDataCache(persistenceFile, log);
+            cache = sharedCaches.putIfAbsent(key, newCache);
+            if (cache == null) {
+                cache = newCache;
+            }
+        }
+        return cache;
+    }
+
+    public static String createKey(String rootUri, String username, String relPath) {
+        return rootUri + "|" + username + "|" + relPath;
+    }
+
+    public Entry get(String key) {
+        return entries.get(key);
+    }
+
+    public Entry put(String key, byte[] body, String eTag, String lastModified, Logger log) {
+        Entry entry = new Entry(body, eTag, lastModified, System.currentTimeMillis());
+        entries.put(key, entry);
+        save(log);
+        return entry;
+    }
+
+    /**
+     * Marks an entry as revalidated by the server (304 Not Modified).
+     */
+    public void touch(Entry entry) {
+        entry.validatedAtMillis = System.currentTimeMillis();
+    }
+
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private void load(Logger log) {
+        if (persistenceFile == null || !persistenceFile.isFile()) {
+            return;
+        }
+        try {
+            List<PersistedEntry> persisted = mapper.readValue(persistenceFile, new TypeReference<List<PersistedEntry>>() {
+            });
+            for (PersistedEntry p : persisted) {
+                entries.put(p.key, new Entry(p.body, p.eTag, p.lastModified, p.validatedAtMillis));
+            }
+        } catch (IOException e) {
+            log.debug("Failed to load reference data cache from " + persistenceFile + ": " + e.getMessage());
+        }
+    }
+
+    private void save(Logger log) {
+        if (persistenceFile == null) {
+            return;
+        }
+        List<PersistedEntry> persisted = new ArrayList<PersistedEntry>();
+        for (java.util.Map.Entry<String, Entry> e : entries.entrySet()) {
+            persisted.add(new PersistedEntry(e.getKey(), e.getValue()));
+        }
+        synchronized (persistenceLock) {
+            try {
+                File parent = persistenceFile.getAbsoluteFile().getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                File tmp = File.createTempFile(persistenceFile.getName(), ".tmp", parent);
+                mapper.writeValue(tmp, persisted);
+                Files.move(tmp.toPath(), persistenceFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                log.debug("Failed to save reference data cache to " + persistenceFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static class Entry {
+        private final byte[] body;
+        private final String eTag;
+        private final String lastModified;
+        private volatile long validatedAtMillis;
+        //decoded response shared by all readers of the entry, held with the type it was decoded to
+        private volatile DecodedValue decoded;
+
+        Entry(byte[] body, String eTag, String lastModified, long validatedAtMillis) {
+            this.body = body;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.validatedAtMillis = validatedAtMillis;
+        }
+
+        public boolean isFresh(long ttlMillis) {
+            return System.currentTimeMillis() - validatedAtMillis < ttlMillis;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public Object getValue(String type) {
+            DecodedValue current = decoded;
+            return current != null && type.equals(current.type) ? current.value : null;
+        }
+
+        public void setValue(Object value, String type) {
+            this.decoded = new DecodedValue(value, type);
+        }
+    }
+
+    private static class DecodedValue {
+        private final Object value;
+        private final String type;
+
+        DecodedValue(Object value, String type) {
+            this.value = value;
+            this.type = type;
+        }
+    }
+
+    static class PersistedEntry {
+        public String key;
+        public byte[] body;
+        public String eTag;
+        public String lastModified;
+        public long validatedAtMillis;
+
+        public PersistedEntry() {
+        }
+
+        PersistedEntry(String key, Entry entry) {
+            this.key = key;
+            this.body = entry.body;
+            this.eTag = entry.eTag;
+            this.lastModified = entry.lastModified;
+            this.validatedAtMillis = entry.validatedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.cx.restclient.httpClient;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cancellation of the requests a {@link CxAsyncHttpClient} call sends: once cancelled, the request in flight is
+ * aborted and no further attempt is made.
+ */
+class RequestCancellation {
+
+    private final Set<Runnable> aborts = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        cancelled = true;
+        for (Runnable abort : aborts) {
+            abort.run();
+        }
+    }
+
+    /**
+     * Registers the abort of a request in flight, run on cancellation, or at once if already cancelled.
+     */
+    void onCancel(Runnable abort) {
+        aborts.add(abort);
+        if (cancelled) {
+            abort.run();
+        }
+    }
+
+    void removeOnCancel(Runnable abort) {
+        aborts.remove(abort);
+    }
+}
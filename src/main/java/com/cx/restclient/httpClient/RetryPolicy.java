@@ -0,0 +1,35 @@
+package com.cx.restclient.httpClient;
+
+import java.io.IOException;
+
+/**
+ * Decides whether a failed {@link CxHttpClient} request is attempted again and how long to wait first.
+ * A policy is registered per {@link OperationClass}, so reads, updates and creations can be tuned separately.
+ */
+public interface RetryPolicy {
+
+    enum OperationClass {
+        READ,   //GET
+        UPDATE, //PUT, PATCH
+        CREATE; //POST - not idempotent
+
+        public static OperationClass of(String method) {
+            if ("GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method)) {
+                return READ;
+            }
+            if ("PUT".equalsIgnoreCase(method) || "PATCH".equalsIgnoreCase(method) || "DELETE".equalsIgnoreCase(method)) {
+                return UPDATE;
+            }
+            return CREATE;
+        }
+    }
+
+    /**
+     * @param attempt      number of the attempt that just failed, starting at 1
+     * @param elapsedMillis time spent on the request so far, including previous backoffs
+     * @param statusCode   HTTP status of the failed attempt, or 0 if no response was received
+     * @param error        the I/O failure of the attempt, or null if a response was received
+     * @return the delay before the next attempt in milliseconds, or a negative value to give up
+     */
+    long retryDelayMillis(int attempt, long elapsedMillis, int statusCode, IOException error);
+}
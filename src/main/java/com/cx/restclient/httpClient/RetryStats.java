@@ -0,0 +1,94 @@
+package com.cx.restclient.httpClient;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry counters of a {@link CxHttpClient}: attempts, outcomes and the reasons requests were retried.
+ */
+public class RetryStats {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong succeededFirstAttempt = new AtomicLong();
+    private final AtomicLong succeededAfterRetry = new AtomicLong();
+    private final AtomicLong failedFirstAttempt = new AtomicLong();
+    private final AtomicLong failedAfterRetry = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> retryReasons = new ConcurrentHashMap<String, AtomicLong>();
+
+    void recordSuccess(int attempts) {
+        record(attempts);
+        (attempts > 1 ? succeededAfterRetry : succeededFirstAttempt).incrementAndGet();
+    }
+
+    void recordFailure(int attempts) {
+        record(attempts);
+        (attempts > 1 ? failedAfterRetry : failedFirstAttempt).incrementAndGet();
+    }
+
+    void recordRetry(String reason) {
+        AtomicLong counter = retryReasons.get(reason);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = retryReasons.putIfAbsent(reason, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    private void record(int attemptCount) {
+        requests.incrementAndGet();
+        attempts.addAndGet(attemptCount);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    public long getRetries() {
+        return attempts.get() - requests.get();
+    }
+
+    public long getSucceededFirstAttempt() {
+        return succeededFirstAttempt.get();
+    }
+
+    public long getSucceededAfterRetry() {
+        return succeededAfterRetry.get();
+    }
+
+    public long getFailedFirstAttempt() {
+        return failedFirstAttempt.get();
+    }
+
+    public long getFailedAfterRetry() {
+        return failedAfterRetry.get();
+    }
+
+    /**
+     * Returns the number of retries per reason (HTTP status code or exception type).
+     */
+    public Map<String, Long> getRetryReasons() {
+        Map<String, Long> reasons = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : retryReasons.entrySet()) {
+            reasons.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(reasons);
+    }
+
+    @Override
+    public String toString() {
+        return getRequests() + " requests, " + getRetries() + " retries, " + getSucceededAfterRetry() + " recovered, " +
+                getFailedAfterRetry() + " failed after retrying, retry reasons: " + getRetryReasons();
+    }
+}
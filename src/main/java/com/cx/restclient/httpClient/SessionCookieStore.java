@@ -0,0 +1,192 @@
+package com.cx.restclient.httpClient;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.utils.DateUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Session cookie store used for SSO login.
+ * Cookies are keyed by name, domain and path: a new Set-Cookie replaces the previous value instead of
+ * being appended, expired cookies (Expires / Max-Age) are dropped, and {@link #getCookieHeader} emits only
+ * the name=value pairs that apply to the request, so the Cookie header stays bounded over long polling sessions.
+ */
+public class SessionCookieStore {
+
+    private final Map<String, SessionCookie> cookies = new LinkedHashMap<String, SessionCookie>();
+
+    /**
+     * Parses a Set-Cookie header value received for the given request host and path.
+     */
+    public synchronized void addSetCookieHeader(String setCookie, String requestHost, String requestPath) {
+        SessionCookie cookie = SessionCookie.parse(setCookie, requestHost, requestPath);
+        if (cookie == null) {
+            return;
+        }
+        String key = cookie.getKey();
+        if (cookie.isExpired(System.currentTimeMillis())) {
+            cookies.remove(key);
+        } else {
+            cookies.remove(key); //keep the most recently set cookies last
+            cookies.put(key, cookie);
+        }
+    }
+
+    /**
+     * Returns the Cookie header value for a request, or null if no cookie applies.
+     */
+    public synchronized String getCookieHeader(String host, String path) {
+        purgeExpired();
+        StringBuilder sb = new StringBuilder();
+        for (SessionCookie cookie : getMatchingCookies(host, path)) {
+            if (sb.length() > 0) {
+                sb.append("; ");
+            }
+            sb.append(cookie.name).append("=").append(cookie.value);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * Returns the value of the most recently set live cookie with the given name, regardless of domain and path.
+     */
+    public synchronized String getValue(String name) {
+        String value = null;
+        long now = System.currentTimeMillis();
+        for (SessionCookie cookie : cookies.values()) {
+            if (cookie.name.equals(name) && !cookie.isExpired(now)) {
+                value = cookie.value;
+            }
+        }
+        return value;
+    }
+
+    public synchronized int size() {
+        purgeExpired();
+        return cookies.size();
+    }
+
+    public synchronized void clear() {
+        cookies.clear();
+    }
+
+    private List<SessionCookie> getMatchingCookies(String host, String path) {
+        List<SessionCookie> matching = new ArrayList<SessionCookie>();
+        for (SessionCookie cookie : cookies.values()) {
+            if (cookie.matches(host, path)) {
+                matching.add(cookie);
+            }
+        }
+        //RFC 6265: cookies with longer paths are listed first
+        matching.sort((c1, c2) -> c2.path.length() - c1.path.length());
+        return matching;
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<SessionCookie> it = cookies.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    static class SessionCookie {
+        private final String name;
+        private final String value;
+        private final String domain;
+        private final boolean hostOnly;
+        private final String path;
+        private final long expiresAtMillis; //0 - session cookie
+
+        private SessionCookie(String name, String value, String domain, boolean hostOnly, String path, long expiresAtMillis) {
+            this.name = name;
+            this.value = value;
+            this.domain = domain;
+            this.hostOnly = hostOnly;
+            this.path = path;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        static SessionCookie parse(String setCookie, String requestHost, String requestPath) {
+            if (StringUtils.isBlank(setCookie)) {
+                return null;
+            }
+            String[] parts = setCookie.split(";");
+            int eq = parts[0].indexOf('=');
+            if (eq <= 0) {
+                return null;
+            }
+            String name = parts[0].substring(0, eq).trim();
+            String value = parts[0].substring(eq + 1).trim();
+            String host = StringUtils.defaultString(requestHost).toLowerCase();
+            String domain = host;
+            boolean hostOnly = true;
+            String path = defaultPath(requestPath);
+            long expiresAt = 0;
+            boolean hasMaxAge = false;
+
+            for (int i = 1; i < parts.length; i++) {
+                String attr = parts[i].trim();
+                int attrEq = attr.indexOf('=');
+                String attrName = (attrEq < 0 ? attr : attr.substring(0, attrEq)).trim();
+                String attrValue = attrEq < 0 ? "" : attr.substring(attrEq + 1).trim();
+
+                if ("domain".equalsIgnoreCase(attrName) && !attrValue.isEmpty()) {
+                    domain = StringUtils.removeStart(attrValue.toLowerCase(), ".");
+                    hostOnly = false;
+                } else if ("path".equalsIgnoreCase(attrName) && attrValue.startsWith("/")) {
+                    path = attrValue;
+                } else if ("max-age".equalsIgnoreCase(attrName)) {
+                    try {
+                        long maxAge = Long.parseLong(attrValue);
+                        expiresAt = maxAge <= 0 ? Long.MIN_VALUE : System.currentTimeMillis() + maxAge * 1000;
+                        hasMaxAge = true;
+                    } catch (NumberFormatException ignored) {
+                    }
+                } else if ("expires".equalsIgnoreCase(attrName) && !hasMaxAge) { //Max-Age takes precedence
+                    Date date = DateUtils.parseDate(attrValue);
+                    if (date != null) {
+                        expiresAt = date.getTime() <= 0 ? Long.MIN_VALUE : date.getTime();
+                    }
+                }
+            }
+            return new SessionCookie(name, value, domain, hostOnly, path, expiresAt);
+        }
+
+        String getKey() {
+            return name + ";" + domain + ";" + path;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAtMillis != 0 && expiresAtMillis <= now;
+        }
+
+        boolean matches(String host, String requestPath) {
+            host = StringUtils.defaultString(host).toLowerCase();
+            boolean domainMatch = hostOnly ? host.equals(domain) : (host.equals(domain) || host.endsWith("." + domain));
+            return domainMatch && pathMatches(StringUtils.defaultIfEmpty(requestPath, "/"));
+        }
+
+        private boolean pathMatches(String requestPath) {
+            if (!requestPath.startsWith(path)) {
+                return false;
+            }
+            return path.endsWith("/") || requestPath.length() == path.length() || requestPath.charAt(path.length()) == '/';
+        }
+
+        private static String defaultPath(String requestPath) {
+            if (requestPath == null || !requestPath.startsWith("/")) {
+                return "/";
+            }
+            int lastSlash = requestPath.lastIndexOf('/');
+            return lastSlash == 0 ? "/" : requestPath.substring(0, lastSlash);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.dto.TokenLoginResponse;
+import com.cx.restclient.exception.CxClientException;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the OAuth access token of a {@link CxHttpClient} valid.
+ * The token is refreshed in the background shortly before it expires, and any request that finds it
+ * about to expire refreshes it up front, so an expensive request body never has to be replayed after a 401.
+ * Refreshes are single-flight: the first caller requests the token, without holding a lock, and concurrent callers
+ * wait for its result up to a timeout instead of each logging in.
+ * The background refresh stops once the token has gone unused for its whole lifetime (the next request refreshes
+ * it on demand), when the manager is closed, or when its client is no longer reachable.
+ */
+public class TokenManager {
+
+    public interface TokenProvider {
+        TokenLoginResponse requestToken() throws IOException, CxClientException;
+    }
+
+    public static final long DEFAULT_REFRESH_TIMEOUT_MILLIS = 60000;
+
+    private static final long MIN_REFRESH_MARGIN_SEC = 30;
+    private static final double REFRESH_MARGIN_RATIO = 0.1;
+    private static final long RETRY_FAILED_REFRESH_SEC = 15;
+
+    //only triggers the refreshes, which run on refreshExecutor so that a slow token endpoint delays no other client
+    private static final ScheduledExecutorService scheduler = createScheduler();
+    private static final ExecutorService refreshExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "cx-token-refresh");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final TokenProvider provider;
+    private final Logger log;
+    private final long refreshTimeoutMillis;
+    //the token request in flight, shared by all callers that need a new token meanwhile
+    private final AtomicReference<CompletableFuture<TokenLoginResponse>> inFlight = new AtomicReference<CompletableFuture<TokenLoginResponse>>();
+
+    private volatile TokenLoginResponse token;
+    private volatile long refreshAtNanos;
+    private volatile long expiresAtNanos;
+    private volatile boolean usedSinceFetch;
+    private ScheduledFuture<?> scheduledRefresh;
+    private boolean closed = false;
+
+    public TokenManager(TokenProvider provider, Logger log) {
+        this(provider, DEFAULT_REFRESH_TIMEOUT_MILLIS, log);
+    }
+
+    /**
+     * @param refreshTimeoutMillis how long a caller waits for a token request in flight
+     */
+    public TokenManager(TokenProvider provider, long refreshTimeoutMillis, Logger log) {
+        this.provider = provider;
+        this.refreshTimeoutMillis = refreshTimeoutMillis;
+        this.log = log;
+    }
+
+    /**
+     * Logs in unconditionally and replaces the current token.
+     */
+    public TokenLoginResponse login() throws IOException, CxClientException {
+        return fetchToken();
+    }
+
+    /**
+     * Returns the current token without any network call, or null before the first login.
+     */
+    public TokenLoginResponse getToken() {
+        return token;
+    }
+
+    /**
+     * Returns a token that is not about to expire, refreshing it first if needed.
+     */
+    public TokenLoginResponse getValidToken() throws IOException, CxClientException {
+        usedSinceFetch = true;
+        TokenLoginResponse current = token;
+        if (current != null && isRefreshDue()) {
+            return refresh(current);
+        }
+        return current;
+    }
+
+    /**
+     * Refreshes the token unless another caller already replaced the given stale token with a fresh one.
+     */
+    public TokenLoginResponse refresh(TokenLoginResponse staleToken) throws IOException, CxClientException {
+        TokenLoginResponse current = token;
+        if (current != null && current != staleToken && !isRefreshDue()) {
+            return current;
+        }
+        return fetchToken();
+    }
+
+    public boolean isExpired() {
+        return token == null || (expiresAtNanos != 0 && System.nanoTime() - expiresAtNanos >= 0);
+    }
+
+    public synchronized void close() {
+        closed = true;
+        cancelScheduledRefresh();
+    }
+
+    private boolean isRefreshDue() {
+        return refreshAtNanos != 0 && System.nanoTime() - refreshAtNanos >= 0;
+    }
+
+    private TokenLoginResponse fetchToken() throws IOException, CxClientException {
+        CompletableFuture<TokenLoginResponse> own = new CompletableFuture<TokenLoginResponse>();
+        if (inFlight.compareAndSet(null, own)) {
+            try {
+                TokenLoginResponse newToken = provider.requestToken();
+                setToken(newToken);
+                own.complete(newToken);
+                return newToken;
+            } catch (IOException | CxClientException | RuntimeException e) {
+                own.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.compareAndSet(own, null);
+            }
+        }
+        CompletableFuture<TokenLoginResponse> pending = inFlight.get();
+        if (pending == null) { //completed in the meantime
+            return token != null ? token : fetchToken();
+        }
+        return await(pending);
+    }
+
+    private TokenLoginResponse await(CompletableFuture<TokenLoginResponse> pending) throws IOException, CxClientException {
+        try {
+            return pending.get(refreshTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            //let the next caller request a token of its own rather than wait for this request again
+            inFlight.compareAndSet(pending, null);
+            throw new CxClientException("Timed out after " + refreshTimeoutMillis + " ms waiting for the access token");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CxClientException("Interrupted while waiting for the access token", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CxClientException) {
+                throw (CxClientException) cause;
+            }
+            throw new CxClientException("Failed to get the access token: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void setToken(TokenLoginResponse newToken) {
+        long now = System.nanoTime();
+        long lifetimeSec = newToken == null ? 0 : newToken.getExpires_in();
+        if (lifetimeSec > 0) {
+            long marginSec = Math.min(Math.max(MIN_REFRESH_MARGIN_SEC, (long) (lifetimeSec * REFRESH_MARGIN_RATIO)), lifetimeSec / 2);
+            expiresAtNanos = now + TimeUnit.SECONDS.toNanos(lifetimeSec);
+            refreshAtNanos = now + TimeUnit.SECONDS.toNanos(lifetimeSec - marginSec);
+            token = newToken;
+            usedSinceFetch = false;
+            scheduleRefresh(lifetimeSec - marginSec);
+            log.debug("Access token received, expires in " + lifetimeSec + " seconds");
+        } else {
+            expiresAtNanos = 0;
+            refreshAtNanos = 0;
+            token = newToken;
+            synchronized (this) {
+                cancelScheduledRefresh();
+            }
+        }
+    }
+
+    private synchronized void scheduleRefresh(long delaySec) {
+        cancelScheduledRefresh();
+        if (closed) {
+            return;
+        }
+        scheduledRefresh = scheduler.schedule(createRefreshTask(new WeakReference<TokenManager>(this)), delaySec, TimeUnit.SECONDS);
+    }
+
+    //static, so that the scheduler holds the manager only weakly and a pending refresh does not keep an unclosed client alive
+    private static Runnable createRefreshTask(final WeakReference<TokenManager> manager) {
+        return new Runnable() {
+            public void run() {
+                final TokenManager tokenManager = manager.get();
+                if (tokenManager != null) {
+                    refreshExecutor.execute(new Runnable() {
+                        public void run() {
+                            tokenManager.backgroundRefresh();
+                        }
+                    });
+                }
+            }
+        };
+    }
+
+    private void backgroundRefresh() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        if (!usedSinceFetch) {
+            log.debug("Access token unused since it was received, refreshing it on demand from now on");
+            return;
+        }
+        try {
+            fetchToken();
+            log.debug("Access token refreshed in the background");
+        } catch (Exception e) {
+            log.warn("Failed to refresh access token in the background, retrying in " + RETRY_FAILED_REFRESH_SEC + " seconds: " + e.getMessage());
+            if (!isExpired()) {
+                scheduleRefresh(RETRY_FAILED_REFRESH_SEC);
+            }
+        }
+    }
+
+    //must be called while holding the manager lock
+    private void cancelScheduledRefresh() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
+        }
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cx-token-refresh-timer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
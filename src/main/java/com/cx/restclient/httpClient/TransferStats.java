@@ -0,0 +1,60 @@
+package com.cx.restclient.httpClient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Response body byte counters: bytes received on the wire vs. bytes after content decoding.
+ * One instance is kept per request (in the request context) and one accumulates the totals of a {@link CxHttpClient}.
+ */
+public class TransferStats {
+
+    public static final String CONTEXT_ATTRIBUTE = "cx.transfer.stats";
+
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong compressedResponses = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+
+    public void addResponse(boolean compressed) {
+        responses.incrementAndGet();
+        if (compressed) {
+            compressedResponses.incrementAndGet();
+        }
+    }
+
+    public void addBytes(long wire, long decoded) {
+        wireBytes.addAndGet(wire);
+        decodedBytes.addAndGet(decoded);
+    }
+
+    public void add(TransferStats other) {
+        responses.addAndGet(other.getResponses());
+        compressedResponses.addAndGet(other.getCompressedResponses());
+        addBytes(other.getWireBytes(), other.getDecodedBytes());
+    }
+
+    public long getResponses() {
+        return responses.get();
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.get();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    public long getSavedBytes() {
+        return Math.max(0, getDecodedBytes() - getWireBytes());
+    }
+
+    @Override
+    public String toString() {
+        return "received " + getDecodedBytes() + " bytes (" + getWireBytes() + " on the wire, " + getCompressedResponses() + "/" + getResponses() + " responses compressed)";
+    }
+}
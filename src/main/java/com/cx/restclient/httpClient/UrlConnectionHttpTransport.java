@@ -0,0 +1,197 @@
+package com.cx.restclient.httpClient;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.ImmutableHttpProcessor;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport on the JDK's {@link HttpURLConnection}, without Apache HttpClient on the wire path.
+ * Connections are reused through the JVM keep-alive cache (http.maxConnections), so it suits environments where
+ * the JDK networking stack (proxies, TLS settings, keep-alive) is centrally configured.
+ * The client's interceptors are run by an {@link HttpProcessor}, so authentication, CSRF, cookies and content
+ * decoding behave exactly as with the Apache transport. PATCH is not supported by {@link HttpURLConnection}
+ * and falls back to the default transport.
+ */
+public class UrlConnectionHttpTransport implements CxHttpTransport {
+
+    public static final String NAME = "jdk";
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final HttpProcessor httpProcessor;
+    private final SSLSocketFactory sslSocketFactory;
+    private final HostnameVerifier hostnameVerifier;
+
+    public UrlConnectionHttpTransport(CxConnectionPool connectionPool, List<HttpRequestInterceptor> requestInterceptors,
+                                      List<HttpResponseInterceptor> responseInterceptors) {
+        this.httpProcessor = new ImmutableHttpProcessor(requestInterceptors, responseInterceptors);
+        this.sslSocketFactory = connectionPool.getSSLContext() == null ? null : connectionPool.getSSLContext().getSocketFactory();
+        this.hostnameVerifier = connectionPool.getHostnameVerifier();
+    }
+
+    public CloseableHttpResponse execute(HttpRequestBase request, HttpClientContext context) throws IOException {
+        URI uri = request.getURI();
+        HttpHost target = URIUtils.extractHost(uri);
+        //interceptors add headers to a wrapper, so a retried request does not accumulate them
+        HttpRequestWrapper wrapper = HttpRequestWrapper.wrap(request, target);
+        context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, target);
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, wrapper);
+        try {
+            httpProcessor.process(wrapper, context);
+        } catch (HttpException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        final HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        //HttpRequestBase.abort() closes the connection, failing a blocked read or write
+        request.setCancellable(() -> {
+            connection.disconnect();
+            return true;
+        });
+        if (request.isAborted()) {
+            throw new RequestAbortedException("Request aborted");
+        }
+        if (connection instanceof HttpsURLConnection) {
+            if (sslSocketFactory != null) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+            }
+            if (hostnameVerifier != null) {
+                ((HttpsURLConnection) connection).setHostnameVerifier(hostnameVerifier);
+            }
+        }
+        connection.setRequestMethod(request.getMethod());
+        connection.setUseCaches(false);
+        for (Header header : wrapper.getAllHeaders()) {
+            connection.addRequestProperty(header.getName(), header.getValue());
+        }
+        writeEntity(connection, wrapper);
+
+        int statusCode = connection.getResponseCode();
+        UrlConnectionResponse response = new UrlConnectionResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode,
+                connection.getResponseMessage() == null ? "" : connection.getResponseMessage()));
+        for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+            if (field.getKey() == null) { //status line
+                continue;
+            }
+            for (String value : field.getValue()) {
+                response.addHeader(field.getKey(), value);
+            }
+        }
+        InputStream content = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        response.content = content;
+        response.setEntity(createEntity(connection, content));
+        context.setAttribute(HttpCoreContext.HTTP_RESPONSE, response);
+        try {
+            httpProcessor.process(response, context);
+        } catch (HttpException e) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            throw new IOException(e.getMessage(), e);
+        }
+        return response;
+    }
+
+    public boolean supportsMethod(String method) {
+        return !"PATCH".equalsIgnoreCase(method);
+    }
+
+    public void close() {
+        //connections belong to the JVM keep-alive cache
+    }
+
+    private static void writeEntity(HttpURLConnection connection, HttpRequestWrapper wrapper) throws IOException {
+        if (!(wrapper.getOriginal() instanceof HttpEntityEnclosingRequest)) {
+            return;
+        }
+        HttpEntity entity = ((HttpEntityEnclosingRequest) wrapper.getOriginal()).getEntity();
+        if (entity == null) {
+            return;
+        }
+        connection.setDoOutput(true);
+        if (entity.getContentType() != null && !wrapper.containsHeader("Content-Type")) {
+            connection.setRequestProperty("Content-Type", entity.getContentType().getValue());
+        }
+        if (entity.getContentLength() >= 0) {
+            connection.setFixedLengthStreamingMode(entity.getContentLength());
+        } else {
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+        }
+        OutputStream out = connection.getOutputStream();
+        try {
+            entity.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static HttpEntity createEntity(HttpURLConnection connection, InputStream content) {
+        if (content == null) {
+            return null;
+        }
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(content);
+        entity.setContentLength(connection.getContentLengthLong());
+        if (connection.getContentType() != null) {
+            entity.setContentType(connection.getContentType());
+        }
+        if (connection.getContentEncoding() != null) {
+            entity.setContentEncoding(connection.getContentEncoding());
+        }
+        return entity;
+    }
+
+    private static class UrlConnectionResponse extends BasicHttpResponse implements CloseableHttpResponse {
+        private InputStream content;
+
+        UrlConnectionResponse(BasicStatusLine statusLine) {
+            super(statusLine);
+        }
+
+        //closing the stream returns the connection to the JVM keep-alive cache once the body was read
+        public void close() throws IOException {
+            if (content != null) {
+                content.close();
+            }
+        }
+    }
+
+    public static class Factory implements CxHttpTransportFactory {
+        public String getName() {
+            return NAME;
+        }
+
+        public CxHttpTransport create(CxConnectionPool connectionPool, List<HttpRequestInterceptor> requestInterceptors,
+                                      List<HttpResponseInterceptor> responseInterceptors, boolean useSSO, Logger log) {
+            return new UrlConnectionHttpTransport(connectionPool, requestInterceptors, responseInterceptors);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.cx.restclient.httpClient.utils;
+
+import com.cx.restclient.httpClient.TransferStats;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.util.Args;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Response entity that decodes a gzip / deflate body while it is being read, so parsers consume the decoded
+ * stream directly. Bytes read from the wire and decoded bytes handed to the caller are added to a {@link TransferStats}.
+ */
+public class CountingDecompressingEntity extends HttpEntityWrapper {
+
+    private final String contentEncoding;
+    private final TransferStats stats;
+    private InputStream content;
+
+    /**
+     * @param contentEncoding gzip, x-gzip, deflate or null for an identity body
+     */
+    public CountingDecompressingEntity(HttpEntity wrapped, String contentEncoding, TransferStats stats) {
+        super(wrapped);
+        this.contentEncoding = contentEncoding;
+        this.stats = stats;
+    }
+
+    public static boolean isSupported(String contentEncoding) {
+        return "gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding) || "deflate".equalsIgnoreCase(contentEncoding);
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        if (!wrappedEntity.isStreaming()) {
+            return createContent();
+        }
+        if (content == null) {
+            content = createContent();
+        }
+        return content;
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        Args.notNull(outStream, "Output stream");
+        InputStream in = getContent();
+        try {
+            byte[] buffer = new byte[8192];
+            int l;
+            while ((l = in.read(buffer)) != -1) {
+                outStream.write(buffer, 0, l);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentEncoding == null ? wrappedEntity.getContentLength() : -1;
+    }
+
+    @Override
+    public org.apache.http.Header getContentEncoding() {
+        return contentEncoding == null ? wrappedEntity.getContentEncoding() : null;
+    }
+
+    private InputStream createContent() throws IOException {
+        final CountingInputStream wire = new CountingInputStream(wrappedEntity.getContent(), null);
+        InputStream decoded = wire;
+        if (contentEncoding != null) {
+            decoded = "deflate".equalsIgnoreCase(contentEncoding) ? new DeflateInputStream(wire) : new GZIPInputStream(wire);
+        }
+        return new CountingInputStream(decoded, wire);
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+        private final CountingInputStream wire; //null for the wire stream itself
+        private long count = 0;
+        private boolean reported = false;
+
+        CountingInputStream(InputStream in, CountingInputStream wire) {
+            super(in);
+            this.wire = wire;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            } else {
+                report();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            } else if (n == -1) {
+                report();
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                report();
+            }
+        }
+
+        //reports once the decoded stream is exhausted or closed
+        private void report() {
+            if (wire != null && !reported && stats != null) {
+                reported = true;
+                stats.addBytes(wire.count, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.cx.restclient.httpClient.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request entity wrapper that counts the body bytes written to the connection, over all attempts.
+ */
+public class CountingEntity extends HttpEntityWrapper {
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public CountingEntity(HttpEntity wrapped) {
+        super(wrapped);
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        wrappedEntity.writeTo(new FilterOutputStream(outStream) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesWritten.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesWritten.addAndGet(len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                //the connection stream is closed by the connection
+                flush();
+            }
+        });
+    }
+}
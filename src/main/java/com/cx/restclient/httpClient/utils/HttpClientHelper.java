@@ -4,20 +4,32 @@ package com.cx.restclient.httpClient.utils;
 import com.cx.restclient.common.ErrorMessage;
 import com.cx.restclient.exception.CxClientException;
 import com.cx.restclient.exception.CxHTTPClientException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by Galn on 06/02/2018.
  */
 public abstract class HttpClientHelper {
+
+    //ObjectMapper, ObjectReader and ObjectWriter are thread-safe once configured
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectWriter writer = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ConcurrentMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<JavaType, ObjectReader>();
+
     public static <T> T convertToObject(HttpResponse response, Class<T> responseType, boolean isCollection) throws IOException, CxClientException {
         //No content
         if (responseType == null || response.getEntity() == null || response.getEntity().getContentLength() == 0) {
@@ -29,45 +41,89 @@ public abstract class HttpClientHelper {
         }
         //convert to List<T>
         if (isCollection) {
-            return convertToCollectionObject(response, TypeFactory.defaultInstance().constructCollectionType(List.class, responseType));
+            return convertToCollectionObject(response, mapper.getTypeFactory().constructCollectionType(List.class, responseType));
         }
         //convert to T
         return convertToStrObject(response, responseType);
     }
 
+    /**
+     * Converts a JSON body that was already read into memory (e.g. a cached response).
+     */
+    public static <T> T convertToObject(byte[] body, Class<T> responseType, boolean isCollection) throws CxClientException {
+        if (responseType == null || body == null || body.length == 0) {
+            return null;
+        }
+        if (responseType.equals(byte[].class)) {
+            return (T) body;
+        }
+        JavaType javaType = isCollection ? mapper.getTypeFactory().constructCollectionType(List.class, responseType) : mapper.constructType(responseType);
+        try {
+            return getReader(javaType).readValue(body);
+        } catch (IOException e) {
+            throw new CxClientException("Failed to parse json response: " + e.getMessage(), e);
+        }
+    }
+
     private static <T> T convertToStrObject(HttpResponse response, Class<T> valueType) throws CxClientException {
-        ObjectMapper mapper = new ObjectMapper();
         try {
             if (response.getEntity() == null) {
                 return null;
             }
-            String json = IOUtils.toString(response.getEntity().getContent(), Charset.defaultCharset());
-            return mapper.readValue(json, valueType);
-
+            return readValue(response.getEntity(), mapper.constructType(valueType));
         } catch (IOException e) {
             throw new CxClientException("Failed to parse json response: " + e.getMessage());
         }
     }
 
     public static String convertToJson(Object o) throws CxClientException {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return mapper.writeValueAsString(o);
+            return writer.writeValueAsString(o);
+        } catch (Exception e) {
+            throw new CxClientException("Failed convert object to json: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a request entity holding the object as JSON, serialized once so that its length is known.
+     */
+    public static HttpEntity convertToJsonEntity(Object o) throws CxClientException {
+        try {
+            return new JsonEntity(o, writer.writeValueAsBytes(o));
         } catch (Exception e) {
             throw new CxClientException("Failed convert object to json: " + e.getMessage());
         }
     }
 
     private static <T> T convertToCollectionObject(HttpResponse response, JavaType javaType) throws CxClientException {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            String json = IOUtils.toString(response.getEntity().getContent(), Charset.defaultCharset());
-            return mapper.readValue(json, javaType);
+            return readValue(response.getEntity(), javaType);
         } catch (IOException e) {
             throw new CxClientException("Failed to parse json response: " + e.getMessage(), e);
         }
     }
 
+    private static <T> T readValue(HttpEntity entity, JavaType javaType) throws IOException {
+        InputStream content = entity.getContent();
+        try {
+            return getReader(javaType).readValue(content);
+        } finally {
+            IOUtils.closeQuietly(content);
+        }
+    }
+
+    private static ObjectReader getReader(JavaType javaType) {
+        ObjectReader reader = readers.get(javaType);
+        if (reader == null) {
+            reader = mapper.readerFor(javaType);
+            ObjectReader existing = readers.putIfAbsent(javaType, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
     public static void validateResponse(HttpResponse response, int status, String message) throws CxClientException {
         if (response.getStatusLine().getStatusCode() != status) {
             String responseBody = extractResponseBody(response);
@@ -0,0 +1,23 @@
+package com.cx.restclient.httpClient.utils;
+
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Request entity holding its object serialized once as UTF-8 JSON.
+ * The body is sent with its Content-Length rather than chunked, and is repeatable (e.g. for a retry after token
+ * expiry) without serializing the object again.
+ */
+public class JsonEntity extends ByteArrayEntity {
+
+    private final Object object;
+
+    JsonEntity(Object object, byte[] json) {
+        super(json, ContentType.APPLICATION_JSON);
+        this.object = object;
+    }
+
+    public Object getObject() {
+        return object;
+    }
+}
@@ -1,8 +1,15 @@
 package com.cx.restclient.sast.dto;
 
 import com.cx.restclient.cxArm.dto.Policy;
+import com.cx.restclient.sast.utils.SASTResultsAggregator;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -43,9 +50,16 @@ public class SASTResults implements Serializable {
     private String filesScanned;
     private String LOC;
     private List<CxXMLResults.Query> queryList;
+    private SASTResultsAggregator resultsAggregation;
 
     private byte[] rawXMLReport;
     private byte[] PDFReport;
+    //streamed reports are kept on disk and read only on demand
+    //a report file is not serialized, its content is
+    private transient File rawXMLReportFile;
+    private transient File PDFReportFile;
+    //report files in the temp directory, owned by these results
+    private transient List<File> temporaryReportFiles;
     private String pdfFileName;
 
     private List<Policy> sastPolicies = new ArrayList<>();
@@ -56,38 +70,28 @@ public class SASTResults implements Serializable {
     }
 
     public void setScanDetailedReport(CxXMLResults reportObj) {
+        setScanDetailedReport(SASTResultsAggregator.aggregate(reportObj));
+    }
+
+    /**
+     * Sets the detailed report from an aggregation done while the XML report was parsed.
+     * The query list excludes false positives; the parsed result lists are left untouched.
+     */
+    public void setScanDetailedReport(SASTResultsAggregator aggregator) {
+        CxXMLResults reportObj = aggregator.getReport();
         this.scanStart = reportObj.getScanStart();
         this.scanTime = reportObj.getScanTime();
         setScanStartEndDates(this.scanStart, this.scanTime);
         this.LOC = reportObj.getLinesOfCodeScanned();
         this.filesScanned = reportObj.getFilesScanned();
 
-        for (CxXMLResults.Query q : reportObj.getQuery()) {
-            List<CxXMLResults.Query.Result> qResult = q.getResult();
-            for (int i = 0; i < qResult.size(); i++) {
-                CxXMLResults.Query.Result result = qResult.get(i);
-                if ("True".equals(result.getFalsePositive())) {
-                    qResult.remove(i);
-                } else if ("New".equals(result.getStatus())) {
-                    Severity sev = Severity.valueOf(result.getSeverity());
-                    switch (sev) {
-                        case High:
-                            newHigh++;
-                            break;
-                        case Medium:
-                            newMedium++;
-                            break;
-                        case Low:
-                            newLow++;
-                            break;
-                        case Information:
-                            newInfo++;
-                            break;
-                    }
-                }
-            }
-        }
-        this.queryList = reportObj.getQuery();
+        SASTResultsAggregator.ResultCounts totals = aggregator.getTotals();
+        this.newHigh = totals.getNew(Severity.High);
+        this.newMedium = totals.getNew(Severity.Medium);
+        this.newLow = totals.getNew(Severity.Low);
+        this.newInfo = totals.getNew(Severity.Information);
+        this.queryList = aggregator.getQueryList(SASTResultsAggregator.NOT_FALSE_POSITIVE);
+        this.resultsAggregation = aggregator;
     }
 
     public void setResults(long scanId, SASTStatisticsResponse statisticsResults, String url, long projectId) {
@@ -272,8 +276,41 @@ public class SASTResults implements Serializable {
         return queryList;
     }
 
+    /**
+     * Counts per severity, query, CWE and file of the detailed report, or null if no XML report was retrieved.
+     */
+    public SASTResultsAggregator getResultsAggregation() {
+        return resultsAggregation;
+    }
+
+    /**
+     * Returns the raw XML report. A report streamed to disk is read from its file on every call;
+     * prefer {@link #getRawXMLReportFile()} for large reports.
+     */
     public byte[] getRawXMLReport() {
-        return rawXMLReport;
+        return rawXMLReport != null ? rawXMLReport : readReportFile(rawXMLReportFile);
+    }
+
+    /**
+     * A temporary report file stays on disk until {@link #deleteTemporaryReports()} is called or the JVM exits.
+     */
+    public File getRawXMLReportFile() {
+        return rawXMLReportFile;
+    }
+
+    public void setRawXMLReportFile(File rawXMLReportFile) {
+        this.rawXMLReportFile = rawXMLReportFile;
+        this.rawXMLReport = null;
+    }
+
+    /**
+     * @param temporary the file is a temporary copy owned by these results, deleted by {@link #deleteTemporaryReports()}
+     */
+    public void setRawXMLReportFile(File rawXMLReportFile, boolean temporary) {
+        setRawXMLReportFile(rawXMLReportFile);
+        if (temporary) {
+            addTemporaryReportFile(rawXMLReportFile);
+        }
     }
 
     public String getPdfFileName() {
@@ -286,14 +323,99 @@ public class SASTResults implements Serializable {
 
     public void setRawXMLReport(byte[] rawXMLReport) {
         this.rawXMLReport = rawXMLReport;
+        this.rawXMLReportFile = null;
     }
 
+    /**
+     * Returns the PDF report. A report streamed to disk is read from its file on every call;
+     * prefer {@link #getPDFReportFile()} for large reports.
+     */
     public byte[] getPDFReport() {
-        return PDFReport;
+        return PDFReport != null ? PDFReport : readReportFile(PDFReportFile);
     }
 
     public void setPDFReport(byte[] PDFReport) {
         this.PDFReport = PDFReport;
+        this.PDFReportFile = null;
+    }
+
+    /**
+     * A temporary report file stays on disk until {@link #deleteTemporaryReports()} is called or the JVM exits.
+     */
+    public File getPDFReportFile() {
+        return PDFReportFile;
+    }
+
+    public void setPDFReportFile(File PDFReportFile) {
+        this.PDFReportFile = PDFReportFile;
+        this.PDFReport = null;
+    }
+
+    /**
+     * @param temporary the file is a temporary copy owned by these results, deleted by {@link #deleteTemporaryReports()}
+     */
+    public void setPDFReportFile(File PDFReportFile, boolean temporary) {
+        setPDFReportFile(PDFReportFile);
+        if (temporary) {
+            addTemporaryReportFile(PDFReportFile);
+        }
+    }
+
+    /**
+     * Deletes the reports streamed to temporary files once the results are no longer needed; their getters return
+     * null afterwards. Reports written to the reports directory are kept. The temporary files are otherwise deleted
+     * when the JVM exits, so long-running hosts should call this when done with the results.
+     */
+    public synchronized void deleteTemporaryReports() {
+        if (temporaryReportFiles == null) {
+            return;
+        }
+        for (File report : temporaryReportFiles) {
+            if (report.equals(rawXMLReportFile)) {
+                rawXMLReportFile = null;
+            }
+            if (report.equals(PDFReportFile)) {
+                PDFReportFile = null;
+            }
+            report.delete();
+        }
+        temporaryReportFiles = null;
+    }
+
+    private synchronized void addTemporaryReportFile(File report) {
+        if (temporaryReportFiles == null) {
+            temporaryReportFiles = new ArrayList<File>();
+        }
+        temporaryReportFiles.add(report);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(rawXMLReportFile == null ? null : Files.readAllBytes(rawXMLReportFile.toPath()));
+        out.writeObject(PDFReportFile == null ? null : Files.readAllBytes(PDFReportFile.toPath()));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        byte[] xmlReport = (byte[]) in.readObject();
+        byte[] pdfReport = (byte[]) in.readObject();
+        if (xmlReport != null) {
+            rawXMLReport = xmlReport;
+        }
+        if (pdfReport != null) {
+            PDFReport = pdfReport;
+        }
+    }
+
+    private static byte[] readReportFile(File reportFile) {
+        if (reportFile == null) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(reportFile.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read report file: " + reportFile.getAbsolutePath(), e);
+        }
     }
 
     public boolean hasNewResults() {
@@ -0,0 +1,274 @@
+package com.cx.restclient.sast.utils;
+
+import com.cx.restclient.exception.CxClientException;
+import com.cx.restclient.sast.dto.CxXMLResults;
+import com.cx.restclient.sast.dto.CxXMLResults.Query;
+import com.cx.restclient.sast.dto.CxXMLResults.Query.Result;
+import com.cx.restclient.sast.dto.CxXMLResults.Query.Result.Path;
+import com.cx.restclient.sast.dto.CxXMLResults.Query.Result.Path.PathNode;
+import com.cx.restclient.sast.dto.CxXMLResults.Query.Result.Path.PathNode.Snippet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Streaming (StAX) reader for the SAST XML report.
+ * Queries and results are passed to a {@link CxXMLReportVisitor} as they are read, so only one result is held
+ * in memory at a time unless the visitor keeps them. In summary only mode the path nodes and code snippets
+ * of each result, which make up most of a large report, are skipped without being materialized.
+ */
+public class CxXMLReportParser {
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final boolean summaryOnly;
+
+    public CxXMLReportParser(boolean summaryOnly) {
+        this.summaryOnly = summaryOnly;
+    }
+
+    /**
+     * Reads the whole report into a {@link CxXMLResults} tree, equivalent to the JAXB unmarshalled report
+     * (without path nodes in summary only mode).
+     */
+    public CxXMLResults parse(InputStream in) throws CxClientException {
+        final CxXMLResults[] report = new CxXMLResults[1];
+        parse(in, new CxXMLReportVisitor() {
+            public void visitReport(CxXMLResults r) {
+                report[0] = r;
+            }
+
+            public void visitQuery(Query query) {
+                report[0].getQuery().add(query);
+            }
+
+            public void visitResult(Query query, Result result) {
+                query.getResult().add(result);
+            }
+        });
+        return report[0];
+    }
+
+    public void parse(InputStream in, CxXMLReportVisitor visitor) throws CxClientException {
+        XMLStreamReader reader = null;
+        try {
+            reader = INPUT_FACTORY.createXMLStreamReader(in);
+            CxXMLResults report = null;
+            Query query = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("CxXMLResults".equals(name)) {
+                        report = readReport(reader);
+                        visitor.visitReport(report);
+                    } else if ("Query".equals(name)) {
+                        query = readQuery(reader);
+                        visitor.visitQuery(query);
+                    } else if ("Result".equals(name) && query != null) {
+                        visitor.visitResult(query, readResult(reader));
+                    } else if (report != null) {
+                        skipElement(reader);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("Query".equals(name) && query != null) {
+                        visitor.endQuery(query);
+                        query = null;
+                    } else if ("CxXMLResults".equals(name) && report != null) {
+                        visitor.endReport(report);
+                    }
+                }
+            }
+            if (report == null) {
+                throw new CxClientException("Failed to parse xml report: CxXMLResults element not found");
+            }
+        } catch (XMLStreamException e) {
+            throw new CxClientException("Failed to parse xml report: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+    private static CxXMLResults readReport(XMLStreamReader reader) {
+        CxXMLResults report = new CxXMLResults();
+        report.setInitiatorName(attr(reader, "InitiatorName"));
+        report.setOwner(attr(reader, "Owner"));
+        report.setScanId(attr(reader, "ScanId"));
+        report.setProjectId(attr(reader, "ProjectId"));
+        report.setProjectName(attr(reader, "ProjectName"));
+        report.setTeamFullPathOnReportDate(attr(reader, "TeamFullPathOnReportDate"));
+        report.setDeepLink(attr(reader, "DeepLink"));
+        report.setScanStart(attr(reader, "ScanStart"));
+        report.setPreset(attr(reader, "Preset"));
+        report.setScanTime(attr(reader, "ScanTime"));
+        report.setLinesOfCodeScanned(attr(reader, "LinesOfCodeScanned"));
+        report.setFilesScanned(attr(reader, "FilesScanned"));
+        report.setReportCreationTime(attr(reader, "ReportCreationTime"));
+        report.setTeam(attr(reader, "Team"));
+        report.setCheckmarxVersion(attr(reader, "CheckmarxVersion"));
+        report.setScanComments(attr(reader, "ScanComments"));
+        report.setScanType(attr(reader, "ScanType"));
+        report.setSourceOrigin(attr(reader, "SourceOrigin"));
+        report.setVisibility(attr(reader, "Visibility"));
+        return report;
+    }
+
+    private static Query readQuery(XMLStreamReader reader) {
+        Query query = new Query();
+        query.setId(attr(reader, "id"));
+        query.setCategories(attr(reader, "categories"));
+        query.setCweId(attr(reader, "cweId"));
+        query.setName(attr(reader, "name"));
+        query.setGroup(attr(reader, "group"));
+        query.setSeverity(attr(reader, "Severity"));
+        query.setLanguage(attr(reader, "Language"));
+        query.setLanguageHash(attr(reader, "LanguageHash"));
+        query.setLanguageChangeDate(attr(reader, "LanguageChangeDate"));
+        query.setSeverityIndex(attr(reader, "SeverityIndex"));
+        query.setQueryPath(attr(reader, "QueryPath"));
+        query.setQueryVersionCode(attr(reader, "QueryVersionCode"));
+        return query;
+    }
+
+    private Result readResult(XMLStreamReader reader) throws XMLStreamException {
+        Result result = new Result();
+        result.setNodeId(attr(reader, "NodeId"));
+        result.setFileName(attr(reader, "FileName"));
+        result.setStatus(attr(reader, "Status"));
+        result.setLine(attr(reader, "Line"));
+        result.setColumn(attr(reader, "Column"));
+        result.setFalsePositive(attr(reader, "FalsePositive"));
+        result.setSeverity(attr(reader, "Severity"));
+        result.setAssignToUser(attr(reader, "AssignToUser"));
+        result.setState(attr(reader, "state"));
+        result.setRemark(attr(reader, "Remark"));
+        result.setDeepLink(attr(reader, "DeepLink"));
+        result.setSeverityIndex(attr(reader, "SeverityIndex"));
+
+        while (nextChild(reader)) {
+            if ("Path".equals(reader.getLocalName())) {
+                result.setPath(readPath(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return result;
+    }
+
+    private Path readPath(XMLStreamReader reader) throws XMLStreamException {
+        Path path = new Path();
+        path.setResultId(attr(reader, "ResultId"));
+        path.setPathId(attr(reader, "PathId"));
+        path.setSimilarityId(attr(reader, "SimilarityId"));
+        if (summaryOnly) {
+            skipElement(reader);
+            return path;
+        }
+        while (nextChild(reader)) {
+            if ("PathNode".equals(reader.getLocalName())) {
+                path.getPathNode().add(readPathNode(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return path;
+    }
+
+    private static PathNode readPathNode(XMLStreamReader reader) throws XMLStreamException {
+        PathNode node = new PathNode();
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if ("FileName".equals(name)) {
+                node.setFileName(reader.getElementText());
+            } else if ("Line".equals(name)) {
+                node.setLine(reader.getElementText());
+            } else if ("Column".equals(name)) {
+                node.setColumn(reader.getElementText());
+            } else if ("NodeId".equals(name)) {
+                node.setNodeId(reader.getElementText());
+            } else if ("Name".equals(name)) {
+                node.setName(reader.getElementText());
+            } else if ("Type".equals(name)) {
+                node.setType(reader.getElementText());
+            } else if ("Length".equals(name)) {
+                node.setLength(reader.getElementText());
+            } else if ("Snippet".equals(name)) {
+                node.setSnippet(readSnippet(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return node;
+    }
+
+    private static Snippet readSnippet(XMLStreamReader reader) throws XMLStreamException {
+        Snippet snippet = new Snippet();
+        while (nextChild(reader)) {
+            if ("Line".equals(reader.getLocalName())) {
+                Snippet.Line line = new Snippet.Line();
+                while (nextChild(reader)) {
+                    String name = reader.getLocalName();
+                    if ("Number".equals(name)) {
+                        line.setNumber(reader.getElementText());
+                    } else if ("Code".equals(name)) {
+                        line.setCode(reader.getElementText());
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+                snippet.setLine(line);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return snippet;
+    }
+
+    //moves to the next child element of the current element; returns false at the current element's end tag
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    //skips the current element and its subtree, leaving the reader on its end tag
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static String attr(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
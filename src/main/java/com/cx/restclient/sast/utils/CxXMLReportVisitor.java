@@ -0,0 +1,27 @@
+package com.cx.restclient.sast.utils;
+
+import com.cx.restclient.sast.dto.CxXMLResults;
+
+/**
+ * Receives the elements of a SAST XML report as {@link CxXMLReportParser} reads them.
+ * The report passed to {@link #visitReport} carries the report attributes only, and a query passed to
+ * {@link #visitQuery} has no results yet: results are handed over one by one to {@link #visitResult}
+ * and are not added to the query unless the visitor does so.
+ */
+public interface CxXMLReportVisitor {
+
+    default void visitReport(CxXMLResults report) {
+    }
+
+    default void visitQuery(CxXMLResults.Query query) {
+    }
+
+    default void visitResult(CxXMLResults.Query query, CxXMLResults.Query.Result result) {
+    }
+
+    default void endQuery(CxXMLResults.Query query) {
+    }
+
+    default void endReport(CxXMLResults report) {
+    }
+}
@@ -16,6 +16,7 @@ public class SASTParam {
     public static final String SAST_ZIP_ATTACHMENTS = "projects/{projectId}/sourceCode/attachments";//Attach ZIP file
     public static final String SAST_GET_PROJECT_SCANS = "sast/scans?projectId={projectId}";
     public static final String SAST_GET_QUEUED_SCANS = "sast/scansQueue?projectId={projectId}";
+    public static final String SAST_GET_ALL_QUEUED_SCANS = "sast/scansQueue";
 
 
     public static final String SAST_CREATE_REMOTE_SOURCE_SCAN = "projects/{projectId}/sourceCode/remoteSettings/{sourceType}";//todo maybe with ssh?
@@ -41,5 +42,6 @@ public class SASTParam {
 
     //REPORT PARAMS
     public static final String PDF_REPORT_NAME = "CxSASTReport";
+    public static final String XML_REPORT_NAME = "CxSASTReport";
 }
 
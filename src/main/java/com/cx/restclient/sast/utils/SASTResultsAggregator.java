@@ -0,0 +1,235 @@
+package com.cx.restclient.sast.utils;
+
+import com.cx.restclient.sast.dto.CxXMLResults;
+import com.cx.restclient.sast.dto.CxXMLResults.Query;
+import com.cx.restclient.sast.dto.CxXMLResults.Query.Result;
+import com.cx.restclient.sast.dto.SASTResults.Severity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Single pass aggregation of a SAST XML report: new, recurrent and false positive counts per severity,
+ * per query, per CWE and per file.
+ * It is a {@link CxXMLReportVisitor}, so it can be fed directly by {@link CxXMLReportParser} while the report
+ * is read, or by {@link #aggregate(CxXMLResults)} for an already unmarshalled report.
+ * Parsed result lists are never modified: {@link #getQueryList(Predicate)} returns filtered copies of the queries
+ * that share the result objects.
+ */
+public class SASTResultsAggregator implements CxXMLReportVisitor, Serializable {
+
+    public static final Predicate<Result> NOT_FALSE_POSITIVE = r -> !isFalsePositive(r);
+    public static final Predicate<Result> NEW = r -> !isFalsePositive(r) && isNew(r);
+
+    private transient CxXMLResults report;
+    private final List<Query> queries = new ArrayList<Query>();
+    private final ResultCounts totals = new ResultCounts();
+    private final Map<String, ResultCounts> countsByQuery = new LinkedHashMap<String, ResultCounts>();
+    private final Map<String, ResultCounts> countsByCwe = new LinkedHashMap<String, ResultCounts>();
+    private final Map<String, ResultCounts> countsByFile = new LinkedHashMap<String, ResultCounts>();
+
+    private transient Query currentQuery;
+    private transient ResultCounts currentQueryCounts;
+    private transient ResultCounts currentCweCounts;
+
+    public static SASTResultsAggregator aggregate(CxXMLResults report) {
+        SASTResultsAggregator aggregator = new SASTResultsAggregator();
+        aggregator.visitReport(report);
+        for (Query query : report.getQuery()) {
+            aggregator.startQuery(query, query);
+            for (Result result : query.getResult()) {
+                aggregator.count(query, result);
+            }
+            aggregator.endQuery(query);
+        }
+        aggregator.endReport(report);
+        return aggregator;
+    }
+
+    public void visitReport(CxXMLResults report) {
+        this.report = report;
+    }
+
+    public void visitQuery(Query query) {
+        //results are streamed without being attached to the query, so they are kept on a copy
+        startQuery(query, copyQuery(query));
+    }
+
+    public void visitResult(Query query, Result result) {
+        currentQuery.getResult().add(result);
+        count(query, result);
+    }
+
+    public void endQuery(Query query) {
+        queries.add(currentQuery);
+        currentQuery = null;
+        currentQueryCounts = null;
+        currentCweCounts = null;
+    }
+
+    private void startQuery(Query query, Query retained) {
+        currentQuery = retained;
+        currentQueryCounts = getCounts(countsByQuery, query.getName());
+        currentCweCounts = getCounts(countsByCwe, query.getCweId());
+    }
+
+    private void count(Query query, Result result) {
+        Severity severity = getSeverity(result.getSeverity() != null ? result.getSeverity() : query.getSeverity());
+        if (severity == null) {
+            return;
+        }
+        totals.add(severity, result);
+        currentQueryCounts.add(severity, result);
+        currentCweCounts.add(severity, result);
+        getCounts(countsByFile, result.getFileName()).add(severity, result);
+    }
+
+    /**
+     * Report attributes (scan start, LOC...). Not kept when the aggregator is serialized.
+     */
+    public CxXMLResults getReport() {
+        return report;
+    }
+
+    /**
+     * Returns copies of all the queries, each with the results that match the filter.
+     */
+    public List<Query> getQueryList(Predicate<Result> filter) {
+        List<Query> view = new ArrayList<Query>(queries.size());
+        for (Query query : queries) {
+            Query filtered = copyQuery(query);
+            for (Result result : query.getResult()) {
+                if (filter.test(result)) {
+                    filtered.getResult().add(result);
+                }
+            }
+            view.add(filtered);
+        }
+        return view;
+    }
+
+    public ResultCounts getTotals() {
+        return totals;
+    }
+
+    public Map<String, ResultCounts> getCountsByQuery() {
+        return Collections.unmodifiableMap(countsByQuery);
+    }
+
+    public Map<String, ResultCounts> getCountsByCwe() {
+        return Collections.unmodifiableMap(countsByCwe);
+    }
+
+    public Map<String, ResultCounts> getCountsByFile() {
+        return Collections.unmodifiableMap(countsByFile);
+    }
+
+    private static ResultCounts getCounts(Map<String, ResultCounts> counts, String key) {
+        key = key == null ? "" : key;
+        ResultCounts c = counts.get(key);
+        if (c == null) {
+            c = new ResultCounts();
+            counts.put(key, c);
+        }
+        return c;
+    }
+
+    private static Severity getSeverity(String severity) {
+        if (severity == null) {
+            return null;
+        }
+        for (Severity s : Severity.values()) {
+            if (s.name().equalsIgnoreCase(severity)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFalsePositive(Result result) {
+        return "True".equalsIgnoreCase(result.getFalsePositive());
+    }
+
+    private static boolean isNew(Result result) {
+        return "New".equals(result.getStatus());
+    }
+
+    private static Query copyQuery(Query query) {
+        Query copy = new Query();
+        copy.setId(query.getId());
+        copy.setCategories(query.getCategories());
+        copy.setCweId(query.getCweId());
+        copy.setName(query.getName());
+        copy.setGroup(query.getGroup());
+        copy.setSeverity(query.getSeverity());
+        copy.setLanguage(query.getLanguage());
+        copy.setLanguageHash(query.getLanguageHash());
+        copy.setLanguageChangeDate(query.getLanguageChangeDate());
+        copy.setSeverityIndex(query.getSeverityIndex());
+        copy.setQueryPath(query.getQueryPath());
+        copy.setQueryVersionCode(query.getQueryVersionCode());
+        return copy;
+    }
+
+    /**
+     * Result counts by severity. False positives are counted separately and not as new or recurrent.
+     */
+    public static class ResultCounts implements Serializable {
+        private final int[] newCounts = new int[Severity.values().length];
+        private final int[] recurrentCounts = new int[Severity.values().length];
+        private final int[] falsePositiveCounts = new int[Severity.values().length];
+
+        void add(Severity severity, Result result) {
+            if (isFalsePositive(result)) {
+                falsePositiveCounts[severity.ordinal()]++;
+            } else if (isNew(result)) {
+                newCounts[severity.ordinal()]++;
+            } else {
+                recurrentCounts[severity.ordinal()]++;
+            }
+        }
+
+        public int getNew(Severity severity) {
+            return newCounts[severity.ordinal()];
+        }
+
+        public int getRecurrent(Severity severity) {
+            return recurrentCounts[severity.ordinal()];
+        }
+
+        public int getFalsePositive(Severity severity) {
+            return falsePositiveCounts[severity.ordinal()];
+        }
+
+        //new and recurrent results, without false positives
+        public int getTotal(Severity severity) {
+            return getNew(severity) + getRecurrent(severity);
+        }
+
+        public int getTotal() {
+            int total = 0;
+            for (Severity s : Severity.values()) {
+                total += getTotal(s);
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Severity s : Severity.values()) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(s).append(": ").append(getTotal(s)).append(" (").append(getNew(s)).append(" new, ")
+                        .append(getFalsePositive(s)).append(" false positive)");
+            }
+            return sb.toString();
+        }
+    }
+}
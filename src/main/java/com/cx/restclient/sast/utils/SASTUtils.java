@@ -11,8 +11,12 @@ import org.slf4j.Logger;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
@@ -32,12 +36,21 @@ public abstract class SASTUtils {
         }
     }
 
+    //JAXBContext is thread safe and expensive to create; unmarshallers are not, so one is created per report
+    private static JAXBContext xmlResultsContext;
+
+    private static synchronized JAXBContext getXMLResultsContext() throws JAXBException {
+        if (xmlResultsContext == null) {
+            xmlResultsContext = JAXBContext.newInstance(CxXMLResults.class);
+        }
+        return xmlResultsContext;
+    }
+
     public static CxXMLResults convertToXMLResult(byte[] cxReport) throws CxClientException {
         CxXMLResults reportObj = null;
         ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(cxReport);
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(CxXMLResults.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = getXMLResultsContext().createUnmarshaller();
 
             reportObj = (CxXMLResults) unmarshaller.unmarshal(byteArrayInputStream);
 
@@ -49,6 +62,27 @@ public abstract class SASTUtils {
         return reportObj;
     }
 
+    /**
+     * Reads a report file with the streaming parser. In summary only mode the results carry no path nodes.
+     */
+    public static CxXMLResults convertToXMLResult(File cxReport, boolean summaryOnly) throws CxClientException, IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(cxReport));
+        try {
+            return new CxXMLReportParser(summaryOnly).parse(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    public static void parseXMLReport(File cxReport, boolean summaryOnly, CxXMLReportVisitor visitor) throws CxClientException, IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(cxReport));
+        try {
+            new CxXMLReportParser(summaryOnly).parse(in, visitor);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
     public static void printSASTResultsToConsole(SASTResults sastResults,boolean enableViolations, Logger log) {
 
         String highNew = sastResults.getNewHigh() > 0 ? " (" + sastResults.getNewHigh() + " new)" : "";
@@ -0,0 +1,268 @@
+package com.cx.restclient.sast.utils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Durations of past SAST scans, kept in an append-only file with a JSON record per line, and the duration they
+ * predict for the next scan of a project.
+ * The prediction is the median duration of the latest scans of the project with the same incremental flag,
+ * preferring those with the same preset; its envelope is the longest of them with a margin, beyond which a scan
+ * is unusually slow. Only the latest scans of each project are kept in memory, and once the file has grown past
+ * a threshold it is rewritten with only those.
+ * Histories are shared per file, so concurrent clients append to the file through one instance.
+ */
+public class ScanHistory {
+
+    public static final int MAX_SCANS_PER_PROJECT = 20;
+    //scans a prediction is based on
+    private static final int PREDICTION_SCANS = 10;
+    private static final double ENVELOPE_FACTOR = 1.5;
+    //records in the file beyond which it is compacted, provided it holds at least twice the records kept
+    static final int COMPACTION_THRESHOLD = 1000;
+
+    private static final ConcurrentMap<String, ScanHistory> sharedHistories = new ConcurrentHashMap<String, ScanHistory>();
+    private static final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final File file;
+    private final Map<String, Deque<Record>> scansByProject = new HashMap<String, Deque<Record>>();
+    private int fileRecords;
+
+    /**
+     * @param file history file; null - the history is kept in memory only
+     */
+    public ScanHistory(File file, Logger log) {
+        this.file = file;
+        load(log);
+    }
+
+    /**
+     * Returns the history shared by all clients using the same file.
+     */
+    public static ScanHistory getShared(File file, Logger log) {
+        String key = file.getAbsolutePath();
+        ScanHistory history = sharedHistories.get(key);
+        if (history == null) {
+            ScanHistory newHistory = new ScanHistory(file, log);
+            history = sharedHistories.putIfAbsent(key, newHistory);
+            if (history == null) {
+                history = newHistory;
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Appends a completed scan to the history.
+     */
+    public void add(Record record, Logger log) {
+        synchronized (this) {
+            remember(record);
+            if (file == null) {
+                return;
+            }
+            try {
+                File parent = file.getAbsoluteFile().getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                Files.write(file.toPath(), Collections.singletonList(mapper.writeValueAsString(record)), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                fileRecords++;
+            } catch (IOException e) {
+                log.debug("Failed to append to scan history " + file + ": " + e.getMessage());
+                return;
+            }
+            if (fileRecords > COMPACTION_THRESHOLD && fileRecords >= 2 * countKept()) {
+                compact(log);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with the latest scans of each project. The file is read again rather than written from
+     * memory, so records appended by other processes since this one loaded it are kept.
+     */
+    private void compact(Logger log) {
+        Map<String, Deque<Record>> latest = new HashMap<String, Deque<Record>>();
+        if (readFile(latest, log) < 0) {
+            return;
+        }
+        List<String> lines = new ArrayList<String>();
+        try {
+            for (Deque<Record> scans : latest.values()) {
+                for (Record scan : scans) {
+                    lines.add(mapper.writeValueAsString(scan));
+                }
+            }
+            File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            Files.write(tmp.toPath(), lines, StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            log.debug("Compacted scan history " + file + " from " + fileRecords + " to " + lines.size() + " records");
+            fileRecords = lines.size();
+        } catch (IOException e) {
+            log.debug("Failed to compact scan history " + file + ": " + e.getMessage());
+        }
+    }
+
+    private int countKept() {
+        int kept = 0;
+        for (Deque<Record> scans : scansByProject.values()) {
+            kept += scans.size();
+        }
+        return kept;
+    }
+
+    /**
+     * @return the predicted duration of the next scan of the project, or null without a past scan to base it on
+     */
+    public synchronized Prediction predict(String server, long projectId, String preset, boolean incremental) {
+        Deque<Record> scans = scansByProject.get(createKey(server, projectId));
+        if (scans == null) {
+            return null;
+        }
+        List<Long> sameKind = new ArrayList<Long>();
+        List<Long> samePreset = new ArrayList<Long>();
+        for (Iterator<Record> it = scans.descendingIterator(); it.hasNext(); ) {
+            Record scan = it.next();
+            if (scan.incremental != incremental || scan.totalMillis <= 0) {
+                continue;
+            }
+            if (sameKind.size() < PREDICTION_SCANS) {
+                sameKind.add(scan.totalMillis);
+            }
+            if (samePreset.size() < PREDICTION_SCANS && preset != null && preset.equals(scan.preset)) {
+                samePreset.add(scan.totalMillis);
+            }
+        }
+        List<Long> durations = samePreset.isEmpty() ? sameKind : samePreset;
+        if (durations.isEmpty()) {
+            return null;
+        }
+        Collections.sort(durations);
+        long median = durations.get(durations.size() / 2);
+        if (durations.size() % 2 == 0) {
+            median = (median + durations.get(durations.size() / 2 - 1)) / 2;
+        }
+        return new Prediction(median, (long) (durations.get(durations.size() - 1) * ENVELOPE_FACTOR), durations.size());
+    }
+
+    private static String createKey(String server, long projectId) {
+        return server + "|" + projectId;
+    }
+
+    private void remember(Record record) {
+        remember(scansByProject, record);
+    }
+
+    private static void remember(Map<String, Deque<Record>> byProject, Record record) {
+        String key = createKey(record.server, record.projectId);
+        Deque<Record> scans = byProject.get(key);
+        if (scans == null) {
+            scans = new ArrayDeque<Record>();
+            byProject.put(key, scans);
+        }
+        scans.addLast(record);
+        if (scans.size() > MAX_SCANS_PER_PROJECT) {
+            scans.removeFirst();
+        }
+    }
+
+    private void load(Logger log) {
+        if (file != null && file.isFile()) {
+            fileRecords = Math.max(0, readFile(scansByProject, log));
+        }
+    }
+
+    /**
+     * @return the records read from the file, or -1 if it could not be read to the end
+     */
+    private int readFile(Map<String, Deque<Record>> byProject, Logger log) {
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                records++;
+                try {
+                    remember(byProject, mapper.readValue(line, Record.class));
+                } catch (IOException e) {
+                    //a line cut short by a crashed run
+                    log.debug("Skipped a corrupt scan history record in " + file);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed to load scan history from " + file + ": " + e.getMessage());
+            return -1;
+        }
+        return records;
+    }
+
+    /**
+     * A completed scan. Durations are measured by the client from the start of its wait.
+     */
+    public static class Record {
+        public String server;
+        public long projectId;
+        public long scanId;
+        public long finishedAtMillis;
+        public String preset;
+        public boolean incremental;
+        public long loc = -1;
+        public long files = -1;
+        //until the scan left the queue
+        public long queuedMillis = -1;
+        public long totalMillis;
+    }
+
+    public static class Prediction {
+        private final long durationMillis;
+        private final long envelopeMillis;
+        private final int scans;
+
+        Prediction(long durationMillis, long envelopeMillis, int scans) {
+            this.durationMillis = durationMillis;
+            this.envelopeMillis = envelopeMillis;
+            this.scans = scans;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * Duration beyond which the scan runs longer than any past scan it was predicted from, with a margin.
+         */
+        public long getEnvelopeMillis() {
+            return envelopeMillis;
+        }
+
+        /**
+         * Past scans the prediction is based on.
+         */
+        public int getScans() {
+            return scans;
+        }
+    }
+}
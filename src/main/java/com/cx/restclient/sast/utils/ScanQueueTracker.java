@@ -0,0 +1,134 @@
+package com.cx.restclient.sast.utils;
+
+import com.cx.restclient.sast.dto.ResponseQueueScanStatus;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves the status of many concurrent SAST scans from one listing of the scans queue.
+ * The listing is requested at most once per interval, whichever wait asks first, and every other wait in the
+ * interval is answered from it. A scan missing from the listing (it has just been queued or has already left the
+ * queue) gets null, and the caller falls back to the status request of the scan.
+ * Share one tracker only between clients logged in as the same user: the listing holds the scans the user can see.
+ */
+public class ScanQueueTracker {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 10000;
+
+    private final long intervalNanos;
+    private final AtomicLong listings = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Listing listing;
+    //the listing being requested, so that only one wait requests it
+    private final AtomicReference<CompletableFuture<Listing>> pendingListing = new AtomicReference<CompletableFuture<Listing>>();
+
+    public ScanQueueTracker() {
+        this(DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public ScanQueueTracker(long intervalMillis) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Returns the status of the scan in the latest listing. No lock is held while the queue is listed: the
+     * wait whose turn it is requests the listing, and meanwhile the other waits are answered from the previous
+     * listing, or wait for the request only when there is none yet.
+     *
+     * @param listQueue requests the listing of the scans queue; called at most once per interval
+     * @param log logs a failed listing
+     * @return the status of the scan, or null when the scan is not in the queue or the listing failed
+     */
+    public ResponseQueueScanStatus getStatus(long scanId, Callable<List<ResponseQueueScanStatus>> listQueue, Logger log) {
+        Listing current = listing;
+        if (current == null || System.nanoTime() - current.listedAt >= intervalNanos) {
+            current = refresh(current, listQueue, log);
+        }
+        ResponseQueueScanStatus scanStatus = current != null ? current.scans.get(scanId) : null;
+        (scanStatus != null ? hits : misses).incrementAndGet();
+        return scanStatus;
+    }
+
+    //returns null only when there is no listing at all, after an unexpected failure of the first one
+    private Listing refresh(Listing stale, Callable<List<ResponseQueueScanStatus>> listQueue, Logger log) {
+        CompletableFuture<Listing> own = new CompletableFuture<Listing>();
+        if (!pendingListing.compareAndSet(null, own)) {
+            CompletableFuture<Listing> pending = pendingListing.get();
+            if (stale != null || pending == null) {
+                return stale != null ? stale : listing;
+            }
+            return pending.join();
+        }
+        Listing fresh = stale;
+        try {
+            fresh = listing;
+            if (fresh == stale) { //not listed by another wait in the meantime
+                fresh = new Listing(list(listQueue, log), System.nanoTime());
+                listing = fresh;
+            }
+            return fresh;
+        } finally {
+            //completed even when the listing throws, so that no wait blocks on it forever
+            own.complete(fresh);
+            pendingListing.set(null);
+        }
+    }
+
+    private Map<Long, ResponseQueueScanStatus> list(Callable<List<ResponseQueueScanStatus>> listQueue, Logger log) {
+        listings.incrementAndGet();
+        Map<Long, ResponseQueueScanStatus> scans = new HashMap<Long, ResponseQueueScanStatus>();
+        try {
+            List<ResponseQueueScanStatus> statuses = listQueue.call();
+            if (statuses != null) {
+                for (ResponseQueueScanStatus status : statuses) {
+                    scans.put(status.getId(), status);
+                }
+            }
+        } catch (Exception e) {
+            //every wait falls back to its own status request until the next listing
+            log.warn("Failed to list the scans queue, falling back to the status request of each scan: " + e.getMessage());
+            log.debug("Scans queue listing failure", e);
+        }
+        return scans;
+    }
+
+    /**
+     * Listings of the scans queue requested so far.
+     */
+    public long getListings() {
+        return listings.get();
+    }
+
+    /**
+     * Statuses served from a listing.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Statuses left to the status request of the scan.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Listing {
+        private final Map<Long, ResponseQueueScanStatus> scans;
+        private final long listedAt;
+
+        Listing(Map<Long, ResponseQueueScanStatus> scans, long listedAt) {
+            this.scans = scans;
+            this.listedAt = listedAt;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.cx.restclient.sast.utils.zip;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Entries, bytes and CPU time per compression strategy of one archive. Entries copied from a {@link ZipCache}
+ * are counted with the strategy they were stored with, and no CPU time.
+ */
+public class CompressionStatistics {
+
+    public enum Strategy {
+        STORED,
+        DEFLATED_FAST,
+        DEFLATED
+    }
+
+    private static final int ENTRIES = 0;
+    private static final int INPUT_BYTES = 1;
+    private static final int OUTPUT_BYTES = 2;
+    private static final int CPU_NANOS = 3;
+    private static final int FIELDS = 4;
+
+    private final AtomicLongArray values = new AtomicLongArray(Strategy.values().length * FIELDS);
+
+    void add(Strategy strategy, long inputBytes, long outputBytes, long cpuNanos) {
+        int base = strategy.ordinal() * FIELDS;
+        values.incrementAndGet(base + ENTRIES);
+        values.addAndGet(base + INPUT_BYTES, inputBytes);
+        values.addAndGet(base + OUTPUT_BYTES, outputBytes);
+        values.addAndGet(base + CPU_NANOS, cpuNanos);
+    }
+
+    public long getEntries(Strategy strategy) {
+        return values.get(strategy.ordinal() * FIELDS + ENTRIES);
+    }
+
+    public long getInputBytes(Strategy strategy) {
+        return values.get(strategy.ordinal() * FIELDS + INPUT_BYTES);
+    }
+
+    public long getOutputBytes(Strategy strategy) {
+        return values.get(strategy.ordinal() * FIELDS + OUTPUT_BYTES);
+    }
+
+    /**
+     * CPU time of the threads that compressed the entries, or their wall time where thread CPU time is not
+     * supported.
+     */
+    public long getCpuMillis(Strategy strategy) {
+        return values.get(strategy.ordinal() * FIELDS + CPU_NANOS) / 1000000L;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Strategy strategy : Strategy.values()) {
+            if (getEntries(strategy) == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(strategy.name().toLowerCase()).append(": ").append(getEntries(strategy)).append(" entries, ")
+                    .append(getInputBytes(strategy)).append(" -> ").append(getOutputBytes(strategy)).append(" bytes, ")
+                    .append(getCpuMillis(strategy)).append(" ms CPU");
+        }
+        return sb.toString();
+    }
+}
@@ -2,6 +2,7 @@ package com.cx.restclient.sast.utils.zip;
 
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.slf4j.Logger;
 
 import java.io.File;
@@ -12,7 +13,10 @@ import java.io.OutputStream;
 
 public class CxZip {
     private long maxZipSizeInBytes = 2147483648l;
-    private int numOfZippedFiles = 0;
+    private int zipThreads = 1;
+    private long progressInterval = 10000;
+    private File cacheDir;
+    private ZipCompression compression = ZipCompression.BALANCED;
 
     private String tempFileName;
     private Logger log;
@@ -25,32 +29,48 @@ public class CxZip {
 
     public File zipWorkspaceFolder(File baseDir, String[] includes, String[] excludes)
             throws IOException {
-        log.info("Zipping workspace: '" + baseDir + "'");
-
-        ZipListener zipListener = new ZipListener() {
-            public void updateProgress(String fileName, long size) {
-                numOfZippedFiles++;
-                log.info("Zipping (" + FileUtils.byteCountToDisplaySize(size) + "): " + fileName);
-            }
-        };
-
         File tempFile = File.createTempFile(tempFileName, ".bin");
         OutputStream fileOutputStream = new FileOutputStream(tempFile);
 
         try {
-            new Zipper(log).zip(baseDir, includes, excludes, fileOutputStream, maxZipSizeInBytes, zipListener);
-        } catch (Zipper.MaxZipSizeReached e) {
+            zipWorkspaceFolder(baseDir, includes, excludes, fileOutputStream);
+        } catch (IOException e) {
+            fileOutputStream.close();
             tempFile.delete();
+            throw e;
+        }
+        log.info("Temporary file with zipped sources was created at: '" + tempFile.getAbsolutePath() + "'");
+
+        return tempFile;
+    }
+
+    /**
+     * Zips the workspace into the given stream and closes it.
+     *
+     * @return the compressed size
+     */
+    public long zipWorkspaceFolder(File baseDir, String[] includes, String[] excludes, OutputStream outputStream)
+            throws IOException {
+        log.info("Zipping workspace: '" + baseDir + "'");
+        ZipProgressReporter progress = new ZipProgressReporter(log, progressInterval);
+        Zipper zipper = new Zipper(log).setThreads(zipThreads).setCompression(compression);
+        if (cacheDir != null) {
+            zipper.setCache(new ZipCache(cacheDir, baseDir, compression, log));
+        }
+
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        try {
+            zipper.zip(baseDir, includes, excludes, countingOutputStream, maxZipSizeInBytes, progress);
+        } catch (Zipper.MaxZipSizeReached e) {
             throw new IOException("Reached maximum upload size limit of " + FileUtils.byteCountToDisplaySize(maxZipSizeInBytes));
         } catch (Zipper.NoFilesToZip e) {
             throw new IOException("No files to zip");
         }
 
-        log.info("Zipping complete with " + numOfZippedFiles + " files, total compressed size: " +
-                FileUtils.byteCountToDisplaySize(tempFile.length()));
-        log.info("Temporary file with zipped sources was created at: '" + tempFile.getAbsolutePath() + "'");
-
-        return tempFile;
+        progress.complete();
+        log.info("Zipping complete with " + progress.getFiles() + " files, total compressed size: " +
+                FileUtils.byteCountToDisplaySize(countingOutputStream.getByteCount()));
+        return countingOutputStream.getByteCount();
     }
 
     public CxZip setMaxZipSizeInBytes(long maxZipSizeInBytes) {
@@ -58,6 +78,34 @@ public class CxZip {
         return this;
     }
 
+    public CxZip setZipThreads(int zipThreads) {
+        this.zipThreads = zipThreads;
+        return this;
+    }
+
+    /**
+     * Keeps the deflated entries of the workspace files under the given folder, so unchanged files are not
+     * compressed again by the next zip of the same workspace.
+     */
+    public CxZip setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+        return this;
+    }
+
+    /**
+     * Time between progress summaries in milliseconds; 0 - only the final summary.
+     * Each zipped file is logged at debug level.
+     */
+    public CxZip setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+        return this;
+    }
+
+    public CxZip setCompression(ZipCompression compression) {
+        this.compression = compression;
+        return this;
+    }
+
     public CxZip setTempFileName(String tempFileName) {
         this.tempFileName = tempFileName;
         return this;
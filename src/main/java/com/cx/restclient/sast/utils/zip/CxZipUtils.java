@@ -21,14 +21,38 @@ import static com.cx.restclient.sast.utils.SASTParam.TEMP_FILE_NAME_TO_ZIP;
 public abstract class CxZipUtils {
 
     public static File zipWorkspaceFolder(CxScanConfig config, long maxZipBytes, Logger log) throws IOException {
-        Map<String, List<String>> stringListMap = ShragaUtils.generateIncludesExcludesPatternLists(config.getSastFolderExclusions(), config.getSastFilterPattern(), log);
-        List<String> includes = stringListMap.get(ShragaUtils.INCLUDES_LIST);
-        List<String> excludes = stringListMap.get(ShragaUtils.EXCLUDES_LIST);
+        String[][] patterns = getIncludesExcludes(config, log);
+        CxZip cxZip = createCxZip(config, maxZipBytes, log);
+
+        return cxZip.zipWorkspaceFolder(new File(config.getSourceDir()), patterns[0], patterns[1]);
+
+    }
 
-        CxZip cxZip = new CxZip(TEMP_FILE_NAME_TO_ZIP, maxZipBytes, log);
+    /**
+     * Creates an upload body that zips the workspace while the request is sent, without a temporary file.
+     */
+    public static StreamingZipBody createStreamingZipBody(CxScanConfig config, long maxZipBytes, Logger log) {
+        String[][] patterns = getIncludesExcludes(config, log);
+        CxZip cxZip = createCxZip(config, maxZipBytes, log);
 
-        return cxZip.zipWorkspaceFolder(new File(config.getSourceDir()), includes.toArray(new String[includes.size()]), excludes.toArray(new String[excludes.size()]));
+        return new StreamingZipBody(cxZip, new File(config.getSourceDir()), patterns[0], patterns[1], TEMP_FILE_NAME_TO_ZIP);
+    }
+
+    private static CxZip createCxZip(CxScanConfig config, long maxZipBytes, Logger log) {
+        CxZip cxZip = new CxZip(TEMP_FILE_NAME_TO_ZIP, maxZipBytes, log).setZipThreads(config.getZipThreads())
+                .setCompression(config.getZipCompression())
+                .setProgressInterval(config.getZipProgressInterval() * 1000L);
+        if (config.getZipCacheDir() != null) {
+            cxZip.setCacheDir(new File(config.getZipCacheDir()));
+        }
+        return cxZip;
+    }
 
+    private static String[][] getIncludesExcludes(CxScanConfig config, Logger log) {
+        Map<String, List<String>> stringListMap = ShragaUtils.generateIncludesExcludesPatternLists(config.getSastFolderExclusions(), config.getSastFilterPattern(), log);
+        List<String> includes = stringListMap.get(ShragaUtils.INCLUDES_LIST);
+        List<String> excludes = stringListMap.get(ShragaUtils.EXCLUDES_LIST);
+        return new String[][]{includes.toArray(new String[includes.size()]), excludes.toArray(new String[excludes.size()])};
     }
 }
 
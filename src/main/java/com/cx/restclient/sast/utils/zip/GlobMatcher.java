@@ -0,0 +1,247 @@
+package com.cx.restclient.sast.utils.zip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Case insensitive matcher for Ant style path patterns ({@code **}, {@code *} and {@code ?}), compiled once into
+ * an automaton over path segments.
+ * A state is the set of pattern positions reached by the segments matched so far, so a walk computes the state
+ * of each directory once from its parent and tests a file with a single step. The state also tells whether no
+ * path below a directory can match, or every path below it does, which lets a scanner prune whole directories.
+ */
+class GlobMatcher {
+
+    private static final String DEEP = "**";
+
+    private final Segment[] segments; //all patterns, each followed by a null terminator
+    private final boolean[] matchesRest; //the remaining pattern matches the empty path
+    private final boolean[] matchesAllBelow; //the remaining pattern matches every non empty path
+    private final int[] initial;
+
+    GlobMatcher(String[] patterns) {
+        List<Segment> list = new ArrayList<Segment>();
+        List<Integer> starts = new ArrayList<Integer>();
+        for (String pattern : patterns) {
+            starts.add(list.size());
+            for (String token : tokenize(pattern)) {
+                list.add(new Segment(token));
+            }
+            list.add(null);
+        }
+        segments = list.toArray(new Segment[list.size()]);
+        matchesRest = new boolean[segments.length];
+        matchesAllBelow = new boolean[segments.length];
+        for (int i = segments.length - 1; i >= 0; i--) {
+            if (segments[i] == null) {
+                matchesRest[i] = true;
+            } else {
+                matchesRest[i] = segments[i].deep && matchesRest[i + 1];
+            }
+        }
+        for (int i = 0; i < segments.length; i++) {
+            matchesAllBelow[i] = computeMatchesAllBelow(i);
+        }
+        int[] states = new int[starts.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = starts.get(i);
+        }
+        initial = close(states, states.length);
+    }
+
+    /**
+     * State of the base directory.
+     */
+    int[] start() {
+        return initial;
+    }
+
+    /**
+     * State of a child directory.
+     */
+    int[] step(int[] state, String name) {
+        String segment = name.toLowerCase(Locale.ENGLISH);
+        int[] next = new int[state.length * 2];
+        int count = 0;
+        for (int s : state) {
+            Segment token = segments[s];
+            if (token == null) {
+                continue;
+            }
+            if (token.deep) {
+                next = add(next, count++, s);
+            } else if (token.matches(segment)) {
+                next = add(next, count++, s + 1);
+            }
+        }
+        return close(next, count);
+    }
+
+    /**
+     * Whether a file with the given name, in the directory of the given state, matches a pattern.
+     */
+    boolean matches(int[] state, String name) {
+        String segment = null;
+        for (int s : state) {
+            Segment token = segments[s];
+            if (token == null) {
+                continue;
+            }
+            if (token.deep) {
+                if (matchesRest[s]) {
+                    return true;
+                }
+            } else if (matchesRest[s + 1]) {
+                if (segment == null) {
+                    segment = name.toLowerCase(Locale.ENGLISH);
+                }
+                if (token.matches(segment)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether no path below the directory of the given state can match.
+     */
+    boolean matchesNoneBelow(int[] state) {
+        for (int s : state) {
+            if (segments[s] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether every path below the directory of the given state matches.
+     */
+    boolean matchesAllBelow(int[] state) {
+        for (int s : state) {
+            if (matchesAllBelow[s]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //the rest is made of * and ** only, with at least one ** and at most one *
+    private boolean computeMatchesAllBelow(int i) {
+        boolean deep = false;
+        int single = 0;
+        for (; segments[i] != null; i++) {
+            if (segments[i].deep) {
+                deep = true;
+            } else if (segments[i].any) {
+                single++;
+            } else {
+                return false;
+            }
+        }
+        return deep && single <= 1;
+    }
+
+    //adds the positions that follow a ** (which can match no segment), sorted and without duplicates
+    private int[] close(int[] states, int count) {
+        for (int i = 0; i < count; i++) {
+            Segment token = segments[states[i]];
+            if (token != null && token.deep) {
+                states = add(states, count++, states[i] + 1);
+            }
+        }
+        int[] sorted = Arrays.copyOf(states, count);
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+    }
+
+    private static int[] add(int[] states, int count, int state) {
+        if (count == states.length) {
+            states = Arrays.copyOf(states, Math.max(4, count * 2));
+        }
+        states[count] = state;
+        return states;
+    }
+
+    //like Ant: both separators are accepted, a trailing separator means everything below and ** repeats collapse
+    private static List<String> tokenize(String pattern) {
+        String normalized = pattern.replace('\\', '/');
+        if (normalized.endsWith("/")) {
+            normalized += DEEP;
+        }
+        List<String> tokens = new ArrayList<String>();
+        for (String token : normalized.split("/")) {
+            if (token.isEmpty() || (DEEP.equals(token) && !tokens.isEmpty() && DEEP.equals(tokens.get(tokens.size() - 1)))) {
+                continue;
+            }
+            tokens.add(token.toLowerCase(Locale.ENGLISH));
+        }
+        return tokens;
+    }
+
+    private static class Segment {
+        private final boolean deep;
+        private final boolean any;
+        private final String literal; //exact name, or the suffix of *suffix
+        private final boolean suffix;
+        private final Pattern regex;
+
+        Segment(String token) {
+            deep = DEEP.equals(token);
+            any = "*".equals(token);
+            String rest = token.startsWith("*") ? token.substring(1) : token;
+            if (deep || any) {
+                literal = null;
+                suffix = false;
+                regex = null;
+            } else if (rest.indexOf('*') < 0 && rest.indexOf('?') < 0) {
+                literal = rest;
+                suffix = rest.length() != token.length();
+                regex = null;
+            } else {
+                literal = null;
+                suffix = false;
+                regex = toRegex(token);
+            }
+        }
+
+        boolean matches(String segment) {
+            if (any) {
+                return true;
+            }
+            if (literal != null) {
+                return suffix ? segment.endsWith(literal) : segment.equals(literal);
+            }
+            return regex.matcher(segment).matches();
+        }
+
+        private static Pattern toRegex(String token) {
+            StringBuilder sb = new StringBuilder();
+            int start = 0;
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                if (c == '*' || c == '?') {
+                    if (i > start) {
+                        sb.append(Pattern.quote(token.substring(start, i)));
+                    }
+                    sb.append(c == '*' ? ".*" : ".");
+                    start = i + 1;
+                }
+            }
+            if (start < token.length()) {
+                sb.append(Pattern.quote(token.substring(start)));
+            }
+            return Pattern.compile(sb.toString(), Pattern.DOTALL);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.cx.restclient.sast.utils.zip;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Multipart body that zips the workspace straight into the request as it is sent.
+ * The length is unknown up front, so the request is sent with chunked transfer encoding and compression
+ * overlaps the upload without a temporary zip file. The body can be written only once.
+ */
+public class StreamingZipBody extends AbstractContentBody {
+
+    private final CxZip cxZip;
+    private final File baseDir;
+    private final String[] includes;
+    private final String[] excludes;
+    private final String filename;
+    private boolean written;
+
+    public StreamingZipBody(CxZip cxZip, File baseDir, String[] includes, String[] excludes, String filename) {
+        super(ContentType.APPLICATION_OCTET_STREAM);
+        this.cxZip = cxZip;
+        this.baseDir = baseDir;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.filename = filename;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (written) {
+            throw new IOException("Zipped sources were already streamed");
+        }
+        written = true;
+        //the multipart entity still has to write its closing boundary
+        cxZip.zipWorkspaceFolder(baseDir, includes, excludes, new CloseShieldOutputStream(out));
+    }
+
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    public long getContentLength() {
+        return -1;
+    }
+}
@@ -0,0 +1,114 @@
+package com.cx.restclient.sast.utils.zip;
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+
+/**
+ * Walks a workspace and reports the files that match the include and exclude patterns, with the same
+ * (case insensitive, Ant style) semantics as {@link org.apache.tools.ant.DirectoryScanner} with symbolic links
+ * followed.
+ * Files are reported as they are found instead of being collected first. Directories that cannot hold an
+ * included file, or whose whole content is excluded (such as {@code **}{@code /node_modules/**}{@code /*}),
+ * are not entered at all. Symbolic link loops are reported and skipped.
+ */
+class WorkspaceScanner {
+
+    interface FileHandler {
+        /**
+         * @param name path relative to the base directory, with / separators
+         */
+        void file(String name, File file, long size) throws IOException;
+    }
+
+    private final File baseDir;
+    private final GlobMatcher includes;
+    private final GlobMatcher excludes;
+    private final Logger log;
+    private int prunedDirectories;
+
+    WorkspaceScanner(File baseDir, String[] includePatterns, String[] excludePatterns, Logger log) {
+        this.baseDir = baseDir;
+        this.includes = new GlobMatcher(includePatterns != null && includePatterns.length > 0 ? includePatterns : new String[]{"**"});
+        this.excludes = new GlobMatcher(excludePatterns != null ? excludePatterns : new String[0]);
+        this.log = log;
+    }
+
+    void scan(final FileHandler handler) throws IOException {
+        final Path root = baseDir.toPath();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        final Deque<int[][]> states = new ArrayDeque<int[][]>();
+        final Deque<String> prefixes = new ArrayDeque<String>();
+        Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                int[][] state;
+                String prefix;
+                if (states.isEmpty()) {
+                    state = new int[][]{includes.start(), excludes.start()};
+                    prefix = "";
+                } else {
+                    String name = dir.getFileName().toString();
+                    int[][] parent = states.peek();
+                    state = new int[][]{includes.step(parent[0], name), excludes.step(parent[1], name)};
+                    if (includes.matchesNoneBelow(state[0]) || excludes.matchesAllBelow(state[1])) {
+                        prunedDirectories++;
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    prefix = prefixes.peek() + name + "/";
+                }
+                states.push(state);
+                prefixes.push(prefix);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (states.isEmpty() || !attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = file.getFileName().toString();
+                int[][] state = states.peek();
+                if (includes.matches(state[0], name) && !excludes.matches(state[1], name)) {
+                    handler.file(prefixes.peek() + name, file.toFile(), attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                if (e instanceof FileSystemLoopException) {
+                    log.warn("Skipping symbolic link loop: " + root.relativize(file));
+                } else if (!(e instanceof NoSuchFileException)) {
+                    log.debug("Skipping unreadable path: " + file + ": " + e.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                states.pop();
+                prefixes.pop();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    int getPrunedDirectories() {
+        return prunedDirectories;
+    }
+}
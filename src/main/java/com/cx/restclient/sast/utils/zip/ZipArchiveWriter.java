@@ -0,0 +1,390 @@
+package com.cx.restclient.sast.utils.zip;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Minimal sequential ZIP writer for entries that were compressed elsewhere.
+ * Unlike {@link org.apache.tools.zip.ZipOutputStream} it accepts raw (already deflated) entry data, so entries
+ * can be compressed on other threads and written here in order. Names are written as UTF-8 with the language
+ * encoding flag, like the UTF8 encoding of the Ant stream, and ZIP64 records are added only when needed.
+ */
+class ZipArchiveWriter {
+
+    private static final int LOCAL_FILE_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_FILE_HEADER_SIG = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIR_SIG = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIR_SIG = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIR_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRY_COUNT_LIMIT = 0xFFFF;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CountingStream out;
+    private final List<CentralDirectoryRecord> records = new ArrayList<CentralDirectoryRecord>();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] deflateBuffer = new byte[BUFFER_SIZE];
+    private final byte[] header = new byte[64];
+    private boolean closed;
+
+    ZipArchiveWriter(OutputStream out) {
+        this(out, 0);
+    }
+
+    /**
+     * @param maxSize size limit of the archive; a write beyond it fails with {@link Zipper.MaxZipSizeReached}.
+     *                0 - no limit
+     */
+    ZipArchiveWriter(OutputStream out, long maxSize) {
+        this.out = new CountingStream(out, maxSize);
+    }
+
+    /**
+     * Writes an entry whose data was already compressed (or is stored as is) with known CRC and sizes.
+     */
+    void writeEntry(String name, long time, int method, long crc, long size, byte[] data, int offset, int length) throws IOException {
+        CentralDirectoryRecord record = new CentralDirectoryRecord(name, time, method, 0, out.getCount());
+        record.crc = crc;
+        record.size = size;
+        record.compressedSize = length;
+        writeLocalFileHeader(record, needsZip64(size, length));
+        out.write(data, offset, length);
+        records.add(record);
+    }
+
+    /**
+     * Copies an entry as is, with the CRC and size computed beforehand.
+     *
+     * @return the size of the entry
+     * @throws IOException if the stream does not hold exactly {@code size} bytes, such as a file that changed
+     */
+    long writeStoredEntry(String name, long time, long crc, long size, InputStream in) throws IOException {
+        CentralDirectoryRecord record = new CentralDirectoryRecord(name, time, ZipEntry.STORED, 0, out.getCount());
+        record.crc = crc;
+        record.size = size;
+        record.compressedSize = size;
+        writeLocalFileHeader(record, needsZip64(size, size));
+        long remaining = size;
+        int n;
+        while (remaining > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+        if (remaining > 0 || in.read() != -1) {
+            throw new IOException("Entry " + name + " changed while it was zipped");
+        }
+        records.add(record);
+        return size;
+    }
+
+    /**
+     * Deflates an entry while it is written. The CRC and sizes follow the data in a data descriptor.
+     * The expected size is used only to decide whether ZIP64 sizes are needed.
+     *
+     * @return the compressed size of the entry
+     */
+    long writeDeflatedEntry(String name, long time, InputStream in, long expectedSize, Deflater deflater) throws IOException {
+        CentralDirectoryRecord record = new CentralDirectoryRecord(name, time, ZipEntry.DEFLATED, FLAG_DATA_DESCRIPTOR, out.getCount());
+        boolean zip64 = needsZip64(expectedSize, expectedSize + expectedSize / 100 + BUFFER_SIZE);
+        writeLocalFileHeader(record, zip64);
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        long start = out.getCount();
+        deflater.reset();
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            crc.update(buffer, 0, n);
+            size += n;
+            deflater.setInput(buffer, 0, n);
+            while (!deflater.needsInput()) {
+                drainDeflater(deflater);
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            drainDeflater(deflater);
+        }
+        record.crc = crc.getValue();
+        record.size = size;
+        record.compressedSize = out.getCount() - start;
+
+        int pos = 0;
+        pos = putInt(header, pos, DATA_DESCRIPTOR_SIG);
+        pos = putInt(header, pos, (int) record.crc);
+        if (zip64) {
+            pos = putLong(header, pos, record.compressedSize);
+            pos = putLong(header, pos, record.size);
+        } else {
+            if (needsZip64(record.size, record.compressedSize)) {
+                throw new IOException("Entry " + name + " exceeds 4 GB");
+            }
+            pos = putInt(header, pos, (int) record.compressedSize);
+            pos = putInt(header, pos, (int) record.size);
+        }
+        out.write(header, 0, pos);
+        records.add(record);
+        return record.compressedSize;
+    }
+
+    private void drainDeflater(Deflater deflater) throws IOException {
+        int len = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+        if (len > 0) {
+            out.write(deflateBuffer, 0, len);
+        }
+    }
+
+    /**
+     * Bytes written to the underlying stream so far.
+     */
+    long getBytesWritten() {
+        return out.getCount();
+    }
+
+    int getEntryCount() {
+        return records.size();
+    }
+
+    /**
+     * Closes the underlying stream without completing the archive.
+     */
+    void abort() throws IOException {
+        if (!closed) {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the underlying stream.
+     */
+    void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long centralDirOffset = out.getCount();
+            for (CentralDirectoryRecord record : records) {
+                writeCentralDirectoryHeader(record);
+            }
+            long centralDirSize = out.getCount() - centralDirOffset;
+            writeEndOfCentralDirectory(centralDirOffset, centralDirSize);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeLocalFileHeader(CentralDirectoryRecord record, boolean zip64) throws IOException {
+        boolean descriptor = (record.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        int pos = 0;
+        pos = putInt(header, pos, LOCAL_FILE_HEADER_SIG);
+        pos = putShort(header, pos, zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        pos = putShort(header, pos, record.flags);
+        pos = putShort(header, pos, record.method);
+        pos = putInt(header, pos, (int) record.dosTime);
+        pos = putInt(header, pos, descriptor ? 0 : (int) record.crc);
+        if (zip64) {
+            pos = putInt(header, pos, (int) ZIP64_LIMIT);
+            pos = putInt(header, pos, (int) ZIP64_LIMIT);
+        } else {
+            pos = putInt(header, pos, descriptor ? 0 : (int) record.compressedSize);
+            pos = putInt(header, pos, descriptor ? 0 : (int) record.size);
+        }
+        pos = putShort(header, pos, record.name.length);
+        pos = putShort(header, pos, zip64 ? 20 : 0);
+        out.write(header, 0, pos);
+        out.write(record.name);
+        if (zip64) {
+            pos = 0;
+            pos = putShort(header, pos, ZIP64_EXTRA_ID);
+            pos = putShort(header, pos, 16);
+            pos = putLong(header, pos, descriptor ? 0 : record.size);
+            pos = putLong(header, pos, descriptor ? 0 : record.compressedSize);
+            out.write(header, 0, pos);
+        }
+    }
+
+    private void writeCentralDirectoryHeader(CentralDirectoryRecord record) throws IOException {
+        boolean sizeZip64 = record.size >= ZIP64_LIMIT;
+        boolean compressedSizeZip64 = record.compressedSize >= ZIP64_LIMIT;
+        boolean offsetZip64 = record.offset >= ZIP64_LIMIT;
+        int extraLength = (sizeZip64 ? 8 : 0) + (compressedSizeZip64 ? 8 : 0) + (offsetZip64 ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+
+        int pos = 0;
+        pos = putInt(header, pos, CENTRAL_FILE_HEADER_SIG);
+        pos = putShort(header, pos, zip64 ? VERSION_ZIP64 : VERSION_DEFAULT); //made by: MS-DOS
+        pos = putShort(header, pos, zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        pos = putShort(header, pos, record.flags);
+        pos = putShort(header, pos, record.method);
+        pos = putInt(header, pos, (int) record.dosTime);
+        pos = putInt(header, pos, (int) record.crc);
+        pos = putInt(header, pos, (int) (compressedSizeZip64 ? ZIP64_LIMIT : record.compressedSize));
+        pos = putInt(header, pos, (int) (sizeZip64 ? ZIP64_LIMIT : record.size));
+        pos = putShort(header, pos, record.name.length);
+        pos = putShort(header, pos, zip64 ? extraLength + 4 : 0);
+        pos = putShort(header, pos, 0); //comment
+        pos = putShort(header, pos, 0); //disk number
+        pos = putShort(header, pos, 0); //internal attributes
+        pos = putInt(header, pos, 0); //external attributes
+        pos = putInt(header, pos, (int) (offsetZip64 ? ZIP64_LIMIT : record.offset));
+        out.write(header, 0, pos);
+        out.write(record.name);
+        if (zip64) {
+            pos = 0;
+            pos = putShort(header, pos, ZIP64_EXTRA_ID);
+            pos = putShort(header, pos, extraLength);
+            if (sizeZip64) {
+                pos = putLong(header, pos, record.size);
+            }
+            if (compressedSizeZip64) {
+                pos = putLong(header, pos, record.compressedSize);
+            }
+            if (offsetZip64) {
+                pos = putLong(header, pos, record.offset);
+            }
+            out.write(header, 0, pos);
+        }
+    }
+
+    private void writeEndOfCentralDirectory(long centralDirOffset, long centralDirSize) throws IOException {
+        int entries = records.size();
+        boolean zip64 = entries >= ZIP64_ENTRY_COUNT_LIMIT || centralDirOffset >= ZIP64_LIMIT || centralDirSize >= ZIP64_LIMIT;
+        int pos;
+        if (zip64) {
+            long zip64EndOffset = out.getCount();
+            pos = 0;
+            pos = putInt(header, pos, ZIP64_END_OF_CENTRAL_DIR_SIG);
+            pos = putLong(header, pos, 44); //size of the remaining record
+            pos = putShort(header, pos, VERSION_ZIP64);
+            pos = putShort(header, pos, VERSION_ZIP64);
+            pos = putInt(header, pos, 0); //this disk
+            pos = putInt(header, pos, 0); //central directory disk
+            pos = putLong(header, pos, entries);
+            pos = putLong(header, pos, entries);
+            pos = putLong(header, pos, centralDirSize);
+            pos = putLong(header, pos, centralDirOffset);
+            out.write(header, 0, pos);
+
+            pos = 0;
+            pos = putInt(header, pos, ZIP64_END_OF_CENTRAL_DIR_LOCATOR_SIG);
+            pos = putInt(header, pos, 0);
+            pos = putLong(header, pos, zip64EndOffset);
+            pos = putInt(header, pos, 1); //total disks
+            out.write(header, 0, pos);
+        }
+        pos = 0;
+        pos = putInt(header, pos, END_OF_CENTRAL_DIR_SIG);
+        pos = putShort(header, pos, 0);
+        pos = putShort(header, pos, 0);
+        pos = putShort(header, pos, zip64 ? ZIP64_ENTRY_COUNT_LIMIT : entries);
+        pos = putShort(header, pos, zip64 ? ZIP64_ENTRY_COUNT_LIMIT : entries);
+        pos = putInt(header, pos, (int) (zip64 ? ZIP64_LIMIT : centralDirSize));
+        pos = putInt(header, pos, (int) (zip64 ? ZIP64_LIMIT : centralDirOffset));
+        pos = putShort(header, pos, 0); //comment
+        out.write(header, 0, pos);
+    }
+
+    private static boolean needsZip64(long size, long compressedSize) {
+        return size >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT;
+    }
+
+    private static int putShort(byte[] b, int pos, int value) {
+        b[pos] = (byte) value;
+        b[pos + 1] = (byte) (value >>> 8);
+        return pos + 2;
+    }
+
+    private static int putInt(byte[] b, int pos, int value) {
+        pos = putShort(b, pos, value);
+        return putShort(b, pos, value >>> 16);
+    }
+
+    private static int putLong(byte[] b, int pos, long value) {
+        pos = putInt(b, pos, (int) value);
+        return putInt(b, pos, (int) (value >>> 32));
+    }
+
+    private static long toDosTime(long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        int year = c.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((year - 1980) << 25) | ((c.get(Calendar.MONTH) + 1) << 21) | (c.get(Calendar.DAY_OF_MONTH) << 16)
+                | (c.get(Calendar.HOUR_OF_DAY) << 11) | (c.get(Calendar.MINUTE) << 5) | (c.get(Calendar.SECOND) >> 1);
+    }
+
+    private static class CentralDirectoryRecord {
+        private final byte[] name;
+        private final long dosTime;
+        private final int method;
+        private final int flags;
+        private final long offset;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        CentralDirectoryRecord(String name, long time, int method, int flags, long offset) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.dosTime = toDosTime(time);
+            this.method = method;
+            this.flags = flags | FLAG_UTF8;
+            this.offset = offset;
+        }
+    }
+
+    private static class CountingStream extends FilterOutputStream {
+        private final long maxSize;
+        private long count;
+
+        CountingStream(OutputStream out, long maxSize) {
+            super(out);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkSize(1);
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkSize(len);
+            out.write(b, off, len);
+            count += len;
+        }
+
+        private void checkSize(int len) throws IOException {
+            if (maxSize > 0 && count + len > maxSize) {
+                throw new Zipper.MaxZipSizeReached(count, maxSize);
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
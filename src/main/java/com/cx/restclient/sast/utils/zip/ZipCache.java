@@ -0,0 +1,463 @@
+package com.cx.restclient.sast.utils.zip;
+
+import com.cx.restclient.sast.utils.zip.CompressionStatistics.Strategy;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of deflated zip entries for one workspace, so unchanged files are copied into a new archive
+ * without being compressed again.
+ * The cache of a workspace is kept in its own folder under the cache directory. Deflated entries are appended
+ * to one pack file per run, and an index maps each path with its size, modification time and content hash
+ * (SHA-1) to an entry in a pack. A file whose size and modification time did not change is not read at all;
+ * a touched or renamed file is read and hashed, and reuses the stored entry when its content is the same.
+ * The index is rewritten by {@link #commit()} after a successful archive. Entries of files that are no longer
+ * zipped are dropped then, and the packs are merged once they hold more unused than used data.
+ * Entries are kept as they were compressed, so the cache of a workspace is dropped when it is zipped with
+ * another {@link ZipCompression}.
+ */
+public class ZipCache {
+
+    private static final int INDEX_VERSION = 2;
+    private static final String INDEX_FILE = "index";
+    private static final String PACK_PREFIX = "pack-";
+    private static final int MAX_PACKS = 8;
+    private static final int PACK_BUFFER_SIZE = 256 * 1024;
+
+    private final File dir;
+    private final ZipCompression compression;
+    private final Logger log;
+    private final Map<String, IndexEntry> index = new HashMap<String, IndexEntry>();
+    private final Map<String, IndexEntry> contentIndex = new ConcurrentHashMap<String, IndexEntry>();
+    private final Map<String, IndexEntry> newIndex = new ConcurrentHashMap<String, IndexEntry>();
+    private final Map<String, FileChannel> packs = new HashMap<String, FileChannel>();
+    private final String newPackName;
+    private OutputStream newPack;
+    private long newPackSize;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicLong hitBytes = new AtomicLong();
+    private final AtomicLong savedNanos = new AtomicLong();
+
+    public ZipCache(File cacheDir, File baseDir, Logger log) throws IOException {
+        this(cacheDir, baseDir, ZipCompression.BALANCED, log);
+    }
+
+    /**
+     * @param cacheDir    root folder of the cache; it can be shared by several workspaces
+     * @param baseDir     the zipped workspace
+     * @param compression the compression of the archives that use the cache
+     */
+    public ZipCache(File cacheDir, File baseDir, ZipCompression compression, Logger log) throws IOException {
+        this.dir = new File(cacheDir, toHex(createDigest().digest(baseDir.getCanonicalPath().getBytes(StandardCharsets.UTF_8))).substring(0, 16));
+        this.compression = compression;
+        this.log = log;
+        this.newPackName = PACK_PREFIX + Long.toHexString(System.currentTimeMillis()) + Integer.toHexString(System.identityHashCode(this));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create zip cache folder: " + dir);
+        }
+        readIndex();
+    }
+
+    /**
+     * Returns the cached entry of a path, if the file size and modification time did not change.
+     */
+    IndexEntry lookup(String name, long size, long time) {
+        IndexEntry entry = index.get(name);
+        return entry != null && entry.size == size && entry.time == time ? entry : null;
+    }
+
+    /**
+     * Returns a cached entry with the given content, from a previous run or from this one.
+     */
+    IndexEntry lookupContent(String hash) {
+        return contentIndex.get(hash);
+    }
+
+    /**
+     * Reads a deflated entry. A missing or damaged entry is a miss.
+     */
+    Blob read(IndexEntry entry) {
+        long start = System.nanoTime();
+        try {
+            byte[] data = readData(entry);
+            savedNanos.addAndGet(Math.max(0, entry.deflateNanos - (System.nanoTime() - start)));
+            return new Blob(entry.strategy, entry.size, entry.crc, entry.deflateNanos, data, data.length);
+        } catch (IOException e) {
+            log.debug("Ignoring zip cache entry " + entry.hash + ": " + e.getMessage());
+            contentIndex.remove(entry.hash, entry);
+            return null;
+        }
+    }
+
+    ZipCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Appends a compressed entry to the pack of this run.
+     */
+    IndexEntry write(String hash, Blob blob) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(blob.data, 0, blob.length);
+        long offset;
+        synchronized (this) {
+            if (newPack == null) {
+                newPack = new BufferedOutputStream(new FileOutputStream(new File(dir, newPackName)), PACK_BUFFER_SIZE);
+            }
+            offset = newPackSize;
+            newPack.write(blob.data, 0, blob.length);
+            newPackSize += blob.length;
+        }
+        IndexEntry entry = new IndexEntry(blob.strategy, blob.size, 0, hash, newPackName, offset, blob.length, blob.crc, crc.getValue(), blob.deflateNanos);
+        contentIndex.put(hash, entry);
+        return entry;
+    }
+
+    /**
+     * Records the cached entry of a zipped file for the next run.
+     */
+    void record(String name, long time, IndexEntry entry, boolean hit) {
+        newIndex.put(name, entry.withTime(time));
+        if (hit) {
+            hits.incrementAndGet();
+            hitBytes.addAndGet(entry.size);
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Saves the index of the files zipped in this run, deletes the packs it does not use and closes the cache.
+     */
+    public synchronized void commit() throws IOException {
+        if (newPack != null) {
+            newPack.close();
+            newPack = null;
+        }
+        Map<String, IndexEntry> entries = new HashMap<String, IndexEntry>(newIndex);
+        Set<String> usedPacks = new HashSet<String>();
+        Set<String> usedEntries = new HashSet<String>();
+        long usedBytes = 0;
+        for (IndexEntry entry : entries.values()) {
+            usedPacks.add(entry.pack);
+            if (usedEntries.add(entry.getLocation())) {
+                usedBytes += entry.length;
+            }
+        }
+        long packBytes = 0;
+        for (String pack : usedPacks) {
+            packBytes += new File(dir, pack).length();
+        }
+        if (usedPacks.size() > MAX_PACKS || usedBytes < packBytes / 2) {
+            entries = compact(entries);
+        }
+
+        File temp = new File(dir, INDEX_FILE + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(compression.name());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, IndexEntry> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().write(out);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), new File(dir, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        close();
+
+        usedPacks.clear();
+        for (IndexEntry entry : entries.values()) {
+            usedPacks.add(entry.pack);
+        }
+        File[] files = dir.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            if (file.getName().startsWith(PACK_PREFIX) && !usedPacks.contains(file.getName())) {
+                file.delete();
+            }
+        }
+    }
+
+    //copies the used entries into a single new pack
+    private Map<String, IndexEntry> compact(Map<String, IndexEntry> entries) throws IOException {
+        String packName = newPackName + "c";
+        Map<String, IndexEntry> moved = new HashMap<String, IndexEntry>();
+        Map<String, IndexEntry> compacted = new HashMap<String, IndexEntry>();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(dir, packName)), PACK_BUFFER_SIZE);
+        try {
+            long offset = 0;
+            for (Map.Entry<String, IndexEntry> e : entries.entrySet()) {
+                IndexEntry entry = e.getValue();
+                IndexEntry copy = moved.get(entry.getLocation());
+                if (copy == null) {
+                    byte[] data;
+                    try {
+                        data = readData(entry);
+                    } catch (IOException ex) {
+                        continue;
+                    }
+                    out.write(data);
+                    copy = new IndexEntry(entry.strategy, entry.size, entry.time, entry.hash, packName, offset, entry.length, entry.crc, entry.dataCrc, entry.deflateNanos);
+                    offset += entry.length;
+                    moved.put(entry.getLocation(), copy);
+                }
+                compacted.put(e.getKey(), copy.withTime(entry.time));
+            }
+        } finally {
+            out.close();
+        }
+        return compacted;
+    }
+
+    /**
+     * Closes the pack files. The pack of a run that was not committed is deleted by the next commit.
+     */
+    public synchronized void close() {
+        if (newPack != null) {
+            try {
+                newPack.close();
+            } catch (IOException ignored) {
+            }
+            newPack = null;
+        }
+        for (FileChannel channel : packs.values()) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        packs.clear();
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), hitBytes.get(), savedNanos.get());
+    }
+
+    private byte[] readData(IndexEntry entry) throws IOException {
+        byte[] data = new byte[entry.length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        FileChannel channel = getPack(entry.pack);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new IOException("truncated pack");
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if (crc.getValue() != entry.dataCrc) {
+            throw new IOException("corrupted entry");
+        }
+        return data;
+    }
+
+    private synchronized FileChannel getPack(String pack) throws IOException {
+        if (pack.equals(newPackName) && newPack != null) {
+            //a file with the same content as one zipped earlier in this run
+            newPack.flush();
+        }
+        FileChannel channel = packs.get(pack);
+        if (channel == null) {
+            channel = new RandomAccessFile(new File(dir, pack), "r").getChannel();
+            packs.put(pack, channel);
+        }
+        return channel;
+    }
+
+    private void readIndex() {
+        File file = new File(dir, INDEX_FILE);
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != INDEX_VERSION || !in.readUTF().equals(compression.name())) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = in.readUTF();
+                    IndexEntry entry = IndexEntry.read(in);
+                    index.put(name, entry);
+                    contentIndex.put(entry.hash, entry);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            log.debug("Ignoring zip cache index " + file + ": " + e.getMessage());
+            index.clear();
+            contentIndex.clear();
+        }
+    }
+
+    static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Location of a deflated entry in a pack, with the size, modification time and CRC of the original file.
+     */
+    static class IndexEntry {
+        private final Strategy strategy;
+        private final long size;
+        private final long time;
+        private final String hash;
+        private final String pack;
+        private final long offset;
+        private final int length;
+        private final long crc;
+        private final long dataCrc;
+        private final long deflateNanos;
+
+        IndexEntry(Strategy strategy, long size, long time, String hash, String pack, long offset, int length, long crc, long dataCrc, long deflateNanos) {
+            this.strategy = strategy;
+            this.size = size;
+            this.time = time;
+            this.hash = hash;
+            this.pack = pack;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            this.dataCrc = dataCrc;
+            this.deflateNanos = deflateNanos;
+        }
+
+        IndexEntry withTime(long time) {
+            return new IndexEntry(strategy, size, time, hash, pack, offset, length, crc, dataCrc, deflateNanos);
+        }
+
+        String getLocation() {
+            return pack + ":" + offset;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(strategy.ordinal());
+            out.writeLong(size);
+            out.writeLong(time);
+            out.writeUTF(hash);
+            out.writeUTF(pack);
+            out.writeLong(offset);
+            out.writeInt(length);
+            out.writeInt((int) crc);
+            out.writeInt((int) dataCrc);
+            out.writeLong(deflateNanos);
+        }
+
+        static IndexEntry read(DataInputStream in) throws IOException {
+            return new IndexEntry(Strategy.values()[in.readByte()], in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readLong(), in.readInt(),
+                    in.readInt() & 0xFFFFFFFFL, in.readInt() & 0xFFFFFFFFL, in.readLong());
+        }
+    }
+
+    /**
+     * A compressed entry with the CRC and size of the original file and the time it took to compress it.
+     */
+    static class Blob {
+        final Strategy strategy;
+        final long size;
+        final long crc;
+        final long deflateNanos;
+        final byte[] data;
+        final int length;
+
+        Blob(Strategy strategy, long size, long crc, long deflateNanos, byte[] data, int length) {
+            this.strategy = strategy;
+            this.size = size;
+            this.crc = crc;
+            this.deflateNanos = deflateNanos;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Cache use of one archive. Files larger than the in-memory entry limit are not cached and are not counted.
+     */
+    public static class Statistics {
+        private final int hits;
+        private final int misses;
+        private final long hitBytes;
+        private final long savedNanos;
+
+        public Statistics(int hits, int misses, long hitBytes, long savedNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.hitBytes = hitBytes;
+            this.savedNanos = savedNanos;
+        }
+
+        public int getHits() {
+            return hits;
+        }
+
+        public int getMisses() {
+            return misses;
+        }
+
+        public double getHitRatio() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        /**
+         * Uncompressed size of the files that were copied from the cache.
+         */
+        public long getHitBytes() {
+            return hitBytes;
+        }
+
+        /**
+         * Compression time saved: the recorded deflate time of the reused entries less the time to read them.
+         */
+        public long getSavedMillis() {
+            return savedNanos / 1000000L;
+        }
+
+        @Override
+        public String toString() {
+            return hits + "/" + (hits + misses) + " entries reused (" + Math.round(getHitRatio() * 100) + "%), saved "
+                    + getSavedMillis() + " ms";
+        }
+    }
+}
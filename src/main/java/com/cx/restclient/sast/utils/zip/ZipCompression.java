@@ -0,0 +1,82 @@
+package com.cx.restclient.sast.utils.zip;
+
+import com.cx.restclient.sast.utils.zip.CompressionStatistics.Strategy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Trade-off between archive size and CPU time when zipping the workspace.
+ * Whatever the profile, each entry is stored or deflated according to its content: files of already compressed
+ * types and files whose first block looks random are stored as is, files whose first block compresses poorly
+ * are deflated at the fastest level, and the others at the level of the profile.
+ */
+public enum ZipCompression {
+
+    /**
+     * Fastest deflate level, for CI runners where upload bandwidth is cheaper than CPU.
+     */
+    FAST(Deflater.BEST_SPEED),
+    BALANCED(Deflater.DEFAULT_COMPRESSION),
+    SMALLEST(Deflater.BEST_COMPRESSION);
+
+    static final int SAMPLE_SIZE = 4096;
+    //bits per byte; random or compressed data is close to 8
+    private static final double STORE_ENTROPY = 7.5D;
+    private static final double FAST_ENTROPY = 6.0D;
+    private static final Set<String> COMPRESSED_TYPES = new HashSet<String>(Arrays.asList(
+            "zip", "jar", "war", "ear", "apk", "aar", "nupkg", "whl", "gz", "tgz", "bz2", "xz", "lz", "lzma", "zst",
+            "7z", "rar", "cab", "png", "jpg", "jpeg", "gif", "webp", "ico", "mp3", "mp4", "m4a", "ogg", "avi", "mov",
+            "mkv", "webm", "woff", "woff2", "docx", "xlsx", "pptx", "odt"));
+
+    private final int level;
+
+    ZipCompression(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Chooses how to compress an entry from its name and a sample of its first bytes.
+     */
+    Strategy select(String name, byte[] sample, int length) {
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0 && COMPRESSED_TYPES.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH))) {
+            return Strategy.STORED;
+        }
+        double entropy = entropy(sample, Math.min(length, SAMPLE_SIZE));
+        if (entropy > STORE_ENTROPY) {
+            return Strategy.STORED;
+        }
+        return entropy > FAST_ENTROPY || level == Deflater.BEST_SPEED ? Strategy.DEFLATED_FAST : Strategy.DEFLATED;
+    }
+
+    int getLevel(Strategy strategy) {
+        return strategy == Strategy.DEFLATED_FAST ? Deflater.BEST_SPEED : level;
+    }
+
+    //Shannon entropy of the byte values, in bits per byte
+    static double entropy(byte[] data, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int[] counts = new int[256];
+        for (int i = 0; i < length; i++) {
+            counts[data[i] & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+}
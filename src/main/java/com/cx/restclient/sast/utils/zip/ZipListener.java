@@ -5,4 +5,31 @@ package com.cx.restclient.sast.utils.zip;
  */
 public interface ZipListener {
     void updateProgress(String var1, long var2);
+
+    /**
+     * Called after an entry was written.
+     *
+     * @param size           size of the file
+     * @param compressedSize size of the entry in the archive
+     */
+    default void entryZipped(String fileName, long size, long compressedSize) {
+    }
+
+    /**
+     * Called once the workspace scan is complete, usually while the files are still being zipped.
+     */
+    default void workspaceScanned(int files, long bytes) {
+    }
+
+    /**
+     * Called after the archive was completed.
+     */
+    default void compressionStatistics(CompressionStatistics statistics) {
+    }
+
+    /**
+     * Called after the archive was completed with a {@link ZipCache}.
+     */
+    default void cacheStatistics(ZipCache.Statistics statistics) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.cx.restclient.sast.utils.zip;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the progress of a zip as periodic summaries instead of a line per file: files and bytes per second,
+ * the share of the workspace done and the remaining time once the scan is complete, and the largest files
+ * at the end. Each file is logged only at debug level.
+ */
+public class ZipProgressReporter implements ZipListener {
+
+    private static final int LARGEST_FILES = 5;
+
+    private final Logger log;
+    private final long intervalNanos;
+    private final long start = System.nanoTime();
+    private final PriorityQueue<ZippedFile> largestFiles = new PriorityQueue<ZippedFile>(LARGEST_FILES + 1, (a, b) -> Long.compare(a.size, b.size));
+    private long nextReport;
+    private int files;
+    private long bytes;
+    private long compressedBytes;
+    private int totalFiles = -1;
+    private long totalBytes = -1;
+
+    /**
+     * @param intervalMillis time between summaries; 0 - only the final summary
+     */
+    public ZipProgressReporter(Logger log, long intervalMillis) {
+        this.log = log;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.nextReport = start + intervalNanos;
+    }
+
+    public void updateProgress(String fileName, long compressedSize) {
+    }
+
+    public void compressionStatistics(CompressionStatistics statistics) {
+        log.info("Zip compression: " + statistics);
+    }
+
+    public void cacheStatistics(ZipCache.Statistics statistics) {
+        log.info("Zip cache: " + statistics + " (" + FileUtils.byteCountToDisplaySize(statistics.getHitBytes()) + " not compressed again)");
+    }
+
+    public void entryZipped(String fileName, long size, long compressedSize) {
+        files++;
+        bytes += size;
+        compressedBytes += compressedSize;
+        if (log.isDebugEnabled()) {
+            log.debug("Zipped (" + size + " -> " + compressedSize + " bytes): " + fileName);
+        }
+        largestFiles.add(new ZippedFile(fileName, size));
+        if (largestFiles.size() > LARGEST_FILES) {
+            largestFiles.poll();
+        }
+        if (intervalNanos > 0) {
+            long now = System.nanoTime();
+            if (now - nextReport >= 0) {
+                nextReport = now + intervalNanos;
+                log.info("Zipping progress: " + summary(now));
+            }
+        }
+    }
+
+    public void workspaceScanned(int files, long bytes) {
+        this.totalFiles = files;
+        this.totalBytes = bytes;
+    }
+
+    /**
+     * Logs the summary of the completed zip.
+     */
+    public void complete() {
+        log.info("Zipped " + summary(System.nanoTime()));
+        if (!largestFiles.isEmpty()) {
+            StringBuilder sb = new StringBuilder("Largest zipped files: ");
+            List<ZippedFile> largest = getLargest();
+            for (int i = 0; i < largest.size(); i++) {
+                sb.append(i > 0 ? ", " : "").append(largest.get(i).name)
+                        .append(" (").append(FileUtils.byteCountToDisplaySize(largest.get(i).size)).append(")");
+            }
+            log.info(sb.toString());
+        }
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * @return the names of the largest zipped files, largest first
+     */
+    public List<String> getLargestFiles() {
+        List<String> names = new ArrayList<String>();
+        for (ZippedFile file : getLargest()) {
+            names.add(file.name);
+        }
+        return names;
+    }
+
+    private List<ZippedFile> getLargest() {
+        List<ZippedFile> largest = new ArrayList<ZippedFile>(largestFiles);
+        Collections.sort(largest, (a, b) -> Long.compare(b.size, a.size));
+        return largest;
+    }
+
+    private String summary(long now) {
+        double seconds = Math.max(1, now - start) / 1e9;
+        double bytesPerSecond = bytes / seconds;
+        StringBuilder sb = new StringBuilder();
+        sb.append(files).append(" files, ").append(FileUtils.byteCountToDisplaySize(bytes))
+                .append(" -> ").append(FileUtils.byteCountToDisplaySize(compressedBytes))
+                .append(String.format(Locale.ENGLISH, " (%.0f files/s, %.1f MB/s)", files / seconds, bytesPerSecond / (1024 * 1024)));
+        if (totalFiles >= 0) {
+            sb.append(", ").append(files).append(" of ").append(totalFiles).append(" files");
+            if (totalBytes > bytes && bytesPerSecond > 0) {
+                sb.append(", ETA ").append(Math.round((totalBytes - bytes) / bytesPerSecond)).append(" s");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class ZippedFile {
+        private final String name;
+        private final long size;
+
+        ZippedFile(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+    }
+}
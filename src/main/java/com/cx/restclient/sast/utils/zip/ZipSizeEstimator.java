@@ -0,0 +1,142 @@
+package com.cx.restclient.sast.utils.zip;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Estimates the size of an archive before it is written, by deflating the beginning of a sample of the files:
+ * a random sample and the largest files, which dominate the size of the archive.
+ * Files are added one by one while the workspace is scanned, without keeping the file list. Sampled files are
+ * estimated with their own compression ratio and the other files with the ratio of the random sample.
+ */
+class ZipSizeEstimator {
+
+    private static final int RANDOM_SAMPLES = 32;
+    private static final int LARGEST_FILE_SAMPLES = 8;
+    private static final int SAMPLE_BYTES = 128 * 1024;
+    //local header, data descriptor and central directory record, without the name
+    private static final int ENTRY_OVERHEAD = 30 + 16 + 46;
+
+    private final List<Sample> randomSamples = new ArrayList<Sample>();
+    private final PriorityQueue<Sample> largestFiles = new PriorityQueue<Sample>(LARGEST_FILE_SAMPLES + 1, (a, b) -> Long.compare(a.size, b.size));
+    private final Random random = new Random(0);
+    private long count;
+    private long totalBytes;
+    private long overheadBytes = 22; //end of central directory
+
+    private final byte[] buffer = new byte[SAMPLE_BYTES];
+    private final byte[] deflated = new byte[SAMPLE_BYTES];
+
+    void add(String name, File file, long size) {
+        count++;
+        totalBytes += size;
+        overheadBytes += ENTRY_OVERHEAD + 2 * name.getBytes(StandardCharsets.UTF_8).length;
+        if (size == 0) {
+            return;
+        }
+        Sample sample = new Sample(file, size);
+        if (randomSamples.size() < RANDOM_SAMPLES) {
+            randomSamples.add(sample);
+        } else {
+            long slot = (long) (random.nextDouble() * count);
+            if (slot < RANDOM_SAMPLES) {
+                randomSamples.set((int) slot, sample);
+            }
+        }
+        largestFiles.add(sample);
+        if (largestFiles.size() > LARGEST_FILE_SAMPLES) {
+            largestFiles.poll();
+        }
+    }
+
+    /**
+     * @return the estimated archive size in bytes
+     */
+    long estimate() {
+        Map<File, Sample> samples = new LinkedHashMap<File, Sample>();
+        for (Sample sample : randomSamples) {
+            samples.put(sample.file, sample);
+        }
+        for (Sample sample : largestFiles) {
+            samples.put(sample.file, sample);
+        }
+
+        long sampledFileBytes = 0;
+        double sampledFileEstimate = 0;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            for (Sample sample : samples.values()) {
+                int read = readPrefix(sample.file);
+                if (read <= 0) {
+                    continue; //unreadable files are skipped by the zipper as well
+                }
+                sample.sampleBytes = read;
+                sample.deflatedBytes = deflate(deflater, read);
+                sampledFileBytes += sample.size;
+                sampledFileEstimate += (double) sample.deflatedBytes / read * sample.size;
+            }
+        } finally {
+            deflater.end();
+        }
+        //the other files are estimated with the ratio of the random sample only, which the largest files would skew
+        long sampleBytes = 0;
+        long sampleDeflatedBytes = 0;
+        for (Sample sample : randomSamples) {
+            sampleBytes += sample.sampleBytes;
+            sampleDeflatedBytes += sample.deflatedBytes;
+        }
+        double ratio = sampleBytes > 0 ? (double) sampleDeflatedBytes / sampleBytes : 1.0D;
+        return (long) (sampledFileEstimate + ratio * (totalBytes - sampledFileBytes)) + overheadBytes;
+    }
+
+    private int readPrefix(File file) {
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                int total = 0;
+                int n;
+                while (total < buffer.length && (n = in.read(buffer, total, buffer.length - total)) != -1) {
+                    total += n;
+                }
+                return total;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private long deflate(Deflater deflater, int length) {
+        deflater.reset();
+        deflater.setInput(buffer, 0, length);
+        deflater.finish();
+        long total = 0;
+        while (!deflater.finished()) {
+            total += deflater.deflate(deflated);
+        }
+        return total;
+    }
+
+    private static class Sample {
+        private final File file;
+        private final long size;
+        private int sampleBytes;
+        private long deflatedBytes;
+
+        Sample(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+}
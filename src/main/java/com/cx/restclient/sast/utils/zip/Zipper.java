@@ -6,60 +6,160 @@
 package com.cx.restclient.sast.utils.zip;
 
 
+import com.cx.restclient.sast.utils.zip.CompressionStatistics.Strategy;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.tools.ant.DirectoryScanner;
-import org.apache.tools.zip.ZipEntry;
-import org.apache.tools.zip.ZipOutputStream;
 import org.slf4j.Logger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
 public class Zipper {
+    public static final int DEFAULT_THREADS = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+
+    //files up to this size are deflated into memory by the workers, larger ones while they are written
+    private static final long IN_MEMORY_ENTRY_LIMIT = 4 * 1024 * 1024;
+    private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+    //the pre-flight estimate aborts only archives that are clearly too large; the others are checked while written
+    private static final double ESTIMATE_TOLERANCE = 1.2D;
+    private static final int SCAN_QUEUE_SIZE = 10000;
+    private static final ThreadLocal<byte[][]> BUFFERS = new ThreadLocal<byte[][]>() {
+        @Override
+        protected byte[][] initialValue() {
+            return new byte[][]{new byte[64 * 1024], new byte[64 * 1024]}; //read, deflate
+        }
+    };
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean THREAD_CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
     private final Logger log;
+    private final BlockingQueue<Deflater> deflaters = new LinkedBlockingQueue<Deflater>();
+    private int threads = 1;
+    private ZipCache cache;
+    private ZipCompression compression = ZipCompression.BALANCED;
+    private CompressionStatistics statistics;
 
     public Zipper(Logger log) {
         this.log = log;
     }
 
+    /**
+     * Number of threads that deflate entries. With more than one thread entries are compressed in parallel
+     * and written to the archive in scan order, so the archive and the listener callbacks are the same
+     * as with a single thread.
+     */
+    public Zipper setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * Reuses the deflated entries of unchanged files from a previous archive of the same workspace.
+     * Files larger than the in-memory entry limit are always compressed.
+     */
+    public Zipper setCache(ZipCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Deflate level of the compressible entries. Already compressed and random looking files are stored and
+     * poorly compressible ones are deflated at the fastest level whatever the profile.
+     * A cache must have been created with the same profile.
+     */
+    public Zipper setCompression(ZipCompression compression) {
+        this.compression = compression;
+        return this;
+    }
+
     public void zip(File baseDir, String[] filterIncludePatterns, String[] filterExcludePatterns, OutputStream outputStream, long maxZipSize, ZipListener listener) throws IOException {
         assert baseDir != null : "baseDir must not be null";
 
         assert outputStream != null : "outputStream must not be null";
 
-        DirectoryScanner ds = this.createDirectoryScanner(baseDir, filterIncludePatterns, filterExcludePatterns);
-        ds.setFollowSymlinks(true);
-        ds.scan();
-       // this.printDebug(ds);
-        if (ds.getIncludedFiles().length == 0) {
-            outputStream.close();
-            log.info("No files to zip");
-            throw new Zipper.NoFilesToZip();
-        } else {
-            this.zipFile(baseDir, ds.getIncludedFiles(), outputStream, maxZipSize, listener);
+        if (cache != null && cache.getCompression() != compression) {
+            throw new IllegalStateException("Zip cache was created for " + cache.getCompression() + " compression, not " + compression);
+        }
+        //files are zipped while the workspace is still being scanned
+        WorkspaceScanner scanner = new WorkspaceScanner(baseDir, filterIncludePatterns, filterExcludePatterns, log);
+        ScanQueue files = new ScanQueue(scanner, maxZipSize > 0L ? new ZipSizeEstimator() : null);
+        files.start();
+        try {
+            this.zipFile(files, outputStream, maxZipSize, listener);
+        } finally {
+            files.stop();
         }
     }
 
-    private void zipFile(File baseDir, String[] files, OutputStream outputStream, long maxZipSize, ZipListener listener) throws IOException {
-        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
-        zipOutputStream.setEncoding("UTF8");
+    private void zipFile(ScanQueue files, OutputStream outputStream, long maxZipSize, ZipListener listener) throws IOException {
+        //the writer fails as soon as the archive, including its central directory, would exceed the limit
+        ZipArchiveWriter zipWriter = new ZipArchiveWriter(outputStream, maxZipSize);
+        ExecutorService executor = threads > 1 ? createExecutor(threads) : null;
+        //entries are compressed ahead in order, bounded by count and by size so memory stays bounded
+        int maxPendingEntries = executor == null ? 1 : threads * 2;
+        Deque<Future<CompressedEntry>> pending = new ArrayDeque<Future<CompressedEntry>>();
+        Deque<Long> pendingSizes = new ArrayDeque<Long>();
+        long pendingBytes = 0L;
+        boolean scanned = false;
+        int fileCount = 0;
         long compressedSize = 0L;
-        double AVERAGE_ZIP_COMPRESSION_RATIO = 4.0D;
-        String[] arr$ = files;
-        int len$ = files.length;
-
-        for (int i$ = 0; i$ < len$; ++i$) {
-            String fileName = arr$[i$];
-          //  log.debug("Adding file to zip: " + fileName);
-            File file = new File(baseDir, fileName);
-            if (!file.canRead()) {
-                log.warn("Skipping unreadable file: " + file);
-            } else {
-                if (maxZipSize > 0L && (double) compressedSize + (double) file.length() / 4.0D > (double) maxZipSize) {
-                    log.info("Maximum zip file size reached. Zip size: " + compressedSize + " bytes Limit: " + maxZipSize + " bytes");
-                    zipOutputStream.close();
+        statistics = new CompressionStatistics();
+
+        try {
+            while (true) {
+                while (!scanned && pending.size() < maxPendingEntries && (pending.isEmpty() || pendingBytes < MAX_PENDING_BYTES)) {
+                    //waits for the scanner only when there is nothing else to do
+                    ScannedFile next = files.next(pending.isEmpty());
+                    if (next == null) {
+                        scanned = files.isDone();
+                        if (scanned && listener != null) {
+                            listener.workspaceScanned(files.getCount(), files.getBytes());
+                        }
+                        break;
+                    }
+                    long pendingSize = Math.min(next.size, IN_MEMORY_ENTRY_LIMIT);
+                    pendingBytes += pendingSize;
+                    pendingSizes.add(pendingSize);
+                    pending.add(submit(executor, new CompressTask(next.name, next.file)));
+                    fileCount++;
+                }
+                files.checkEstimate(maxZipSize);
+                if (pending.isEmpty()) {
+                    break;
+                }
+                CompressedEntry entry = getCompressedEntry(pending.poll());
+                pendingBytes -= pendingSizes.poll();
+                String fileName = entry.name;
+                File file = entry.file;
+                //  log.debug("Adding file to zip: " + fileName);
+                if (!entry.readable) {
+                    log.warn("Skipping unreadable file: " + file);
+                    continue;
+                }
+                if (maxZipSize > 0L && entry.data != null && compressedSize + entry.length > maxZipSize) {
                     throw new Zipper.MaxZipSizeReached(compressedSize, maxZipSize);
                 }
 
@@ -67,73 +167,421 @@ public class Zipper {
                     listener.updateProgress(fileName, compressedSize);
                 }
 
-                ZipEntry zipEntry = new ZipEntry(fileName);
-                zipOutputStream.putNextEntry(zipEntry);
-                FileInputStream fileInputStream = new FileInputStream(file);
-                IOUtils.copy(fileInputStream, zipOutputStream);
-                fileInputStream.close();
-                zipOutputStream.closeEntry();
-                compressedSize += zipEntry.getCompressedSize();
+                long entryStart = zipWriter.getBytesWritten();
+                long size;
+                if (entry.data != null) {
+                    int method = entry.strategy == Strategy.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED;
+                    zipWriter.writeEntry(fileName, entry.time, method, entry.crc, entry.size, entry.data, 0, entry.length);
+                    size = entry.size;
+                } else {
+                    size = writeStreamedEntry(zipWriter, entry);
+                }
+                long entrySize = zipWriter.getBytesWritten() - entryStart;
+                compressedSize += entrySize;
+                if (listener != null) {
+                    listener.entryZipped(fileName, size, entrySize);
+                }
+            }
+            if (fileCount == 0) {
+                zipWriter.abort();
+                log.info("No files to zip");
+                throw new Zipper.NoFilesToZip();
+            }
+            zipWriter.close();
+            if (listener != null) {
+                listener.compressionStatistics(statistics);
+            }
+            if (cache != null) {
+                commitCache(listener);
+            }
+        } catch (Zipper.MaxZipSizeReached e) {
+            log.info("Maximum zip file size reached. Zip size: " + e.getCompressedSize() + " bytes Limit: " + maxZipSize + " bytes");
+            zipWriter.abort();
+            throw e;
+        } finally {
+            for (Future<CompressedEntry> future : pending) {
+                future.cancel(true);
+            }
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (cache != null) {
+                cache.close();
+            }
+            Deflater deflater;
+            while ((deflater = deflaters.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    //large files are compressed while they are written instead of being buffered; returns the file size
+    private long writeStreamedEntry(ZipArchiveWriter zipWriter, CompressedEntry entry) throws IOException {
+        long start = cpuTime();
+        byte[] sample = BUFFERS.get()[0];
+        InputStream in = new FileInputStream(entry.file);
+        Strategy strategy;
+        try {
+            strategy = compression.select(entry.name, sample, IOUtils.read(in, sample, 0, ZipCompression.SAMPLE_SIZE));
+        } finally {
+            in.close();
+        }
+
+        long size = entry.file.length();
+        long compressed;
+        if (strategy == Strategy.STORED) {
+            //the CRC of a stored entry precedes its data
+            CRC32 crc = new CRC32();
+            in = new FileInputStream(entry.file);
+            try {
+                int n;
+                while ((n = in.read(sample)) != -1) {
+                    crc.update(sample, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+            in = new FileInputStream(entry.file);
+            try {
+                compressed = zipWriter.writeStoredEntry(entry.name, entry.time, crc.getValue(), size, in);
+            } finally {
+                in.close();
+            }
+        } else {
+            Deflater deflater = borrowDeflater(compression.getLevel(strategy));
+            in = new FileInputStream(entry.file);
+            try {
+                compressed = zipWriter.writeDeflatedEntry(entry.name, entry.time, in, size, deflater);
+            } finally {
+                in.close();
+                releaseDeflater(deflater);
             }
         }
+        statistics.add(strategy, size, compressed, cpuTime() - start);
+        return size;
+    }
 
-        zipOutputStream.close();
+    //CPU time of the current thread where supported, wall time otherwise
+    private static long cpuTime() {
+        return THREAD_CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
     }
 
-    private DirectoryScanner createDirectoryScanner(File baseDir, String[] filterIncludePatterns, String[] filterExcludePatterns) {
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(baseDir);
-        ds.setCaseSensitive(false);
-        ds.setFollowSymlinks(false);
-        ds.setErrorOnMissingDir(false);
-        if (filterIncludePatterns != null && filterIncludePatterns.length > 0) {
-            ds.setIncludes(filterIncludePatterns);
+    private void commitCache(ZipListener listener) {
+        try {
+            cache.commit();
+        } catch (IOException e) {
+            log.warn("Failed to update the zip cache: " + e.getMessage());
         }
+        if (listener != null) {
+            listener.cacheStatistics(cache.getStatistics());
+        }
+    }
 
-        if (filterExcludePatterns != null && filterExcludePatterns.length > 0) {
-            ds.setExcludes(filterExcludePatterns);
+    private static Future<CompressedEntry> submit(ExecutorService executor, CompressTask task) {
+        if (executor != null) {
+            return executor.submit(task);
         }
+        FutureTask<CompressedEntry> future = new FutureTask<CompressedEntry>(task);
+        future.run();
+        return future;
+    }
 
-        return ds;
+    private static CompressedEntry getCompressedEntry(Future<CompressedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while zipping");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cx-zip-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
     }
 
-    private void printDebug(DirectoryScanner ds) {
-        if (log.isDebugEnabled()) {
-            log.debug("Base Directory: " + ds.getBasedir());
-            String[] arr$ = ds.getIncludedFiles();
-            int len$ = arr$.length;
+    private Deflater borrowDeflater(int level) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            return new Deflater(level, true);
+        }
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    private void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        deflaters.offer(deflater);
+    }
+
+    //compresses a file into memory on a worker thread; files above IN_MEMORY_ENTRY_LIMIT are left to the writer
+    private class CompressTask implements Callable<CompressedEntry> {
+        private final String name;
+        private final File file;
+
+        CompressTask(String name, File file) {
+            this.name = name;
+            this.file = file;
+        }
+
+        public CompressedEntry call() throws IOException {
+            CompressedEntry entry = new CompressedEntry(name, file);
+            if (!file.canRead()) {
+                entry.readable = false;
+                return entry;
+            }
+            entry.time = file.lastModified();
+            if (file.length() > IN_MEMORY_ENTRY_LIMIT) {
+                return entry;
+            }
+            if (cache != null) {
+                return compressCached(entry);
+            }
+            ZipCache.Blob blob = compress(FileUtils.readFileToByteArray(file));
+            return setBlob(entry, blob);
+        }
 
-            int i$;
-            String file;
-            for (i$ = 0; i$ < len$; ++i$) {
-                file = arr$[i$];
-                log.debug("Included: " + file);
+        //copies the entry from the cache, by path or else by content hash, or compresses and caches it
+        private CompressedEntry compressCached(CompressedEntry entry) throws IOException {
+            ZipCache.IndexEntry cached = cache.lookup(name, file.length(), entry.time);
+            ZipCache.Blob blob = cached != null ? cache.read(cached) : null;
+            if (blob == null) {
+                byte[] content = FileUtils.readFileToByteArray(file);
+                String hash = ZipCache.toHex(ZipCache.createDigest().digest(content));
+                cached = cache.lookupContent(hash);
+                blob = cached != null ? cache.read(cached) : null;
+                if (blob == null) {
+                    blob = compress(content);
+                    try {
+                        cache.record(name, entry.time, cache.write(hash, blob), false);
+                    } catch (IOException e) {
+                        log.debug("Failed to cache zip entry " + name + ": " + e.getMessage());
+                    }
+                    return setBlob(entry, blob);
+                }
             }
+            cache.record(name, entry.time, cached, true);
+            statistics.add(blob.strategy, blob.size, blob.length, 0);
+            return setBlob(entry, blob);
+        }
 
-            arr$ = ds.getExcludedFiles();
-            len$ = arr$.length;
+        private ZipCache.Blob compress(byte[] content) {
+            long start = cpuTime();
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            Strategy strategy = compression.select(name, content, content.length);
+            byte[] data = content;
+            int length = content.length;
+            if (strategy != Strategy.STORED) {
+                EntryBuffer out = deflate(content, compression.getLevel(strategy));
+                if (out.size() < content.length) {
+                    data = out.getBuffer();
+                    length = out.size();
+                } else {
+                    strategy = Strategy.STORED; //the sample did not show it, but it does not compress
+                }
+            }
+            long nanos = cpuTime() - start;
+            statistics.add(strategy, content.length, length, nanos);
+            return new ZipCache.Blob(strategy, content.length, crc.getValue(), nanos, data, length);
+        }
 
-            for (i$ = 0; i$ < len$; ++i$) {
-                file = arr$[i$];
-                log.debug("Excluded File: " + file);
+        private EntryBuffer deflate(byte[] content, int level) {
+            byte[] deflated = BUFFERS.get()[1];
+            EntryBuffer out = new EntryBuffer(content.length / 2 + 64);
+            Deflater deflater = borrowDeflater(level);
+            try {
+                //fed in buffer sized slices, as the streamed entries are
+                for (int off = 0; off < content.length; off += deflated.length) {
+                    deflater.setInput(content, off, Math.min(deflated.length, content.length - off));
+                    while (!deflater.needsInput()) {
+                        out.write(deflated, 0, deflater.deflate(deflated));
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.write(deflated, 0, deflater.deflate(deflated));
+                }
+            } finally {
+                releaseDeflater(deflater);
             }
+            return out;
+        }
+
+        private CompressedEntry setBlob(CompressedEntry entry, ZipCache.Blob blob) {
+            entry.strategy = blob.strategy;
+            entry.size = blob.size;
+            entry.crc = blob.crc;
+            entry.data = blob.data;
+            entry.length = blob.length;
+            return entry;
+        }
+    }
+
+    private static class CompressedEntry {
+        private final String name;
+        private final File file;
+        private boolean readable = true;
+        private long time;
+        private Strategy strategy;
+        private long crc;
+        private long size;
+        private byte[] data; //null - compressed by the writer
+        private int length;
+
+        CompressedEntry(String name, File file) {
+            this.name = name;
+            this.file = file;
+        }
+    }
+
+    private static class EntryBuffer extends ByteArrayOutputStream {
+        EntryBuffer(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
 
-            arr$ = ds.getExcludedDirectories();
-            len$ = arr$.length;
+    private static class ScannedFile {
+        private final String name;
+        private final File file;
+        private final long size;
 
-            for (i$ = 0; i$ < len$; ++i$) {
-                file = arr$[i$];
-                log.debug("Excluded Dir: " + file);
+        ScannedFile(String name, File file, long size) {
+            this.name = name;
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Runs the workspace scan on its own thread and hands the files over in scan order. When a size limit is
+     * set, the archive size is estimated from the scanned files once the scan is complete.
+     */
+    private class ScanQueue implements Runnable, WorkspaceScanner.FileHandler {
+        private final ScannedFile end = new ScannedFile(null, null, 0);
+        private final BlockingQueue<ScannedFile> queue = new LinkedBlockingQueue<ScannedFile>(SCAN_QUEUE_SIZE);
+        private final WorkspaceScanner scanner;
+        private final ZipSizeEstimator estimator;
+        private final Thread thread;
+        private volatile long estimatedSize = -1;
+        private volatile IOException failure;
+        private boolean done;
+        private int count;
+        private long bytes;
+
+        ScanQueue(WorkspaceScanner scanner, ZipSizeEstimator estimator) {
+            this.scanner = scanner;
+            this.estimator = estimator;
+            this.thread = new Thread(this, "cx-zip-scan");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() {
+            thread.interrupt();
+        }
+
+        public void run() {
+            try {
+                scanner.scan(this);
+                log.debug("Workspace scan complete, " + scanner.getPrunedDirectories() + " excluded directories skipped");
+                if (estimator != null) {
+                    estimatedSize = estimator.estimate();
+                    log.debug("Estimated zip size: " + estimatedSize + " bytes");
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(e);
+            } finally {
+                try {
+                    queue.put(end);
+                } catch (InterruptedException ignored) {
+                    //stopped by the zipper
+                }
             }
+        }
 
-            arr$ = ds.getNotFollowedSymlinks();
-            len$ = arr$.length;
+        public void file(String name, File file, long size) throws IOException {
+            if (estimator != null) {
+                estimator.add(name, file, size);
+            }
+            count++;
+            bytes += size;
+            try {
+                queue.put(new ScannedFile(name, file, size));
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Workspace scan stopped");
+            }
+        }
 
-            for (i$ = 0; i$ < len$; ++i$) {
-                file = arr$[i$];
-                log.debug("Not followed symbolic link: " + file);
+        /**
+         * Returns the next file, or null if the scan is done or, when not waiting, no file is available yet.
+         */
+        ScannedFile next(boolean wait) throws IOException {
+            if (done) {
+                return null;
             }
+            ScannedFile next;
+            try {
+                next = wait ? queue.take() : queue.poll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while zipping");
+            }
+            if (next == end) {
+                done = true;
+                if (failure != null) {
+                    throw failure;
+                }
+                return null;
+            }
+            return next;
+        }
 
+        boolean isDone() {
+            return done;
+        }
+
+        //the scanned files, once the scan is done
+        int getCount() {
+            return count;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        //fails once the scan is complete if the archive is clearly larger than the limit
+        void checkEstimate(long maxZipSize) throws Zipper.MaxZipSizeReached {
+            long estimate = estimatedSize;
+            if (estimate > maxZipSize * ESTIMATE_TOLERANCE) {
+                log.info("Estimated zip size of " + estimate + " bytes exceeds the limit of " + maxZipSize + " bytes");
+                throw new Zipper.MaxZipSizeReached(estimate, maxZipSize);
+            }
         }
     }
 
@@ -144,11 +592,13 @@ public class Zipper {
     }
 
     public static class MaxZipSizeReached extends IOException {
-        private long compressedSize;
-        private long maxZipSize;
+        private final long compressedSize;
+        private final long maxZipSize;
 
         public MaxZipSizeReached(long compressedSize, long maxZipSize) {
             super("Zip compressed size reached a limit of " + maxZipSize + " bytes");
+            this.compressedSize = compressedSize;
+            this.maxZipSize = maxZipSize;
         }
 
         public long getCompressedSize() {
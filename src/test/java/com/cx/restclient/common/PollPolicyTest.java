@@ -0,0 +1,218 @@
+package com.cx.restclient.common;
+
+import com.cx.restclient.dto.BaseStatus;
+import com.cx.restclient.dto.Status;
+import com.cx.restclient.exception.CxClientException;
+import com.cx.restclient.httpClient.MetricsRecorder;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PollPolicyTest {
+    private Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final long MINUTE = 60 * 1000L;
+
+    //simulated clock: returns {polls, millis from the finish to the poll that saw it}
+    private static long[] simulate(PollPolicy policy, long queuedMillis, long runMillis, boolean reportsPercent) {
+        PollProgress progress = new PollProgress();
+        long now = 0;
+        long finish = queuedMillis + runMillis;
+        while (true) {
+            int percent = now < queuedMillis ? 0 : (int) Math.min(100, (now - queuedMillis) * 100 / runMillis);
+            progress.update(now, reportsPercent ? percent : -1);
+            if (now >= finish) {
+                return new long[]{progress.getPolls(), now - finish};
+            }
+            now += policy.nextPollDelayMillis(progress);
+        }
+    }
+
+    @Test
+    public void pollsLongScanRarelyAndItsFinishClosely() {
+        AdaptivePollPolicy adaptive = new AdaptivePollPolicy(2000, 2 * MINUTE);
+        long[] fixed = simulate(new FixedPollPolicy(20000), 20 * MINUTE, 360 * MINUTE, true);
+        long[] result = simulate(adaptive, 20 * MINUTE, 360 * MINUTE, true);
+        logUnitTests.info("6 hour scan: " + result[0] + " polls, finish noticed after " + result[1] + " ms; fixed interval: " + fixed[0] + " polls");
+        assertTrue("Too many polls: " + result[0], result[0] < fixed[0] / 4);
+        assertTrue("Finish noticed too late: " + result[1], result[1] <= 20000);
+    }
+
+    @Test
+    public void backsOffWithoutProgress() {
+        AdaptivePollPolicy adaptive = new AdaptivePollPolicy(1000, 10000);
+        long[] result = simulate(adaptive, 0, 30000, false);
+        logUnitTests.info("30 second report: " + result[0] + " polls, finish noticed after " + result[1] + " ms");
+        assertTrue("Too many polls: " + result[0], result[0] <= 20);
+        assertTrue("Finish noticed too late: " + result[1], result[1] <= 30000 / 4 + 1000);
+    }
+
+    @Test
+    public void estimatesRemainingTimeFromProgressRate() {
+        PollProgress progress = new PollProgress();
+        progress.update(0, 0);
+        progress.update(10 * MINUTE, 0); //queued
+        assertEquals("Estimated without progress", -1, progress.getEstimatedRemainingMillis());
+        progress.update(20 * MINUTE, 10); //reached 10% at 15 minutes on average, after 5 minutes of progress
+        assertEquals("Incorrect finish", 60 * MINUTE, progress.getEstimatedFinishMillis());
+        assertEquals("Incorrect estimate", 40 * MINUTE, progress.getEstimatedRemainingMillis());
+        progress.update(30 * MINUTE, 10); //no progress since
+        assertEquals("Incorrect estimate", 30 * MINUTE, progress.getEstimatedRemainingMillis());
+        progress.update(200 * MINUTE, 10);
+        assertEquals("Late task has time left", 0, progress.getEstimatedRemainingMillis());
+    }
+
+    @Test
+    public void expectedDurationStandsInForProgress() {
+        AdaptivePollPolicy adaptive = new AdaptivePollPolicy(2000, 2 * MINUTE);
+        PollProgress progress = new PollProgress();
+        progress.setExpectedDurationMillis(30 * MINUTE);
+        progress.update(0, 0);
+        progress.update(10 * MINUTE, 0); //queued
+        assertEquals("Incorrect estimate from the expected duration", 20 * MINUTE, progress.getEstimatedRemainingMillis());
+        assertEquals("Incorrect delay", 2 * MINUTE, adaptive.nextPollDelayMillis(progress));
+        progress.update(29 * MINUTE, 0);
+        assertEquals("Incorrect delay near the expected finish", 30000, adaptive.nextPollDelayMillis(progress));
+        progress.update(35 * MINUTE, 50);
+        progress.update(45 * MINUTE, 60); //the progress rate replaces the expected duration
+        //60% reached at 40 minutes on average, 11 minutes after the progress started: 40% left takes 7m20s
+        assertEquals("Incorrect estimate from the progress", 140000, progress.getEstimatedRemainingMillis());
+    }
+
+    @Test
+    public void waiterUsesPolicyAndRecordsPolls() throws Exception {
+        final AtomicInteger statusRequests = new AtomicInteger();
+        final AtomicInteger recordedPolls = new AtomicInteger();
+        Waiter<BaseStatus> waiter = new Waiter<BaseStatus>("test task", new FixedPollPolicy(1)) {
+            @Override
+            public BaseStatus getStatus(String id) {
+                return new BaseStatus(statusRequests.incrementAndGet() < 4 ? Status.IN_PROGRESS : Status.SUCCEEDED);
+            }
+
+            @Override
+            public void printProgress(BaseStatus status) {
+            }
+
+            @Override
+            public BaseStatus resolveStatus(BaseStatus status) throws CxClientException {
+                return status;
+            }
+        };
+        waiter.setMetricsRecorder(new MetricsRecorder() {
+            public void recordRequest(String operation, String method, int statusCode, long latencyNanos, long requestBytes, long responseBytes, int attempts) {
+            }
+
+            public void recordRetry(String operation, String reason) {
+            }
+
+            public void recordTokenRefresh(long latencyNanos, boolean success) {
+            }
+
+            public void recordWait(String operation, int polls, long waitNanos) {
+                recordedPolls.set(polls);
+            }
+        });
+        assertEquals("Incorrect status", Status.SUCCEEDED, waiter.waitForTaskToFinish("1", 0, logUnitTests).getBaseStatus());
+        assertEquals("Incorrect poll count", 4, waiter.getProgress().getPolls());
+        assertEquals("Polls were not recorded", 4, recordedPolls.get());
+    }
+
+    @Test
+    public void scheduledWaitsShareFewThreads() throws Exception {
+        final ConcurrentMap<String, AtomicInteger> statusRequests = new ConcurrentHashMap<String, AtomicInteger>();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger mixedProgress = new AtomicInteger();
+        Waiter<BaseStatus> waiter = new Waiter<BaseStatus>("test task", new FixedPollPolicy(5)) {
+            @Override
+            public BaseStatus getStatus(String id) throws CxClientException {
+                threads.add(Thread.currentThread().getName());
+                statusRequests.putIfAbsent(id, new AtomicInteger());
+                int requests = statusRequests.get(id).incrementAndGet();
+                if (id.equals("failed")) {
+                    throw new CxClientException("unavailable");
+                }
+                BaseStatus status = new BaseStatus(requests < 3 ? Status.IN_PROGRESS : Status.SUCCEEDED);
+                status.setBaseId(id);
+                return status;
+            }
+
+            @Override
+            public void printProgress(BaseStatus status) {
+                //each wait sees its own progress
+                if (getProgress().getPolls() != statusRequests.get(status.getBaseId()).get()) {
+                    mixedProgress.incrementAndGet();
+                }
+            }
+
+            @Override
+            public BaseStatus resolveStatus(BaseStatus status) {
+                return status;
+            }
+        };
+        PollScheduler scheduler = new PollScheduler(2);
+        try {
+            List<CompletableFuture<BaseStatus>> futures = new ArrayList<CompletableFuture<BaseStatus>>();
+            for (int i = 0; i < 500; i++) {
+                futures.add(waiter.waitForTaskToFinishAsync(Integer.toString(i), 0, logUnitTests, scheduler));
+            }
+            CompletableFuture<BaseStatus> failed = waiter.waitForTaskToFinishAsync("failed", 0, logUnitTests, scheduler);
+            for (int i = 0; i < futures.size(); i++) {
+                BaseStatus status = futures.get(i).get(30, TimeUnit.SECONDS);
+                assertEquals("Incorrect task", Integer.toString(i), status.getBaseId());
+                assertEquals("Incorrect status", Status.SUCCEEDED, status.getBaseStatus());
+                assertEquals("Incorrect status requests", 3, statusRequests.get(status.getBaseId()).get());
+            }
+            try {
+                failed.get(30, TimeUnit.SECONDS);
+                fail("Failed wait completed");
+            } catch (ExecutionException e) {
+                assertTrue("Incorrect failure", e.getCause().getCause() instanceof CxClientException);
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+        assertEquals("Waits saw each other's progress", 0, mixedProgress.get());
+        assertTrue("Too many threads: " + threads, threads.size() <= 2);
+    }
+
+    @Test
+    public void waitStopsAtTheDeadline() throws Exception {
+        Waiter<BaseStatus> waiter = new Waiter<BaseStatus>("test task", new FixedPollPolicy(60000)) {
+            @Override
+            public BaseStatus getStatus(String id) {
+                return new BaseStatus(Status.IN_PROGRESS);
+            }
+
+            @Override
+            public void printProgress(BaseStatus status) {
+            }
+
+            @Override
+            public BaseStatus resolveStatus(BaseStatus status) throws CxClientException {
+                return status;
+            }
+        };
+        long start = System.nanoTime();
+        try {
+            waiter.waitForTaskToFinish("1", 0, new Deadline(300), logUnitTests);
+            fail("Wait outlived the deadline");
+        } catch (CxClientException e) {
+            assertTrue("Unexpected error: " + e.getMessage(), e.getMessage().contains("timeout of the run"));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Wait slept past the deadline: " + elapsedMillis + " ms", elapsedMillis < 5000);
+        assertEquals("The wait should poll once more at the deadline", 2, waiter.getProgress().getPolls());
+    }
+}
@@ -1,9 +1,19 @@
 package com.cx.restclient.configuration;
 
+import com.cx.restclient.common.AdaptivePollPolicy;
+import com.cx.restclient.common.FixedPollPolicy;
+import com.cx.restclient.common.PollScheduler;
+import com.cx.restclient.sast.utils.ScanQueueTracker;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import static org.junit.Assert.*;
 
 public class CxScanConfigTest {
@@ -102,4 +112,37 @@ public class CxScanConfigTest {
 
     }
 
-}
\ No newline at end of file
+    private static CxScanConfig serializeAndRead(CxScanConfig config) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(config);
+        out.close();
+        return (CxScanConfig) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void serializesWithPollPolicy() throws Exception {
+        cxScanConfig.setStatusPollPolicy(new FixedPollPolicy(20));
+        assertTrue("Poll policy was not serialized", serializeAndRead(cxScanConfig).getStatusPollPolicy() instanceof FixedPollPolicy);
+        cxScanConfig.setStatusPollPolicy(new AdaptivePollPolicy(1000, 60000));
+        AdaptivePollPolicy policy = (AdaptivePollPolicy) serializeAndRead(cxScanConfig).getStatusPollPolicy();
+        assertEquals("Incorrect maximum interval", 60000, policy.getMaxIntervalMillis());
+    }
+
+    @Test
+    public void serializesWithoutSchedulerAndTracker() throws Exception {
+        cxScanConfig.setPollScheduler(PollScheduler.getShared());
+        assertNull("Poll scheduler was serialized", serializeAndRead(cxScanConfig).getPollScheduler());
+        cxScanConfig.setScanQueueTracker(new ScanQueueTracker());
+        assertNull("Scan queue tracker was serialized", serializeAndRead(cxScanConfig).getScanQueueTracker());
+    }
+
+    @Test
+    public void streamsReportsToDiskOnlyWithReportsDir() {
+        assertFalse("Reports were streamed to temporary files by default", cxScanConfig.isStreamReportsToDisk());
+        cxScanConfig.setReportsDir(new File("Checkmarx/Reports"));
+        assertTrue("Reports were not streamed to reportsDir", cxScanConfig.isStreamReportsToDisk());
+        cxScanConfig.setStreamReportsToDisk(false);
+        assertFalse("Reports were streamed although disabled", cxScanConfig.isStreamReportsToDisk());
+    }
+}
@@ -0,0 +1,163 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.sast.dto.CxID;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives concurrent and cancelled requests through {@link CxAsyncHttpClient} against a local stub server.
+ */
+public class CxAsyncHttpClientTest {
+    private static Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final int CONCURRENT_REQUESTS = 16;
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private String url;
+    private final CountDownLatch allArrived = new CountDownLatch(CONCURRENT_REQUESTS);
+    private final CountDownLatch hangingArrived = new CountDownLatch(1);
+    private final CountDownLatch releaseHanging = new CountDownLatch(1);
+    private final AtomicInteger hangingRequests = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                String path = exchange.getRequestURI().getPath();
+                try {
+                    if (path.endsWith("/together")) {
+                        //answers only once every request is in flight at the same time
+                        allArrived.countDown();
+                        allArrived.await(10, TimeUnit.SECONDS);
+                    } else if (path.endsWith("/hang")) {
+                        hangingRequests.incrementAndGet();
+                        hangingArrived.countDown();
+                        releaseHanging.await(10, TimeUnit.SECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "{\"id\":7}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                try {
+                    exchange.sendResponseHeaders(HttpStatus.SC_OK, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                } catch (IOException e) {
+                    //the client aborted the request
+                }
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        releaseHanging.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void defaultPoolRunsRequestsConcurrently() throws Exception {
+        CxConnectionPool pool = new CxConnectionPool(CONCURRENT_REQUESTS, CONCURRENT_REQUESTS, CxConnectionPool.DEFAULT_IDLE_TIMEOUT_SEC,
+                CxConnectionPool.DEFAULT_KEEP_ALIVE_SEC, false, logUnitTests);
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, pool, logUnitTests);
+        CxAsyncHttpClient asyncClient = new CxAsyncHttpClient(client);
+        try {
+            List<CompletableFuture<CxID>> results = new ArrayList<CompletableFuture<CxID>>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                results.add(asyncClient.getRequest("together", null, CxID.class, HttpStatus.SC_OK, "together", false));
+            }
+            for (CompletableFuture<CxID> result : results) {
+                assertEquals(7, result.get(10, TimeUnit.SECONDS).getId());
+            }
+            assertEquals("Requests were not in flight at the same time", 0, allArrived.getCount());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void cancelAbortsRequestInFlight() throws Exception {
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, logUnitTests);
+        //a single worker, so the next call runs only once the cancelled request has released it
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CxAsyncHttpClient asyncClient = new CxAsyncHttpClient(client, executor);
+        try {
+            CompletableFuture<CxID> hanging = asyncClient.getRequest("hang", null, CxID.class, HttpStatus.SC_OK, "hang", false);
+            assertTrue("Request did not reach the server", hangingArrived.await(5, TimeUnit.SECONDS));
+            assertTrue("Request was not cancelled", hanging.cancel(true));
+
+            long start = System.nanoTime();
+            CxID next = asyncClient.getRequest("status", null, CxID.class, HttpStatus.SC_OK, "status", false).get(5, TimeUnit.SECONDS);
+            assertEquals(7, next.getId());
+            assertTrue("Cancelled request kept its worker", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+            assertEquals("Cancelled request was retried", 1, hangingRequests.get());
+        } finally {
+            executor.shutdownNow();
+            client.close();
+        }
+    }
+
+    @Test
+    public void rejectsCallsBeyondQueueCapacity() throws Exception {
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, logUnitTests);
+        ExecutorService executor = CxAsyncHttpClient.createExecutor(1, 1);
+        CxAsyncHttpClient asyncClient = new CxAsyncHttpClient(client, executor);
+        try {
+            CompletableFuture<CxID> hanging = asyncClient.getRequest("hang", null, CxID.class, HttpStatus.SC_OK, "hang", false);
+            assertTrue("Request did not reach the server", hangingArrived.await(5, TimeUnit.SECONDS));
+            CompletableFuture<CxID> queued = asyncClient.getRequest("status", null, CxID.class, HttpStatus.SC_OK, "status", false);
+            CompletableFuture<CxID> rejected = asyncClient.getRequest("status", null, CxID.class, HttpStatus.SC_OK, "status", false);
+
+            assertTrue("Call beyond the queue capacity was accepted", rejected.isCompletedExceptionally());
+            try {
+                rejected.get();
+                fail("Rejected call completed");
+            } catch (ExecutionException e) {
+                assertTrue("Incorrect cause: " + e.getCause(), e.getCause() instanceof RejectedExecutionException);
+            }
+            releaseHanging.countDown();
+            assertEquals(7, hanging.get(5, TimeUnit.SECONDS).getId());
+            assertEquals(7, queued.get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            executor.shutdownNow();
+            client.close();
+        }
+    }
+}
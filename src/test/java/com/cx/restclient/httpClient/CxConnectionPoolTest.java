@@ -0,0 +1,105 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.configuration.CxScanConfig;
+import com.cx.restclient.sast.dto.CxID;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sends requests of two clients through a shared pool to a stub server that records the client port of every
+ * request, i.e. the connection it arrived on.
+ */
+public class CxConnectionPoolTest {
+    private static Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final int IDLE_TIMEOUT_SEC = 1;
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private String url;
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<Integer>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                byte[] body = "{\"id\":7}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        CxConnectionPool.shutdownSharedPools();
+        server.stop(0);
+    }
+
+    @Test
+    public void clientsShareConnectionsUntilIdle() throws Exception {
+        CxScanConfig config = new CxScanConfig();
+        config.setUrl(url);
+        config.setConnectionIdleTimeoutSec(IDLE_TIMEOUT_SEC);
+        CxConnectionPool pool = CxConnectionPool.getSharedPool(config, logUnitTests);
+        config.setUrl(url.toUpperCase());
+        assertSame("Server URL case split the pool", pool, CxConnectionPool.getSharedPool(config, logUnitTests));
+
+        CxHttpClient first = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, pool, logUnitTests);
+        CxHttpClient second = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, pool, logUnitTests);
+        try {
+            getStatus(first);
+            first.close();
+            getStatus(second);
+            assertEquals("Second client opened a connection of its own", clientPorts.get(0), clientPorts.get(1));
+
+            //the evictor runs every idle timeout and closes connections idle for longer
+            PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager) pool.getConnectionManager();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5 * IDLE_TIMEOUT_SEC);
+            while (connectionManager.getTotalStats().getAvailable() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            assertEquals("Idle connection was not evicted", 0, connectionManager.getTotalStats().getAvailable());
+
+            getStatus(second);
+            assertNotEquals("Evicted connection was reused", clientPorts.get(1), clientPorts.get(2));
+        } finally {
+            second.close();
+        }
+    }
+
+    private static void getStatus(CxHttpClient client) throws Exception {
+        assertEquals(7, client.getRequest("sast/scansQueue/1", null, CxID.class, HttpStatus.SC_OK, "scan status", false).getId());
+    }
+}
@@ -0,0 +1,185 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.common.Deadline;
+import com.cx.restclient.exception.CxClientException;
+import com.cx.restclient.sast.dto.CxID;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static com.cx.restclient.common.CxPARAM.CSRF_TOKEN_HEADER;
+import static com.cx.restclient.httpClient.utils.HttpClientHelper.convertToJsonEntity;
+import static org.junit.Assert.*;
+
+/**
+ * Runs the same requests through every built-in transport against a local stub server and compares the results
+ * and the time taken by a burst of status polls.
+ */
+public class CxHttpTransportTest {
+    private static Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+    private static HttpServer server;
+    private static String url;
+    private static final Map<String, String> lastMethods = new ConcurrentHashMap<String, String>();
+    private static final Map<String, String> lastContentLengths = new ConcurrentHashMap<String, String>();
+    private static final CountDownLatch releaseSlowResponses = new CountDownLatch(1);
+
+    private static final int POLLS = 500;
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                byte[] requestBody = IOUtils.toByteArray(exchange.getRequestBody());
+                lastMethods.put(path, exchange.getRequestMethod());
+                String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+                lastContentLengths.put(path, contentLength != null ? contentLength : "chunked");
+                exchange.getResponseHeaders().add("Set-Cookie", CSRF_TOKEN_HEADER + "=token; Path=/");
+                byte[] body;
+                if (path.endsWith("/libraries")) {
+                    StringBuilder sb = new StringBuilder("[");
+                    for (int i = 0; i < 1000; i++) {
+                        sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append("}");
+                    }
+                    body = sb.append("]").toString().getBytes(StandardCharsets.UTF_8);
+                    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+                        gzip.write(body);
+                        gzip.close();
+                        body = compressed.toByteArray();
+                        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                    }
+                } else if (path.endsWith("/slow")) {
+                    try {
+                        releaseSlowResponses.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    body = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+                } else if (path.endsWith("/echo")) {
+                    body = requestBody;
+                } else {
+                    body = "{\"id\":7}".getBytes(StandardCharsets.UTF_8);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, body.length == 0 ? -1 : body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        releaseSlowResponses.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void apacheTransport() throws Exception {
+        verifyTransport(ApacheHttpTransport.NAME);
+    }
+
+    @Test
+    public void jdkTransport() throws Exception {
+        verifyTransport(UrlConnectionHttpTransport.NAME);
+    }
+
+    @Test
+    public void deadlineCancelsRequestsInFlight() throws Exception {
+        for (String transportName : new String[]{ApacheHttpTransport.NAME, UrlConnectionHttpTransport.NAME}) {
+            CxConnectionPool pool = new CxConnectionPool(CxConnectionPool.DEFAULT_MAX_TOTAL, CxConnectionPool.DEFAULT_MAX_PER_ROUTE,
+                    CxConnectionPool.DEFAULT_IDLE_TIMEOUT_SEC, CxConnectionPool.DEFAULT_KEEP_ALIVE_SEC, false, logUnitTests);
+            CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, pool, transportName, logUnitTests);
+            client.setDeadline(new Deadline(300));
+            long start = System.nanoTime();
+            try {
+                client.getRequest("sast/slow", null, CxID.class, HttpStatus.SC_OK, "slow status", false);
+                fail(transportName + " request outlived the deadline");
+            } catch (CxClientException e) {
+                assertTrue("Unexpected error: " + e.getMessage(), e.getMessage().contains("timeout of the run"));
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            assertTrue(transportName + " request was cancelled after " + elapsedMillis + " ms", elapsedMillis < 5000);
+            try {
+                client.getRequest("sast/scansQueue/1", null, CxID.class, HttpStatus.SC_OK, "scan status", false);
+                fail("A request was sent after the deadline");
+            } catch (CxClientException e) {
+                assertTrue(e.getMessage().contains("timeout of the run"));
+            }
+            try {
+                client.cleanup(() -> {
+                    client.patchRequest("sast/scansQueue/1", null, convertToJsonEntity(createId(1)), HttpStatus.SC_OK, "cancel SAST scan");
+                    return null;
+                });
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    private static CxID createId(long id) {
+        CxID cxID = new CxID();
+        cxID.setId(id);
+        return cxID;
+    }
+
+    private void verifyTransport(String transportName) throws Exception {
+        CxConnectionPool pool = new CxConnectionPool(CxConnectionPool.DEFAULT_MAX_TOTAL, CxConnectionPool.DEFAULT_MAX_PER_ROUTE,
+                CxConnectionPool.DEFAULT_IDLE_TIMEOUT_SEC, CxConnectionPool.DEFAULT_KEEP_ALIVE_SEC, false, logUnitTests);
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, pool, transportName, logUnitTests);
+        try {
+            List<CxID> libraries = (List<CxID>) client.getRequest("osa/libraries", null, CxID.class, HttpStatus.SC_OK, "libraries", true);
+            assertEquals("Incorrect number of decoded items", 1000, libraries.size());
+            assertTrue("Response was not compressed", client.getTransferStats().getWireBytes() < client.getTransferStats().getDecodedBytes());
+
+            CxID echoed = client.postRequest("echo", null, convertToJsonEntity(createId(42)), CxID.class, HttpStatus.SC_OK, "echo");
+            assertEquals("Incorrect echoed body", 42, echoed.getId());
+            assertEquals("JSON body was not sent with its length", "{\"id\":42}".length() + "", lastContentLengths.get("/CxRestAPI/echo"));
+
+            client.patchRequest("sast/scansQueue/1", null, convertToJsonEntity(createId(1)), HttpStatus.SC_OK, "cancel");
+            assertEquals("PATCH was not sent", "PATCH", lastMethods.get("/CxRestAPI/sast/scansQueue/1"));
+
+            long start = System.nanoTime();
+            for (int i = 0; i < POLLS; i++) {
+                assertEquals(7, client.getRequest("sast/scansQueue/1", null, CxID.class, HttpStatus.SC_OK, "scan status", false).getId());
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            logUnitTests.info(transportName + " transport: " + POLLS + " status polls took " + elapsedMillis + " ms");
+        } finally {
+            client.close();
+        }
+    }
+}
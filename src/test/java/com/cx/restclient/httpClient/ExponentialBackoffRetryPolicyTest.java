@@ -0,0 +1,185 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.exception.CxClientException;
+import com.cx.restclient.sast.dto.CxID;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.cx.restclient.httpClient.RetryPolicy.OperationClass.*;
+import static org.junit.Assert.*;
+
+public class ExponentialBackoffRetryPolicyTest {
+    private static Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final long INITIAL_DELAY_MILLIS = 100;
+    private static final long MAX_DELAY_MILLIS = 400;
+    private static final long MAX_ELAPSED_MILLIS = 1000;
+
+    private static HttpServer server;
+    private static String url;
+    private static final Map<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                String path = exchange.getRequestURI().getPath();
+                requests.putIfAbsent(path, new AtomicInteger());
+                int count = requests.get(path).incrementAndGet();
+                int status = HttpStatus.SC_OK;
+                if (path.endsWith("/flaky")) {
+                    status = count <= 2 ? HttpStatus.SC_SERVICE_UNAVAILABLE : HttpStatus.SC_OK;
+                } else if (path.endsWith("/unavailable")) {
+                    status = HttpStatus.SC_SERVICE_UNAVAILABLE;
+                } else if (path.endsWith("/badGateway")) {
+                    status = HttpStatus.SC_BAD_GATEWAY;
+                }
+                byte[] body = "{\"id\":7}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    private static ExponentialBackoffRetryPolicy createPolicy(RetryPolicy.OperationClass operation) {
+        return new ExponentialBackoffRetryPolicy(operation, 4, INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS, MAX_ELAPSED_MILLIS);
+    }
+
+    private static boolean retries(RetryPolicy.OperationClass operation, int statusCode, IOException error) {
+        return createPolicy(operation).retryDelayMillis(1, 0, statusCode, error) >= 0;
+    }
+
+    @Test
+    public void retriesByIdempotency() {
+        for (RetryPolicy.OperationClass operation : new RetryPolicy.OperationClass[]{READ, UPDATE}) {
+            assertTrue(operation + " 502", retries(operation, 502, null));
+            assertTrue(operation + " 503", retries(operation, 503, null));
+            assertTrue(operation + " 504", retries(operation, 504, null));
+            assertTrue(operation + " read timeout", retries(operation, 0, new SocketTimeoutException()));
+            assertTrue(operation + " dropped connection", retries(operation, 0, new NoHttpResponseException("dropped")));
+            assertTrue(operation + " reset connection", retries(operation, 0, new SocketException("reset")));
+        }
+        //a creation may have been processed unless the connection was refused or the server was unavailable
+        assertTrue("CREATE 503", retries(CREATE, 503, null));
+        assertTrue("CREATE connect failure", retries(CREATE, 0, new ConnectException()));
+        assertTrue("CREATE connect timeout", retries(CREATE, 0, new ConnectTimeoutException()));
+        assertFalse("CREATE 502", retries(CREATE, 502, null));
+        assertFalse("CREATE 504", retries(CREATE, 504, null));
+        assertFalse("CREATE read timeout", retries(CREATE, 0, new SocketTimeoutException()));
+        assertFalse("CREATE dropped connection", retries(CREATE, 0, new NoHttpResponseException("dropped")));
+
+        for (RetryPolicy.OperationClass operation : RetryPolicy.OperationClass.values()) {
+            assertFalse(operation + " 500", retries(operation, 500, null));
+            assertFalse(operation + " 404", retries(operation, 404, null));
+            assertFalse(operation + " unknown host", retries(operation, 0, new UnknownHostException()));
+            assertFalse(operation + " SSL failure", retries(operation, 0, new SSLException("handshake")));
+        }
+    }
+
+    @Test
+    public void jitterStaysWithinExponentialCap() {
+        ExponentialBackoffRetryPolicy policy = createPolicy(READ);
+        long[] caps = {INITIAL_DELAY_MILLIS, 2 * INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS};
+        for (int attempt = 1; attempt <= caps.length; attempt++) {
+            Set<Long> delays = new HashSet<Long>();
+            for (int i = 0; i < 1000; i++) {
+                long delay = policy.retryDelayMillis(attempt, 0, 503, null);
+                assertTrue("Delay " + delay + " of attempt " + attempt + " out of bounds", delay >= 0 && delay <= caps[attempt - 1]);
+                delays.add(delay);
+            }
+            assertTrue("Delays of attempt " + attempt + " are not jittered", delays.size() > 10);
+        }
+        assertEquals("Retried beyond max attempts", -1, policy.retryDelayMillis(4, 0, 503, null));
+    }
+
+    @Test
+    public void stopsAtElapsedBudget() {
+        ExponentialBackoffRetryPolicy policy = createPolicy(READ);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue("Gave up within the budget", policy.retryDelayMillis(1, MAX_ELAPSED_MILLIS - INITIAL_DELAY_MILLIS, 503, null) >= 0);
+            long delay = policy.retryDelayMillis(2, MAX_ELAPSED_MILLIS - 1, 503, null);
+            assertTrue("Backoff exceeded the budget", delay == -1 || delay <= 1);
+            assertEquals("Retried past the budget", -1, policy.retryDelayMillis(1, MAX_ELAPSED_MILLIS + 1, 503, null));
+        }
+    }
+
+    @Test
+    public void clientRetriesPerOperation() throws Exception {
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, logUnitTests);
+        for (RetryPolicy.OperationClass operation : RetryPolicy.OperationClass.values()) {
+            client.setRetryPolicy(operation, createPolicy(operation));
+        }
+        try {
+            assertEquals(7, client.getRequest("read/flaky", null, CxID.class, HttpStatus.SC_OK, "flaky read", false).getId());
+            assertEquals("Read was not retried until it succeeded", 3, requests.get("/CxRestAPI/read/flaky").get());
+
+            expectFailure(client, "create/badGateway", new ByteArrayEntity(new byte[1], ContentType.APPLICATION_JSON));
+            assertEquals("Creation was retried after a 502", 1, requests.get("/CxRestAPI/create/badGateway").get());
+
+            expectFailure(client, "create/unavailable", new ByteArrayEntity(new byte[1], ContentType.APPLICATION_JSON));
+            assertEquals("Creation was not retried after a 503", 4, requests.get("/CxRestAPI/create/unavailable").get());
+
+            byte[] body = new byte[]{1, 2, 3};
+            expectFailure(client, "stream/unavailable", new InputStreamEntity(new ByteArrayInputStream(body), body.length));
+            assertEquals("Non-repeatable body was sent twice", 1, requests.get("/CxRestAPI/stream/unavailable").get());
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void expectFailure(CxHttpClient client, String relPath, HttpEntity entity) throws IOException {
+        try {
+            client.postRequest(relPath, null, entity, CxID.class, HttpStatus.SC_OK, relPath);
+            fail("Request to " + relPath + " succeeded");
+        } catch (CxClientException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.cx.restclient.httpClient;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InMemoryMetricsRecorderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void writesPrometheusFile() throws Exception {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        recorder.recordRequest("get scan status", "GET", 200, TimeUnit.MILLISECONDS.toNanos(5), 0, 80, 1);
+        recorder.recordRequest("get scan status", "GET", 200, TimeUnit.MILLISECONDS.toNanos(30), 0, 120, 1);
+        recorder.recordRetry("create SAST scan", "503");
+        recorder.recordRequest("create SAST scan", "POST", 201, TimeUnit.MILLISECONDS.toNanos(1200), 50, 20, 2);
+        recorder.recordTokenRefresh(TimeUnit.MILLISECONDS.toNanos(100), true);
+        recorder.recordTokenRefresh(TimeUnit.MILLISECONDS.toNanos(50), false);
+        recorder.recordWait("CxSAST scan", 12, TimeUnit.SECONDS.toNanos(60));
+        recorder.recordWait("CxSAST scan", 3, TimeUnit.SECONDS.toNanos(10));
+        recorder.recordWait("CxSAST report", 2, TimeUnit.SECONDS.toNanos(1));
+
+        String expected = "# HELP cx_http_request_duration_seconds Checkmarx REST request latency including retries.\n" +
+                "# TYPE cx_http_request_duration_seconds histogram\n" +
+                histogram("create SAST scan", "POST", new int[]{0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1}, 1, "1.200") +
+                histogram("get scan status", "GET", new int[]{1, 1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2}, 2, "0.035") +
+                "# HELP cx_http_requests_total Checkmarx REST requests by final status code (0 - no response).\n" +
+                "# TYPE cx_http_requests_total counter\n" +
+                "cx_http_requests_total{operation=\"create SAST scan\",status=\"201\"} 1\n" +
+                "cx_http_requests_total{operation=\"get scan status\",status=\"200\"} 2\n" +
+                "# HELP cx_http_retries_total Checkmarx REST request retries by reason.\n" +
+                "# TYPE cx_http_retries_total counter\n" +
+                "cx_http_retries_total{operation=\"create SAST scan\",reason=\"503\"} 1\n" +
+                "# HELP cx_http_request_bytes_total Request body bytes sent.\n" +
+                "# TYPE cx_http_request_bytes_total counter\n" +
+                "cx_http_request_bytes_total{operation=\"create SAST scan\"} 50\n" +
+                "cx_http_request_bytes_total{operation=\"get scan status\"} 0\n" +
+                "# HELP cx_http_response_bytes_total Response body bytes received on the wire.\n" +
+                "# TYPE cx_http_response_bytes_total counter\n" +
+                "cx_http_response_bytes_total{operation=\"create SAST scan\"} 20\n" +
+                "cx_http_response_bytes_total{operation=\"get scan status\"} 200\n" +
+                "# HELP cx_token_refresh_total Access token requests.\n" +
+                "# TYPE cx_token_refresh_total counter\n" +
+                "cx_token_refresh_total{result=\"success\"} 1\n" +
+                "cx_token_refresh_total{result=\"failure\"} 1\n" +
+                "# HELP cx_wait_polls_total Status requests made while waiting for server tasks.\n" +
+                "# TYPE cx_wait_polls_total counter\n" +
+                "cx_wait_polls_total{operation=\"CxSAST report\"} 2\n" +
+                "cx_wait_polls_total{operation=\"CxSAST scan\"} 15\n" +
+                "# HELP cx_waits_total Completed waits for server tasks.\n" +
+                "# TYPE cx_waits_total counter\n" +
+                "cx_waits_total{operation=\"CxSAST report\"} 1\n" +
+                "cx_waits_total{operation=\"CxSAST scan\"} 2\n";
+
+        File file = recorder.writePrometheus(tempFolder.getRoot());
+        assertEquals("Incorrect file name", InMemoryMetricsRecorder.PROMETHEUS_FILE_NAME, file.getName());
+        assertEquals("Incorrect Prometheus output", expected, FileUtils.readFileToString(file, StandardCharsets.UTF_8.name()));
+    }
+
+    private static String histogram(String operation, String method, int[] cumulativeCounts, int count, String sum) {
+        String[] bounds = {"0.010", "0.025", "0.050", "0.100", "0.250", "0.500", "1.000", "2.500", "5.000", "10.000", "30.000", "60.000"};
+        String labels = "operation=\"" + operation + "\",method=\"" + method + "\"";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < bounds.length; i++) {
+            sb.append("cx_http_request_duration_seconds_bucket{").append(labels).append(",le=\"").append(bounds[i]).append("\"} ")
+                    .append(cumulativeCounts[i]).append("\n");
+        }
+        sb.append("cx_http_request_duration_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append("\n");
+        sb.append("cx_http_request_duration_seconds_sum{").append(labels).append("} ").append(sum).append("\n");
+        sb.append("cx_http_request_duration_seconds_count{").append(labels).append("} ").append(count).append("\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.dto.Team;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Serves the team list from a stub server that answers conditional requests, and follows a cached entry
+ * from its first download through a 304 revalidation to a changed list.
+ */
+public class ReferenceDataCacheTest {
+    private static Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final long TTL_MILLIS = 60000;
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private String url;
+    private volatile String version = "1";
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                String eTag = "\"" + version + "\"";
+                exchange.getResponseHeaders().add("ETag", eTag);
+                if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(HttpStatus.SC_NOT_MODIFIED, -1);
+                    exchange.close();
+                    return;
+                }
+                downloads.incrementAndGet();
+                byte[] body = ("[{\"id\":\"" + version + "\",\"fullName\":\"\\\\CxServer\\\\Team" + version + "\"}]").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void revalidatesWithConditionalRequests() throws Exception {
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, logUnitTests);
+        client.setReferenceDataCache(new ReferenceDataCache(null, logUnitTests), TTL_MILLIS);
+        try {
+            List<Team> teams = getTeams(client, false);
+            assertEquals("Incorrect team", "1", teams.get(0).getId());
+            assertEquals("List was not downloaded", 1, downloads.get());
+
+            assertSame("Fresh list was not served from the cache", teams, getTeams(client, false));
+            assertEquals("Fresh list was requested", 1, downloads.get() + notModified.get());
+
+            assertSame("Unchanged list was decoded again", teams, getTeams(client, true));
+            assertEquals("Unchanged list was not revalidated", 1, notModified.get());
+            assertEquals("Unchanged list was downloaded again", 1, downloads.get());
+
+            version = "2";
+            List<Team> changed = getTeams(client, true);
+            assertEquals("Changed list was not downloaded", 2, downloads.get());
+            assertEquals("Incorrect changed team", "2", changed.get(0).getId());
+            assertSame("Changed list was not cached", changed, getTeams(client, false));
+        } finally {
+            client.close();
+        }
+    }
+
+    private static List<Team> getTeams(CxHttpClient client, boolean forceRevalidate) throws Exception {
+        return (List<Team>) client.getCachedRequest("auth/teams", null, Team.class, "team list", true, forceRevalidate);
+    }
+}
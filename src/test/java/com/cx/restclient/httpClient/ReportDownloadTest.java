@@ -0,0 +1,94 @@
+package com.cx.restclient.httpClient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpStatus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Downloads a large report through {@link CxHttpClient#getRequestToFile} and measures the peak heap growth,
+ * which must stay far below the report size.
+ */
+public class ReportDownloadTest {
+    private Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final int REPORT_SIZE = 64 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void streamsReportToFileWithBoundedHeap() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, REPORT_SIZE);
+                OutputStream out = exchange.getResponseBody();
+                byte[] chunk = new byte[CHUNK_SIZE];
+                for (int i = 0; i < REPORT_SIZE / CHUNK_SIZE; i++) {
+                    Arrays.fill(chunk, (byte) i);
+                    out.write(chunk);
+                }
+                out.close();
+            }
+        });
+        server.start();
+
+        CxHttpClient client = new CxHttpClient("http://localhost:" + server.getAddress().getPort(), "user", "pass", "cxOrigin", false, true, logUnitTests);
+        try {
+            File target = new File(tempFolder.getRoot(), "Checkmarx/Reports/CxSASTReport_1.xml");
+            long baseline = resetPeakHeap();
+            File report = client.getRequestToFile("reports/sastScan/1", null, target, HttpStatus.SC_OK, "scan report: 1");
+            long peakGrowth = getPeakHeap() - baseline;
+            logUnitTests.info("Streaming a " + REPORT_SIZE / (1024 * 1024) + " MB report grew the peak heap by " + peakGrowth / (1024 * 1024) + " MB");
+
+            assertEquals("Incorrect report file", target, report);
+            assertEquals("Incorrect report size", REPORT_SIZE, report.length());
+            assertFalse("Partial download was left behind", new File(target.getPath() + ".part").exists());
+            assertTrue("Report was buffered in memory", peakGrowth < REPORT_SIZE / 2);
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+    }
+
+    private static long resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        return getPeakHeap();
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
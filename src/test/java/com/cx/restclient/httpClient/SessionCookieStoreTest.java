@@ -0,0 +1,101 @@
+package com.cx.restclient.httpClient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpStatus;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.cx.restclient.common.CxPARAM.CSRF_TOKEN_HEADER;
+import static org.junit.Assert.*;
+
+public class SessionCookieStoreTest {
+    private Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Test
+    public void replacesCookieWithSameNameDomainAndPath() {
+        SessionCookieStore store = new SessionCookieStore();
+        store.addSetCookieHeader("session=1; Path=/; HttpOnly", "cx.local", "/CxRestAPI/auth");
+        store.addSetCookieHeader("session=2; Path=/; HttpOnly", "cx.local", "/CxRestAPI/auth");
+        store.addSetCookieHeader("other=a; Path=/CxRestAPI", "cx.local", "/CxRestAPI/auth");
+
+        assertEquals("Incorrect cookie count", 2, store.size());
+        assertEquals("Incorrect Cookie header", "other=a; session=2", store.getCookieHeader("cx.local", "/CxRestAPI/projects"));
+        assertEquals("Incorrect Cookie header for other path", "session=2", store.getCookieHeader("cx.local", "/cxarm"));
+        assertNull("Cookie sent to another host", store.getCookieHeader("other.local", "/"));
+    }
+
+    @Test
+    public void dropsExpiredCookies() {
+        SessionCookieStore store = new SessionCookieStore();
+        store.addSetCookieHeader("session=1; Path=/", "cx.local", "/");
+        store.addSetCookieHeader("tmp=1; Max-Age=3600; Path=/", "cx.local", "/");
+        store.addSetCookieHeader("session=; Expires=Thu, 01 Jan 1970 00:00:00 GMT; Path=/", "cx.local", "/");
+        store.addSetCookieHeader("tmp=; Max-Age=0; Path=/", "cx.local", "/");
+
+        assertEquals("Expired cookies were kept", 0, store.size());
+        assertNull("Expired cookies were sent", store.getCookieHeader("cx.local", "/"));
+    }
+
+    @Test
+    public void domainCookieMatchesSubdomains() {
+        SessionCookieStore store = new SessionCookieStore();
+        store.addSetCookieHeader("sso=1; Domain=.example.com; Path=/", "cx.example.com", "/");
+
+        assertEquals("Incorrect Cookie header", "sso=1", store.getCookieHeader("arm.example.com", "/cxarm"));
+        assertNull("Cookie sent to another domain", store.getCookieHeader("example.org", "/"));
+    }
+
+    @Test
+    public void cookieHeaderStaysBoundedWhileLongPolling() throws Exception {
+        logUnitTests.info("Current test validate that the SSO Cookie header does not grow over a long polling session\n");
+        final AtomicInteger counter = new AtomicInteger();
+        final AtomicInteger maxCookieHeaderLength = new AtomicInteger();
+        final AtomicReference<String> lastCsrfHeader = new AtomicReference<String>();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String cookie = exchange.getRequestHeaders().getFirst("cookie");
+                if (cookie != null && cookie.length() > maxCookieHeaderLength.get()) {
+                    maxCookieHeaderLength.set(cookie.length());
+                }
+                lastCsrfHeader.set(exchange.getRequestHeaders().getFirst(CSRF_TOKEN_HEADER));
+                int n = counter.incrementAndGet();
+                exchange.getResponseHeaders().add("Set-Cookie", CSRF_TOKEN_HEADER + "=csrf" + n + "; Path=/");
+                exchange.getResponseHeaders().add("Set-Cookie", "cxCookie=session" + n + "; Path=/; HttpOnly");
+                exchange.getResponseHeaders().add("Set-Cookie", "tmp=" + n + "; Max-Age=0; Path=/");
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        String url = "http://localhost:" + server.getAddress().getPort();
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, logUnitTests);
+        try {
+            int polls = 2000;
+            for (int i = 0; i < polls; i++) {
+                client.getRequest("sast/scansQueue/1", null, null, HttpStatus.SC_OK, "scan status", false);
+            }
+            assertEquals("Incorrect request count", polls, counter.get());
+            assertTrue("Cookie header grew to " + maxCookieHeaderLength.get() + " characters", maxCookieHeaderLength.get() < 100);
+            assertEquals("CSRF token was not replaced", "csrf" + (polls - 1), lastCsrfHeader.get());
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.cx.restclient.httpClient;
+
+import com.cx.restclient.dto.TokenLoginResponse;
+import com.cx.restclient.exception.CxClientException;
+import com.cx.restclient.sast.dto.CxID;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Refreshes the access token of clients against a stub token endpoint issuing tokens that expire in 2 seconds,
+ * so they are due for a refresh after 1 second.
+ */
+public class TokenManagerTest {
+    private static Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final int TOKEN_LIFETIME_SEC = 2;
+    private static final int CONCURRENT_REQUESTS = 8;
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final List<String> authorizations = new ArrayList<String>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                String body;
+                if (exchange.getRequestURI().getPath().endsWith("/connect/token")) {
+                    int issued = tokenRequests.incrementAndGet();
+                    try {
+                        //slow enough for the concurrent requests to find the refresh in flight
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    body = "{\"access_token\":\"token-" + issued + "\",\"token_type\":\"Bearer\",\"expires_in\":" + TOKEN_LIFETIME_SEC + "}";
+                } else {
+                    synchronized (authorizations) {
+                        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                    }
+                    body = "{\"id\":7}";
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void concurrentRequestsShareOneRefresh() throws Exception {
+        final CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, false, logUnitTests);
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        try {
+            client.login();
+            //unused since the login, so the background refresh stands down and the requests refresh on demand
+            Thread.sleep(TimeUnit.SECONDS.toMillis(TOKEN_LIFETIME_SEC) / 2 + 300);
+            assertEquals("Idle token was refreshed in the background", 1, tokenRequests.get());
+
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<CxID>> results = new ArrayList<Future<CxID>>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                results.add(executor.submit(new Callable<CxID>() {
+                    public CxID call() throws Exception {
+                        start.await();
+                        return client.getRequest("sast/scansQueue/1", null, CxID.class, HttpStatus.SC_OK, "scan status", false);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<CxID> result : results) {
+                assertEquals(7, result.get(10, TimeUnit.SECONDS).getId());
+            }
+
+            assertEquals("Refresh was not single-flight", 2, tokenRequests.get());
+            synchronized (authorizations) {
+                for (String authorization : authorizations) {
+                    assertEquals("Request was sent with the due token", "Bearer token-2", authorization);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            client.close();
+        }
+    }
+
+    @Test
+    public void usedTokenIsRefreshedBeforeItExpires() throws Exception {
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, false, logUnitTests);
+        try {
+            client.login();
+            client.getRequest("sast/scansQueue/1", null, CxID.class, HttpStatus.SC_OK, "scan status", false);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TOKEN_LIFETIME_SEC);
+            while (tokenRequests.get() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals("Token was not refreshed in the background", 2, tokenRequests.get());
+
+            client.getRequest("sast/scansQueue/1", null, CxID.class, HttpStatus.SC_OK, "scan status", false);
+            assertEquals("Request did not use the refreshed token", "Bearer token-2", authorizations.get(authorizations.size() - 1));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void waitForRefreshInFlightTimesOut() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final TokenManager tokenManager = new TokenManager(new TokenManager.TokenProvider() {
+            public TokenLoginResponse requestToken() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new TokenLoginResponse();
+            }
+        }, 100, logUnitTests);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(new Callable<TokenLoginResponse>() {
+                public TokenLoginResponse call() throws Exception {
+                    return tokenManager.login();
+                }
+            });
+            Thread.sleep(100);
+            try {
+                tokenManager.refresh(null);
+                fail("Waited for the stuck token request beyond the timeout");
+            } catch (CxClientException e) {
+                assertTrue("Incorrect error: " + e.getMessage(), e.getMessage().contains("Timed out"));
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+            tokenManager.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.cx.restclient.httpClient.utils;
+
+import com.cx.restclient.httpClient.CxHttpClient;
+import com.cx.restclient.httpClient.TransferStats;
+import com.cx.restclient.sast.dto.CxID;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decodes gzip and raw deflate responses of a stub server and checks the wire and decoded byte counts.
+ */
+public class CountingDecompressingEntityTest {
+    private static Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final int ITEMS = 500;
+
+    private static HttpServer server;
+    private static String url;
+    private static byte[] body;
+    private static byte[] gzipBody;
+    private static byte[] deflateBody;
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < ITEMS; i++) {
+            sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append("}");
+        }
+        body = sb.append("]").toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOut = new GZIPOutputStream(gzip);
+        gzipOut.write(body);
+        gzipOut.close();
+        gzipBody = gzip.toByteArray();
+        //raw deflate without the zlib header, as some servers send it
+        ByteArrayOutputStream deflate = new ByteArrayOutputStream();
+        DeflaterOutputStream deflateOut = new DeflaterOutputStream(deflate, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+        deflateOut.write(body);
+        deflateOut.close();
+        deflateBody = deflate.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                String encoding = exchange.getRequestURI().getPath().endsWith("/gzip") ? "gzip" : "deflate";
+                byte[] encoded = "gzip".equals(encoding) ? gzipBody : deflateBody;
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.getResponseHeaders().add("Content-Encoding", encoding);
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, encoded.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(encoded);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void decodesGzip() throws Exception {
+        verifyDecoded("libraries/gzip", gzipBody.length);
+    }
+
+    @Test
+    public void decodesRawDeflate() throws Exception {
+        verifyDecoded("libraries/deflate", deflateBody.length);
+    }
+
+    private void verifyDecoded(String relPath, int wireBytes) throws Exception {
+        CxHttpClient client = new CxHttpClient(url, "user", "pass", "cxOrigin", false, true, logUnitTests);
+        try {
+            List<CxID> items = (List<CxID>) client.getRequest(relPath, null, CxID.class, HttpStatus.SC_OK, "libraries", true);
+            assertEquals("Incorrect number of decoded items", ITEMS, items.size());
+            assertEquals("Incorrect last item", ITEMS - 1, items.get(ITEMS - 1).getId());
+
+            TransferStats stats = client.getTransferStats();
+            assertEquals("Incorrect compressed responses", 1, stats.getCompressedResponses());
+            assertEquals("Incorrect wire bytes", wireBytes, stats.getWireBytes());
+            assertEquals("Incorrect decoded bytes", body.length, stats.getDecodedBytes());
+            assertEquals("Incorrect saved bytes", body.length - wireBytes, stats.getSavedBytes());
+        } finally {
+            client.close();
+        }
+    }
+}
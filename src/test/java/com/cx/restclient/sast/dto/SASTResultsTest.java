@@ -0,0 +1,63 @@
+package com.cx.restclient.sast.dto;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SASTResultsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void serializesStreamedReportsByContent() throws Exception {
+        byte[] xml = "<CxXMLResults/>".getBytes(StandardCharsets.UTF_8);
+        byte[] pdf = "%PDF-1.4".getBytes(StandardCharsets.UTF_8);
+        File xmlFile = tempFolder.newFile("CxSASTReport_1.xml");
+        File pdfFile = tempFolder.newFile("CxSASTReport_1.pdf");
+        Files.write(xmlFile.toPath(), xml);
+        Files.write(pdfFile.toPath(), pdf);
+        SASTResults results = new SASTResults();
+        results.setRawXMLReportFile(xmlFile);
+        results.setPDFReportFile(pdfFile);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(results);
+        out.close();
+        //the reading side has no access to the files of the writing side
+        assertTrue(xmlFile.delete() && pdfFile.delete());
+        SASTResults read = (SASTResults) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertNull("Report file was serialized", read.getRawXMLReportFile());
+        assertArrayEquals("Incorrect XML report", xml, read.getRawXMLReport());
+        assertArrayEquals("Incorrect PDF report", pdf, read.getPDFReport());
+    }
+
+    @Test
+    public void deletesOnlyTemporaryReports() throws Exception {
+        File xmlFile = tempFolder.newFile("CxSASTReport_2.xml");
+        File pdfFile = tempFolder.newFile("CxSASTReport_2.pdf");
+        SASTResults results = new SASTResults();
+        results.setRawXMLReportFile(xmlFile, true);
+        results.setPDFReportFile(pdfFile, false);
+
+        results.deleteTemporaryReports();
+
+        assertFalse("Temporary report was not deleted", xmlFile.exists());
+        assertNull("Deleted report is still referenced", results.getRawXMLReportFile());
+        assertNull("Deleted report is still readable", results.getRawXMLReport());
+        assertTrue("Report in the reports directory was deleted", pdfFile.exists());
+        assertEquals("Incorrect PDF report file", pdfFile, results.getPDFReportFile());
+    }
+}
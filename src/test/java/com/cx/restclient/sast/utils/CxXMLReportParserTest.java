@@ -0,0 +1,75 @@
+package com.cx.restclient.sast.utils;
+
+import com.cx.restclient.sast.dto.CxXMLResults;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CxXMLReportParserTest {
+
+    static String createReport(int queries, int resultsPerQuery, int nodesPerPath) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        sb.append("<CxXMLResults InitiatorName=\"admin\" ScanId=\"1000\" ProjectId=\"7\" ProjectName=\"p &amp; q\" ScanStart=\"Sunday, January 6, 2019 11:53:24 AM\"")
+                .append(" ScanTime=\"00h:01m:30s\" LinesOfCodeScanned=\"12345\" FilesScanned=\"321\" Preset=\"Checkmarx Default\">\n");
+        for (int q = 0; q < queries; q++) {
+            String severity = new String[]{"High", "Medium", "Low", "Information"}[q % 4];
+            sb.append(" <Query id=\"").append(q).append("\" cweId=\"").append(79 + q).append("\" name=\"Query_").append(q)
+                    .append("\" group=\"Java_High_Risk\" Severity=\"").append(severity).append("\" Language=\"Java\" SeverityIndex=\"").append(3 - q % 4).append("\">\n");
+            for (int r = 0; r < resultsPerQuery; r++) {
+                sb.append("  <Result NodeId=\"").append(q).append("0").append(r).append("\" FileName=\"src/main/File").append(r % 7)
+                        .append(".java\" Status=\"").append(r % 3 == 0 ? "New" : "Recurrent").append("\" Line=\"").append(r + 1)
+                        .append("\" Column=\"5\" FalsePositive=\"").append(r % 5 == 0 ? "True" : "False").append("\" Severity=\"").append(severity)
+                        .append("\" state=\"0\" Remark=\"\" DeepLink=\"http://cx/CxWebClient/ViewerMain.aspx?scanid=1000\" SeverityIndex=\"1\">\n");
+                sb.append("   <Path ResultId=\"1000\" PathId=\"").append(r).append("\" SimilarityId=\"-").append(q * 31 + r).append("\">\n");
+                for (int n = 0; n < nodesPerPath; n++) {
+                    sb.append("    <PathNode><FileName>src/main/File").append(n).append(".java</FileName><Line>").append(n + 10)
+                            .append("</Line><Column>12</Column><NodeId>").append(n).append("</NodeId><Name>request</Name><Type></Type><Length>7</Length>")
+                            .append("<Snippet><Line><Number>").append(n + 10).append("</Number><Code><![CDATA[String s = request.getParameter(\"a<b>\");]]></Code></Line></Snippet></PathNode>\n");
+                }
+                sb.append("   </Path>\n  </Result>\n");
+            }
+            sb.append(" </Query>\n");
+        }
+        return sb.append("</CxXMLResults>\n").toString();
+    }
+
+    @Test
+    public void streamingParserMatchesJAXB() throws Exception {
+        byte[] report = createReport(6, 10, 3).getBytes(StandardCharsets.UTF_8);
+        CxXMLResults jaxb = SASTUtils.convertToXMLResult(report);
+        CxXMLResults stax = new CxXMLReportParser(false).parse(new ByteArrayInputStream(report));
+
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals("Streaming parser result differs from JAXB", mapper.writeValueAsString(jaxb), mapper.writeValueAsString(stax));
+    }
+
+    @Test
+    public void summaryOnlySkipsPathNodes() throws Exception {
+        byte[] report = createReport(4, 5, 3).getBytes(StandardCharsets.UTF_8);
+        final AtomicInteger results = new AtomicInteger();
+        final AtomicInteger endedQueries = new AtomicInteger();
+        new CxXMLReportParser(true).parse(new ByteArrayInputStream(report), new CxXMLReportVisitor() {
+            public void visitResult(CxXMLResults.Query query, CxXMLResults.Query.Result result) {
+                results.incrementAndGet();
+                assertTrue("Path nodes were read in summary only mode", result.getPath().getPathNode().isEmpty());
+                assertNotNull("Similarity id was not read", result.getPath().getSimilarityId());
+            }
+
+            public void endQuery(CxXMLResults.Query query) {
+                endedQueries.incrementAndGet();
+            }
+        });
+        assertEquals("Incorrect number of results", 20, results.get());
+        assertEquals("Incorrect number of queries", 4, endedQueries.get());
+
+        CxXMLResults summary = new CxXMLReportParser(true).parse(new ByteArrayInputStream(report));
+        assertEquals("Incorrect report attribute", "p & q", summary.getProjectName());
+        assertEquals("Incorrect number of queries", 4, summary.getQuery().size());
+        assertEquals("Incorrect number of results", 5, summary.getQuery().get(3).getResult().size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.cx.restclient.sast.utils;
+
+import com.cx.restclient.sast.dto.CxXMLResults;
+import com.cx.restclient.sast.dto.SASTResults;
+import com.cx.restclient.sast.dto.SASTResults.Severity;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class SASTResultsAggregatorTest {
+
+    private static CxXMLResults.Query.Result createResult(String fileName, String status, String falsePositive) {
+        CxXMLResults.Query.Result result = new CxXMLResults.Query.Result();
+        result.setFileName(fileName);
+        result.setStatus(status);
+        result.setFalsePositive(falsePositive);
+        result.setSeverity("High");
+        return result;
+    }
+
+    @Test
+    public void consecutiveFalsePositivesAreNotCounted() {
+        CxXMLResults report = new CxXMLResults();
+        CxXMLResults.Query query = new CxXMLResults.Query();
+        query.setName("SQL_Injection");
+        query.setCweId("89");
+        query.setSeverity("High");
+        query.getResult().add(createResult("a.java", "New", "True"));
+        query.getResult().add(createResult("a.java", "New", "True"));
+        query.getResult().add(createResult("b.java", "New", "False"));
+        query.getResult().add(createResult("b.java", "Recurrent", "False"));
+        report.getQuery().add(query);
+
+        SASTResults sastResults = new SASTResults();
+        sastResults.setScanDetailedReport(report);
+
+        assertEquals("Incorrect new high count", 1, sastResults.getNewHigh());
+        assertEquals("False positives were kept in the query list", 2, sastResults.getQueryList().get(0).getResult().size());
+        assertEquals("Parsed result list was modified", 4, query.getResult().size());
+
+        SASTResultsAggregator aggregation = sastResults.getResultsAggregation();
+        assertEquals("Incorrect false positive count", 2, aggregation.getTotals().getFalsePositive(Severity.High));
+        assertEquals("Incorrect recurrent count", 1, aggregation.getTotals().getRecurrent(Severity.High));
+        assertEquals("Incorrect count per CWE", 2, aggregation.getCountsByCwe().get("89").getTotal());
+        assertEquals("Incorrect count per file", 0, aggregation.getCountsByFile().get("a.java").getTotal());
+        assertEquals("Incorrect count per file", 2, aggregation.getCountsByFile().get("b.java").getTotal());
+        assertEquals("Incorrect new results view", 1, aggregation.getQueryList(SASTResultsAggregator.NEW).get(0).getResult().size());
+    }
+
+    @Test
+    public void streamingAggregationMatchesTreeAggregation() throws Exception {
+        byte[] report = CxXMLReportParserTest.createReport(8, 20, 2).getBytes(StandardCharsets.UTF_8);
+        SASTResultsAggregator fromTree = SASTResultsAggregator.aggregate(SASTUtils.convertToXMLResult(report));
+        SASTResultsAggregator streamed = new SASTResultsAggregator();
+        new CxXMLReportParser(true).parse(new ByteArrayInputStream(report), streamed);
+
+        assertEquals("Incorrect totals", fromTree.getTotals().toString(), streamed.getTotals().toString());
+        assertEquals("Incorrect query count", fromTree.getCountsByQuery().size(), streamed.getCountsByQuery().size());
+        assertEquals("Incorrect file count", 7, streamed.getCountsByFile().size());
+        for (String file : fromTree.getCountsByFile().keySet()) {
+            assertEquals("Incorrect counts for " + file, fromTree.getCountsByFile().get(file).toString(), streamed.getCountsByFile().get(file).toString());
+        }
+        assertEquals("Incorrect unfiltered view", 20, streamed.getQueryList(r -> true).get(0).getResult().size());
+        assertEquals("Incorrect false positive filter", 16, streamed.getQueryList(SASTResultsAggregator.NOT_FALSE_POSITIVE).get(0).getResult().size());
+    }
+}
@@ -0,0 +1,97 @@
+package com.cx.restclient.sast.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ScanHistoryTest {
+    private Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final String SERVER = "http://cx";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ScanHistory.Record createRecord(long projectId, String preset, boolean incremental, long totalMillis) {
+        ScanHistory.Record record = new ScanHistory.Record();
+        record.server = SERVER;
+        record.projectId = projectId;
+        record.preset = preset;
+        record.incremental = incremental;
+        record.loc = 100000;
+        record.files = 2000;
+        record.queuedMillis = MINUTE;
+        record.totalMillis = totalMillis;
+        return record;
+    }
+
+    @Test
+    public void predictsFromMatchingScansAcrossRuns() throws Exception {
+        File file = new File(folder.getRoot(), "history/scans.jsonl");
+        ScanHistory history = new ScanHistory(file, logUnitTests);
+        assertNull("Predicted without history", history.predict(SERVER, 1, "Default", false));
+
+        history.add(createRecord(1, "Default", false, 20 * MINUTE), logUnitTests);
+        history.add(createRecord(1, "Default", false, 40 * MINUTE), logUnitTests);
+        history.add(createRecord(1, "Default", false, 30 * MINUTE), logUnitTests);
+        history.add(createRecord(1, "Default", true, 2 * MINUTE), logUnitTests);
+        history.add(createRecord(1, "All", false, 90 * MINUTE), logUnitTests);
+        history.add(createRecord(2, "Default", false, 5 * MINUTE), logUnitTests);
+        Files.write(file.toPath(), Collections.singletonList("{\"server\":\"http://cx\",\"projectId\":1,\"tot"), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        //a new run reads the appended records back, skipping the line cut short
+        ScanHistory reloaded = new ScanHistory(file, logUnitTests);
+        ScanHistory.Prediction full = reloaded.predict(SERVER, 1, "Default", false);
+        assertEquals("Incorrect scan count", 3, full.getScans());
+        assertEquals("Incorrect median", 30 * MINUTE, full.getDurationMillis());
+        assertEquals("Incorrect envelope", 60 * MINUTE, full.getEnvelopeMillis());
+        assertEquals("Incremental scans should be predicted apart", 2 * MINUTE, reloaded.predict(SERVER, 1, "Default", true).getDurationMillis());
+        assertEquals("A new preset should fall back to the other scans of the project", 35 * MINUTE, reloaded.predict(SERVER, 1, "Unknown", false).getDurationMillis());
+        assertNull("Predicted from another server", reloaded.predict("http://other", 1, "Default", false));
+    }
+
+    @Test
+    public void keepsOnlyTheLatestScansOfAProject() {
+        ScanHistory history = new ScanHistory(null, logUnitTests);
+        for (int i = 0; i < ScanHistory.MAX_SCANS_PER_PROJECT; i++) {
+            history.add(createRecord(1, "Default", false, 60 * MINUTE), logUnitTests);
+        }
+        for (int i = 0; i < 10; i++) {
+            history.add(createRecord(1, "Default", false, 10 * MINUTE), logUnitTests);
+        }
+        assertEquals("Old scans should not count", 10 * MINUTE, history.predict(SERVER, 1, "Default", false).getDurationMillis());
+    }
+
+    @Test
+    public void compactsFileToTheLatestScans() throws Exception {
+        File file = new File(folder.getRoot(), "scans.jsonl");
+        ScanHistory history = new ScanHistory(file, logUnitTests);
+        history.add(createRecord(2, "Default", false, 5 * MINUTE), logUnitTests);
+        //appended by another process, which compaction must keep
+        Files.write(file.toPath(), Collections.singletonList("{\"server\":\"http://cx\",\"projectId\":3,\"totalMillis\":420000}"),
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        for (int i = 0; i < ScanHistory.COMPACTION_THRESHOLD; i++) {
+            history.add(createRecord(1, "Default", false, 60 * MINUTE), logUnitTests);
+        }
+        assertEquals("File was not compacted", ScanHistory.MAX_SCANS_PER_PROJECT + 2, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+
+        for (int i = 0; i < 10; i++) {
+            history.add(createRecord(1, "Default", false, 10 * MINUTE), logUnitTests);
+        }
+        ScanHistory reloaded = new ScanHistory(file, logUnitTests);
+        assertEquals("Incorrect latest scans after compaction", 10 * MINUTE, reloaded.predict(SERVER, 1, "Default", false).getDurationMillis());
+        assertEquals("Scan of another project was dropped", 5 * MINUTE, reloaded.predict(SERVER, 2, "Default", false).getDurationMillis());
+        assertEquals("Scan of another process was dropped", 7 * MINUTE, reloaded.predict(SERVER, 3, null, false).getDurationMillis());
+    }
+}
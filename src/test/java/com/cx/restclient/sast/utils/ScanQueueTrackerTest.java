@@ -0,0 +1,133 @@
+package com.cx.restclient.sast.utils;
+
+import com.cx.restclient.sast.dto.ResponseQueueScanStatus;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScanQueueTrackerTest {
+    private static Logger log = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static Callable<List<ResponseQueueScanStatus>> queueOf(final AtomicInteger requests, final long... scanIds) {
+        return () -> {
+            requests.incrementAndGet();
+            List<ResponseQueueScanStatus> queue = new ArrayList<ResponseQueueScanStatus>();
+            for (long scanId : scanIds) {
+                ResponseQueueScanStatus status = new ResponseQueueScanStatus();
+                status.setId(scanId);
+                queue.add(status);
+            }
+            return queue;
+        };
+    }
+
+    @Test
+    public void concurrentScansShareOneListing() throws Exception {
+        final ScanQueueTracker tracker = new ScanQueueTracker(3600000);
+        final AtomicInteger requests = new AtomicInteger();
+        final long[] scanIds = new long[300];
+        for (int i = 0; i < scanIds.length; i++) {
+            scanIds[i] = 1000 + i;
+        }
+        final AtomicInteger found = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final long scanId : scanIds) {
+            Thread t = new Thread(() -> {
+                ResponseQueueScanStatus status = tracker.getStatus(scanId, queueOf(requests, scanIds), log);
+                if (status != null && status.getId() == scanId) {
+                    found.incrementAndGet();
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals("Every scan should be served from the listing", scanIds.length, found.get());
+        assertEquals("The queue should be listed once", 1, requests.get());
+        assertEquals(1, tracker.getListings());
+        assertEquals(scanIds.length, tracker.getHits());
+        assertNull("A scan that left the queue should fall back to its own request", tracker.getStatus(1, queueOf(requests, scanIds), log));
+        assertEquals(1, tracker.getMisses());
+    }
+
+    @Test
+    public void listsAgainAfterTheIntervalAndSurvivesFailures() {
+        ScanQueueTracker tracker = new ScanQueueTracker(0);
+        AtomicInteger requests = new AtomicInteger();
+
+        assertNotNull(tracker.getStatus(7, queueOf(requests, 7, 8), log));
+        assertNull("A scan should fall back once it leaves the queue", tracker.getStatus(7, queueOf(requests, 8), log));
+        assertNull("A failed listing should fall back to the request of the scan", tracker.getStatus(8, () -> {
+            throw new IOException("unavailable");
+        }, log));
+        assertNotNull(tracker.getStatus(8, queueOf(requests, 8), log));
+        assertEquals(3, requests.get());
+        assertEquals(4, tracker.getListings());
+    }
+
+    @Test
+    public void slowListingDoesNotBlockOtherWaits() throws Exception {
+        final ScanQueueTracker tracker = new ScanQueueTracker(0);
+        AtomicInteger requests = new AtomicInteger();
+        assertNotNull(tracker.getStatus(7, queueOf(requests, 7), log));
+
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread slow = new Thread(() -> tracker.getStatus(7, () -> {
+            listing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return new ArrayList<ResponseQueueScanStatus>();
+        }, log));
+        slow.start();
+        assertTrue(listing.await(10, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        assertNotNull("A wait should be answered from the previous listing", tracker.getStatus(7, queueOf(requests, 7), log));
+        assertTrue("A wait was blocked by the listing of another", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals("The queue was listed twice at once", 1, requests.get());
+        release.countDown();
+        slow.join();
+        assertNull("The latest listing should be used once complete", tracker.getStatus(7, () -> {
+            throw new IOException("unavailable");
+        }, log));
+    }
+
+    @Test
+    public void failedFirstListingReleasesWaits() throws Exception {
+        final ScanQueueTracker tracker = new ScanQueueTracker(0);
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread failing = new Thread(() -> {
+            try {
+                tracker.getStatus(7, () -> {
+                    listing.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    throw new AssertionError("listing failed");
+                }, log);
+            } catch (AssertionError expected) {
+                //rethrown by the listing wait
+            }
+        });
+        failing.start();
+        assertTrue(listing.await(10, TimeUnit.SECONDS));
+        final AtomicInteger requests = new AtomicInteger();
+        Thread waiting = new Thread(() -> tracker.getStatus(7, queueOf(requests), log));
+        waiting.start();
+        release.countDown();
+        failing.join(5000);
+        waiting.join(5000);
+        assertFalse("A wait blocked on a failed listing", waiting.isAlive());
+    }
+}
@@ -0,0 +1,107 @@
+package com.cx.restclient.sast.utils.zip;
+
+import com.cx.restclient.common.ShragaUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.tools.ant.DirectoryScanner;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class WorkspaceScannerTest {
+    private Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    private static final String FILTER_PATTERNS = "!**/_cvs/**/*, !**/.svn/**/*, !**/.git/**/*, !**/bin/**/*, !**/obj/**/*, " +
+            "!**/*.DS_Store, !**/*.bak, !**/*.tmp, !**/*.jar, !**/*.tar.gz, !**/*.class, !**/*.x?ml, " +
+            "!Checkmarx/Reports/*.*, !**/node_modules/**/*, !docs/, !**/*Test*.java";
+
+    private static final String[] FILES = {
+            "Main.java", "src/Main.JAVA", "src/app/Service.java", "src/app/ServiceTest.java", "src/app/.git/config",
+            ".git/objects/ab/cdef", ".git/HEAD", "node_modules/pkg/index.js", "web/node_modules/a/b/c.js", "web/app.js",
+            "bin/App.class", "src/bin2/App.java", "Checkmarx/Reports/report.xml", "Checkmarx/Reports/sub/report.xml",
+            "lib/dep.jar", "lib/dep.JAR", "archive.tar.gz", "notes.TMP", "docs/index.md", "docs/api/index.md",
+            "a/b/c/d/e/deep.java", "page.xhtml", "page.xaml", "page.xml", "target/gen/Gen.java", "build/out.java",
+            "README", "with space/file name.txt"};
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File createWorkspace() throws IOException {
+        File workspace = tempFolder.newFolder("workspace");
+        for (String file : FILES) {
+            FileUtils.writeStringToFile(new File(workspace, file), file, StandardCharsets.UTF_8);
+        }
+        return workspace;
+    }
+
+    @Test
+    public void matchesDirectoryScanner() throws Exception {
+        File workspace = createWorkspace();
+        Map<String, List<String>> patterns = ShragaUtils.generateIncludesExcludesPatternLists("target, build", FILTER_PATTERNS, logUnitTests);
+        String[] excludes = patterns.get(ShragaUtils.EXCLUDES_LIST).toArray(new String[0]);
+
+        String[][] includeSets = {new String[0], {"**/*.java", "**/*.js"}, {"src/", "*.java"}, {"**/app/*.java", "**/Main.*"}};
+        for (String[] includes : includeSets) {
+            List<String> expected = scanWithAnt(workspace, includes, excludes);
+            List<String> actual = scan(workspace, includes, excludes);
+            assertFalse("No files were included", expected.isEmpty());
+            assertEquals("Incorrect files for includes " + String.join(",", includes), expected, actual);
+        }
+    }
+
+    @Test
+    public void skipsSymbolicLinkLoops() throws Exception {
+        File workspace = createWorkspace();
+        try {
+            Files.createSymbolicLink(new File(workspace, "src/app/loop").toPath(), workspace.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            logUnitTests.info("Symbolic links are not supported, skipping: " + e.getMessage());
+            return;
+        }
+        List<String> files = scan(workspace, new String[]{"**/*.java"}, new String[0]);
+        assertEquals("Files were not reported once each", new ArrayList<String>(new TreeSet<String>(files)), files);
+        assertTrue("Incorrect files", files.contains("src/app/Service.java") && !files.contains("src/app/loop/Main.java"));
+    }
+
+    private List<String> scan(File workspace, String[] includes, String[] excludes) throws IOException {
+        final List<String> files = new ArrayList<String>();
+        new WorkspaceScanner(workspace, includes, excludes, logUnitTests).scan(new WorkspaceScanner.FileHandler() {
+            public void file(String name, File file, long size) {
+                files.add(name);
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+
+    private static List<String> scanWithAnt(File workspace, String[] includes, String[] excludes) {
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(workspace);
+        ds.setCaseSensitive(false);
+        ds.setFollowSymlinks(true);
+        if (includes.length > 0) {
+            ds.setIncludes(includes);
+        }
+        ds.setExcludes(excludes);
+        ds.scan();
+        List<String> files = new ArrayList<String>();
+        for (String file : ds.getIncludedFiles()) {
+            files.add(file.replace(File.separatorChar, '/'));
+        }
+        Collections.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,343 @@
+package com.cx.restclient.sast.utils.zip;
+
+import com.cx.restclient.httpClient.CxHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class ZipperTest {
+    private Logger logUnitTests = LoggerFactory.getLogger("CxCommonClient Unit tests ");
+
+    static {
+        //the stub server writes headers and body separately; without TCP_NODELAY every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File createWorkspace() throws Exception {
+        File workspace = tempFolder.newFolder("workspace");
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int line = 0; line < i * 5; line++) {
+                sb.append("public int method").append(line).append("() { return ").append(random.nextInt(100)).append("; }\n");
+            }
+            FileUtils.writeStringToFile(new File(workspace, "src/pkg" + i % 10 + "/File" + i + ".java"), sb.toString(), StandardCharsets.UTF_8);
+        }
+        FileUtils.writeStringToFile(new File(workspace, "src/Empty.java"), "", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(workspace, "src/with space.java"), "class A {}", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(workspace, "target/Excluded.java"), "excluded", StandardCharsets.UTF_8);
+        byte[] large = new byte[6 * 1024 * 1024]; //deflated while written
+        random.nextBytes(large);
+        FileUtils.writeByteArrayToFile(new File(workspace, "lib/large.java"), large);
+        return workspace;
+    }
+
+    private List<String> zip(File workspace, int threads, File zipFile) throws Exception {
+        List<String> progress = new ArrayList<String>();
+        zip(workspace, threads, zipFile, 0, progress);
+        return progress;
+    }
+
+    private void zip(File workspace, int threads, File zipFile, long maxZipSize, final List<String> progress) throws Exception {
+        FileOutputStream out = new FileOutputStream(zipFile);
+        new Zipper(logUnitTests).setThreads(threads).zip(workspace, new String[]{"**/*.java"}, new String[]{"target/**"}, out, maxZipSize, new ZipListener() {
+            public void updateProgress(String fileName, long size) {
+                progress.add(fileName + ":" + size);
+            }
+        });
+    }
+
+    @Test
+    public void parallelZipMatchesSequentialZip() throws Exception {
+        File workspace = createWorkspace();
+        File sequential = tempFolder.newFile("sequential.zip");
+        File parallel = tempFolder.newFile("parallel.zip");
+        List<String> sequentialProgress = zip(workspace, 1, sequential);
+        List<String> parallelProgress = zip(workspace, 4, parallel);
+
+        assertEquals("Incorrect progress callbacks", sequentialProgress, parallelProgress);
+        assertEquals("Incorrect number of entries", 203, sequentialProgress.size());
+        assertEquals("Archives differ", FileUtils.checksumCRC32(sequential), FileUtils.checksumCRC32(parallel));
+
+        ZipFile zip = new ZipFile(parallel);
+        try {
+            List<String> names = new ArrayList<String>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                names.add(entry.getName());
+                File source = new File(workspace, entry.getName());
+                assertArrayEquals("Incorrect content of " + entry.getName(), FileUtils.readFileToByteArray(source), IOUtils.toByteArray(zip.getInputStream(entry)));
+            }
+            assertFalse("Excluded file was zipped", names.contains("target/Excluded.java"));
+            assertTrue("File name with a space was not kept", names.contains("src/with space.java"));
+        } finally {
+            zip.close();
+        }
+
+        //streaming readers rely on the local headers and data descriptors
+        ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(FileUtils.readFileToByteArray(parallel)));
+        int count = 0;
+        while (in.getNextEntry() != null) {
+            IOUtils.toByteArray(in);
+            count++;
+        }
+        in.close();
+        assertEquals("Incorrect number of streamed entries", 203, count);
+    }
+
+    @Test
+    public void enforcesExactMaxZipSize() throws Exception {
+        File workspace = createWorkspace();
+        File zipFile = tempFolder.newFile("limit.zip");
+        zip(workspace, 2, zipFile);
+        long size = zipFile.length();
+
+        zip(workspace, 2, zipFile, size, new ArrayList<String>());
+        assertEquals("Archive of the exact limit size was not written", size, zipFile.length());
+
+        try {
+            zip(workspace, 2, zipFile, size - 1, new ArrayList<String>());
+            fail("Archive larger than the limit was written");
+        } catch (Zipper.MaxZipSizeReached e) {
+            assertEquals("Incorrect limit", size - 1, e.getMaxZipSize());
+            assertTrue("Incorrect compressed size", e.getCompressedSize() <= size - 1);
+        }
+
+        //clearly too large archives fail as soon as the scan is complete and the estimate is known
+        ZipSizeEstimator estimator = new ZipSizeEstimator();
+        new WorkspaceScanner(workspace, new String[]{"**/*.java"}, new String[]{"target/**"}, logUnitTests).scan(estimator::add);
+        long estimate = estimator.estimate();
+        logUnitTests.info("Estimated zip size: " + estimate + " bytes, actual: " + size + " bytes");
+        assertTrue("Estimate is off by more than 5%", Math.abs(estimate - size) < size / 20);
+        try {
+            zip(workspace, 2, zipFile, size / 2, new ArrayList<String>());
+            fail("Archive larger than the limit was written");
+        } catch (Zipper.MaxZipSizeReached e) {
+            assertEquals("Incorrect limit", size / 2, e.getMaxZipSize());
+        }
+    }
+
+    @Test
+    public void cachedZipReusesUnchangedEntries() throws Exception {
+        File workspace = createWorkspace();
+        File cacheDir = tempFolder.newFolder("cache");
+
+        ZipCache.Statistics cold = zipCached(workspace, cacheDir, tempFolder.newFile("cold.zip"));
+        //the large file is not cached; the two empty files may share an entry
+        assertEquals("Incorrect number of cached files", 202, cold.getHits() + cold.getMisses());
+        assertTrue("Incorrect cold cache hits", cold.getHits() <= 1);
+
+        //one file changed, one touched with the same content
+        FileUtils.writeStringToFile(new File(workspace, "src/pkg1/File1.java"), "class Changed {}", StandardCharsets.UTF_8);
+        File touched = new File(workspace, "src/pkg2/File2.java");
+        assertTrue(touched.setLastModified(touched.lastModified() - 60000));
+        File warmZip = tempFolder.newFile("warm.zip");
+        ZipCache.Statistics warm = zipCached(workspace, cacheDir, warmZip);
+        logUnitTests.info("Warm zip cache: " + warm);
+        assertEquals("Incorrect warm cache hits", 201, warm.getHits());
+        assertEquals("Incorrect warm cache misses", 1, warm.getMisses());
+
+        ZipFile zip = new ZipFile(warmZip);
+        try {
+            assertEquals("Incorrect number of entries", 203, zip.size());
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File source = new File(workspace, entry.getName());
+                assertArrayEquals("Incorrect content of " + entry.getName(), FileUtils.readFileToByteArray(source), IOUtils.toByteArray(zip.getInputStream(entry)));
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    private ZipCache.Statistics zipCached(File workspace, File cacheDir, File zipFile) throws Exception {
+        final AtomicReference<ZipCache.Statistics> statistics = new AtomicReference<ZipCache.Statistics>();
+        new Zipper(logUnitTests).setThreads(2).setCache(new ZipCache(cacheDir, workspace, logUnitTests))
+                .zip(workspace, new String[]{"**/*.java"}, new String[]{"target/**"}, new FileOutputStream(zipFile), 0, new ZipListener() {
+                    public void updateProgress(String fileName, long size) {
+                    }
+
+                    public void cacheStatistics(ZipCache.Statistics s) {
+                        statistics.set(s);
+                    }
+                });
+        return statistics.get();
+    }
+
+    @Test
+    public void choosesCompressionPerEntry() throws Exception {
+        File workspace = createWorkspace();
+        Random random = new Random(3);
+        byte[] noise = new byte[100 * 1024];
+        random.nextBytes(noise);
+        FileUtils.writeByteArrayToFile(new File(workspace, "src/Noise.java"), noise);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 5 * 1024 * 1024) {
+            sb.append("public int method").append(random.nextInt(1000)).append("() { return 0; }\n");
+        }
+        FileUtils.writeStringToFile(new File(workspace, "lib/LargeText.java"), sb.toString(), StandardCharsets.UTF_8); //deflated while written
+        FileUtils.copyFile(new File(workspace, "src/pkg0/File100.java"), new File(workspace, "src/image.png"));
+
+        File balanced = tempFolder.newFile("balanced.zip");
+        CompressionStatistics statistics = zipCompressed(workspace, ZipCompression.BALANCED, balanced);
+        logUnitTests.info("Zip compression: " + statistics);
+        ZipFile zip = new ZipFile(balanced);
+        try {
+            assertEquals("Random file was deflated", ZipEntry.STORED, zip.getEntry("src/Noise.java").getMethod());
+            assertEquals("Large random file was deflated", ZipEntry.STORED, zip.getEntry("lib/large.java").getMethod());
+            assertEquals("Compressed file type was deflated", ZipEntry.STORED, zip.getEntry("src/image.png").getMethod());
+            assertEquals("Text file was not deflated", ZipEntry.DEFLATED, zip.getEntry("src/pkg0/File100.java").getMethod());
+            assertEquals("Large text file was not deflated", ZipEntry.DEFLATED, zip.getEntry("lib/LargeText.java").getMethod());
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                assertArrayEquals("Incorrect content of " + entry.getName(), FileUtils.readFileToByteArray(new File(workspace, entry.getName())), IOUtils.toByteArray(zip.getInputStream(entry)));
+            }
+        } finally {
+            zip.close();
+        }
+        //also the files too small to gain from deflate
+        assertTrue("Incorrect number of stored entries", statistics.getEntries(CompressionStatistics.Strategy.STORED) >= 3);
+        assertEquals("Stored entries were compressed", statistics.getInputBytes(CompressionStatistics.Strategy.STORED), statistics.getOutputBytes(CompressionStatistics.Strategy.STORED));
+
+        File fast = tempFolder.newFile("fast.zip");
+        statistics = zipCompressed(workspace, ZipCompression.FAST, fast);
+        assertEquals("Fast profile deflated at another level", 0, statistics.getEntries(CompressionStatistics.Strategy.DEFLATED));
+        assertTrue("Fast profile archive is smaller", fast.length() > balanced.length());
+    }
+
+    private CompressionStatistics zipCompressed(File workspace, ZipCompression compression, File zipFile) throws Exception {
+        final AtomicReference<CompressionStatistics> statistics = new AtomicReference<CompressionStatistics>();
+        new Zipper(logUnitTests).setThreads(2).setCompression(compression)
+                .zip(workspace, new String[]{"**/*.java", "**/*.png"}, new String[]{"target/**"}, new FileOutputStream(zipFile), 0, new ZipListener() {
+                    public void updateProgress(String fileName, long size) {
+                    }
+
+                    public void compressionStatistics(CompressionStatistics s) {
+                        statistics.set(s);
+                    }
+                });
+        return statistics.get();
+    }
+
+    @Test
+    public void reportsAggregatedProgress() throws Exception {
+        File workspace = createWorkspace();
+        File zipFile = tempFolder.newFile("progress.zip");
+        ZipProgressReporter progress = new ZipProgressReporter(logUnitTests, 1);
+        new Zipper(logUnitTests).setThreads(2).zip(workspace, new String[]{"**/*.java"}, new String[]{"target/**"}, new FileOutputStream(zipFile), 0, progress);
+        progress.complete();
+
+        long bytes = 0;
+        for (File file : FileUtils.listFiles(workspace, new String[]{"java"}, true)) {
+            bytes += file.getPath().contains("target") ? 0 : file.length();
+        }
+        assertEquals("Incorrect number of files", 203, progress.getFiles());
+        assertEquals("Incorrect number of bytes", bytes, progress.getBytes());
+        assertEquals("Incorrect compressed size", zipFile.length(), progress.getCompressedBytes(), zipFile.length() / 10.0);
+        assertEquals("Incorrect largest files", Arrays.asList("lib/large.java", "src/pkg9/File199.java"), progress.getLargestFiles().subList(0, 2));
+    }
+
+    @Test
+    public void streamsZipIntoChunkedUpload() throws Exception {
+        final File workspace = createWorkspace();
+        final AtomicReference<String> transferEncoding = new AtomicReference<String>();
+        final AtomicReference<String> expect = new AtomicReference<String>();
+        final AtomicReference<byte[]> body = new AtomicReference<byte[]>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                transferEncoding.set(exchange.getRequestHeaders().getFirst("Transfer-Encoding"));
+                expect.set(exchange.getRequestHeaders().getFirst("Expect"));
+                body.set(IOUtils.toByteArray(exchange.getRequestBody()));
+                exchange.sendResponseHeaders(HttpStatus.SC_NO_CONTENT, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        CxHttpClient client = new CxHttpClient("http://localhost:" + server.getAddress().getPort(), "user", "pass", "cxOrigin", false, true, logUnitTests);
+        try {
+            CxZip cxZip = new CxZip("zippedSource", 0, logUnitTests).setZipThreads(2);
+            MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+            builder.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
+            builder.addPart("zippedSource", new StreamingZipBody(cxZip, workspace, new String[]{"**/*.java"}, new String[]{"target/**"}, "zippedSource"));
+            client.postRequest("projects/1/sourceCode/attachments", null, builder.build(), null, HttpStatus.SC_NO_CONTENT, "upload ZIP file");
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+
+        assertEquals("Upload was not chunked", "chunked", transferEncoding.get());
+        assertEquals("Expect header was not sent", "100-continue", expect.get());
+        String multipart = new String(body.get(), StandardCharsets.ISO_8859_1);
+        int zipStart = multipart.indexOf("PK\u0003\u0004");
+        int zipEnd = multipart.lastIndexOf("\r\n--");
+        assertTrue("Zip part was not found", zipStart > 0 && zipEnd > zipStart);
+        ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(body.get(), zipStart, zipEnd - zipStart));
+        int count = 0;
+        while (in.getNextEntry() != null) {
+            count++;
+        }
+        in.close();
+        assertEquals("Incorrect number of uploaded entries", 203, count);
+    }
+
+    @Test
+    public void writesZip64EndOfCentralDirectoryForManyEntries() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipArchiveWriter writer = new ZipArchiveWriter(bytes);
+        byte[] data = "x".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        int entries = 70000;
+        for (int i = 0; i < entries; i++) {
+            writer.writeEntry("f" + i, System.currentTimeMillis(), ZipEntry.STORED, crc.getValue(), data.length, data, 0, data.length);
+        }
+        writer.close();
+
+        File zipFile = tempFolder.newFile("many.zip");
+        FileUtils.writeByteArrayToFile(zipFile, bytes.toByteArray());
+        ZipFile zip = new ZipFile(zipFile);
+        try {
+            assertEquals("Incorrect number of entries", entries, zip.size());
+            assertEquals("Incorrect content", "x", IOUtils.toString(zip.getInputStream(zip.getEntry("f69999")), StandardCharsets.UTF_8));
+        } finally {
+            zip.close();
+        }
+    }
+}